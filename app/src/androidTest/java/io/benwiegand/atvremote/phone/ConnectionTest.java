@@ -10,6 +10,7 @@ import static org.junit.Assert.assertTrue;
 import static io.benwiegand.atvremote.phone.helper.TestUtil.block;
 import static io.benwiegand.atvremote.phone.helper.TestUtil.busyWait;
 import static io.benwiegand.atvremote.phone.helper.TestUtil.catchAll;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.VERSION_1;
 
 import android.app.Instrumentation;
 import android.content.ComponentName;
@@ -388,6 +389,37 @@ public class ConnectionTest {
         server.stop();
     }
 
+    /**
+     * receivers from before v2 answer the v2 version code with HUH?, so the connection has to fall
+     * back to v1 and still work.
+     */
+    @Test
+    public void versionFallback_Test() {
+        Instrumentation in = InstrumentationRegistry.getInstrumentation();
+        Context context = in.getTargetContext();
+
+        server.setV2Supported(false);
+        server.start();
+
+        doFullServiceInit(context);
+
+        TVReceiverConnection connection = doConnection(server, false, true);
+        connectionCounter.expectConnection();
+        assertEquals("expecting the fake TV to have agreed on v1",
+                VERSION_1, server.getConnections().get(0).getVersion());
+
+        // round trip over v1
+        Sec<String> tokenSec = connection.sendPairingCode(String.valueOf(FakeTvConnection.TEST_CODE));
+        block(tokenSec, 5, TimeUnit.SECONDS);
+        assertTrue("expecting successful pairing over v1", tokenSec.isSuccessful());
+        assertEquals("expecting the test token", FakeTvConnection.TEST_TOKEN, tokenSec.getResult());
+
+        doFullServiceTeardown(context);
+        connectionCounter.expectDisconnection();
+
+        server.stop();
+    }
+
 //    @Test
     public void autoDisconnect_Test_Loop() throws Exception {
         for (int i = 0; i < 500; i++) {
@@ -1,6 +1,8 @@
 package io.benwiegand.atvremote.phone;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThrows;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
@@ -10,9 +12,13 @@ import org.junit.runner.RunWith;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
 import java.nio.charset.StandardCharsets;
 
 import io.benwiegand.atvremote.phone.network.TCPReader;
+import io.benwiegand.atvremote.phone.network.frame.Frame;
+import io.benwiegand.atvremote.phone.protocol.MalformedEventException;
 
 @RunWith(AndroidJUnit4.class)
 public class TCPReaderTest {
@@ -29,6 +35,52 @@ public class TCPReaderTest {
             testWithString(String.join("\r\n", TEST_LINES) + "\r\n", TEST_LINES);
     }
 
+    @Test
+    public void Framed_Mode_Test() throws IOException, InterruptedException {
+        // nothing can be sent before switching, otherwise it gets read as lines
+        PipedOutputStream os = new PipedOutputStream();
+        TCPReader reader = TCPReader.createFromStream(new PipedInputStream(os), StandardCharsets.UTF_8);
+        reader.switchToFrames();
+
+        Frame.line("handshake line".getBytes(StandardCharsets.UTF_8)).writeTo(os);
+        Frame.event(0xABCDEF, 42, "extra\nwith newline".getBytes(StandardCharsets.UTF_8)).writeTo(os);
+        Frame.response(1, 1, null).writeTo(os);
+        os.close();
+
+        assertEquals("line frames are read as lines", "handshake line", reader.nextLine(100));
+
+        Frame event = reader.nextFrame(100);
+        assertEquals(Frame.TYPE_EVENT, event.type());
+        assertEquals(0xABCDEF, event.eventId());
+        assertEquals(42, event.opcode());
+        assertEquals("extra\nwith newline", new String(event.payload(), StandardCharsets.UTF_8));
+
+        Frame response = reader.nextFrame(100);
+        assertEquals(Frame.TYPE_RESPONSE, response.type());
+        assertEquals(1, response.eventId());
+        assertFalse("empty payload", response.hasPayload());
+
+        assertThrows("exception when reading after end of stream",
+                IOException.class, () -> reader.nextFrame(100));
+    }
+
+    @Test
+    public void Oversized_Varint_Test() throws IOException {
+        PipedOutputStream os = new PipedOutputStream();
+        TCPReader reader = TCPReader.createFromStream(new PipedInputStream(os), StandardCharsets.UTF_8);
+        reader.switchToFrames();
+
+        // an event frame whose event id has bits in the 5th byte that don't fit in an int
+        os.write(new byte[]{7, Frame.TYPE_EVENT, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x10, 1});
+        os.flush();
+
+        IOException e = assertThrows("exception when the event id is out of range",
+                IOException.class, () -> reader.nextFrame(1000));
+        Throwable cause = e;
+        while (cause != null && !(cause instanceof MalformedEventException)) cause = cause.getCause();
+        assertNotNull("reader died because of the oversized varint", cause);
+    }
+
     public void testWithString(String string, String[] expectedLines) throws IOException, InterruptedException {
         ByteArrayInputStream is = new ByteArrayInputStream(string.getBytes(StandardCharsets.UTF_8));
         TCPReader reader = TCPReader.createFromStream(is, StandardCharsets.UTF_8);
@@ -39,6 +39,7 @@ public class FakeTVServer {
     private boolean dead = false;
 
     private boolean reject = false;
+    private volatile boolean v2Supported = true;
 
     public void start() {
         Log.i(TAG, "starting fake TV receiver");
@@ -83,7 +84,7 @@ public class FakeTVServer {
                     }
 
                     AtomicReference<FakeTvConnection> aConnection = new AtomicReference<>();
-                    FakeTvConnection connection = new FakeTvConnection(socket, () -> {
+                    FakeTvConnection connection = new FakeTvConnection(socket, v2Supported, () -> {
                         synchronized (connectionCounterLock) {
                             totalDisconnects++;
                             connectionCounterLock.notifyAll();
@@ -130,4 +131,12 @@ public class FakeTVServer {
     public void setReject(boolean reject) {
         this.reject = reject;
     }
+
+    /**
+     * @param v2Supported if false, new connections answer v2 with HUH? like receivers from
+     *                    before v2 did, so the client has to fall back to v1
+     */
+    public void setV2Supported(boolean v2Supported) {
+        this.v2Supported = v2Supported;
+    }
 }
@@ -15,12 +15,12 @@ import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_META;
 import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_PING;
 import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_TRY_PAIRING_CODE;
 import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_UNAUTHORIZED;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_UNSUPPORTED;
 import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.VERSION_1;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.VERSION_2;
 
 import android.util.Log;
 
-import androidx.test.platform.app.InstrumentationRegistry;
-
 import com.google.gson.Gson;
 
 import java.io.IOException;
@@ -60,11 +60,23 @@ public class FakeTvConnection {
     private boolean dead = false;
     private boolean die = false;
 
-    public FakeTvConnection(SSLSocket socket, Runnable onDie) {
+    // like a receiver from before v2 when false
+    private final boolean v2Supported;
+    private volatile String version = null;
+
+    public FakeTvConnection(SSLSocket socket, boolean v2Supported, Runnable onDie) {
         this.socket = socket;
+        this.v2Supported = v2Supported;
         this.onDie = onDie;
     }
 
+    /**
+     * @return the protocol version agreed on with the client, or null if it hasn't been yet
+     */
+    public String getVersion() {
+        return version;
+    }
+
     public void start() {
         thread.start();
     }
@@ -85,12 +97,26 @@ public class FakeTvConnection {
 
                 TCPReader reader = TCPReader.createFromStream(socket.getInputStream(), CHARSET);
                 TCPWriter writer = TCPWriter.createFromStream(socket.getOutputStream(), CHARSET);
-                eventJuggler = new EventJuggler(InstrumentationRegistry.getInstrumentation().getTargetContext(), socket, reader, writer, this::onSocketDeath, KEEPALIVE_INTERVAL, KEEPALIVE_TIMEOUT);
+                eventJuggler = new EventJuggler(socket, reader, writer, this::onSocketDeath, KEEPALIVE_INTERVAL, KEEPALIVE_TIMEOUT);
 
-                assertEquals("protocol version 1",
-                        VERSION_1, reader.nextLine(SOCKET_AUTH_TIMEOUT));
+                String version = reader.nextLine(SOCKET_AUTH_TIMEOUT);
+                if (VERSION_2.equals(version) && !v2Supported) {
+                    // what receivers from before v2 say to anything they don't know
+                    writer.sendLine(OP_UNSUPPORTED);
+                    version = reader.nextLine(SOCKET_AUTH_TIMEOUT);
+                }
 
-                writer.sendLine(OP_CONFIRM);
+                if (VERSION_2.equals(version)) {
+                    // client won't send anything else until it gets the response
+                    reader.switchToFrames();
+                    writer.sendLine(OP_CONFIRM);
+                    writer.switchToFrames();
+                } else {
+                    assertEquals("protocol version 1",
+                            VERSION_1, version);
+                    writer.sendLine(OP_CONFIRM);
+                }
+                this.version = version;
 
                 String initOp = reader.nextLine(SOCKET_AUTH_TIMEOUT);
                 Log.d(TAG, "init op: " + initOp);
@@ -0,0 +1,16 @@
+package io.benwiegand.atvremote.phone;
+
+import android.app.Application;
+
+import io.benwiegand.atvremote.phone.platform.AndroidPlatform;
+import io.benwiegand.atvremote.phone.platform.Platform;
+
+public class ATVRemoteApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // before anything touches the protocol code
+        Platform.install(new AndroidPlatform(this));
+    }
+}
@@ -6,23 +6,40 @@ import static io.benwiegand.atvremote.phone.network.SocketUtil.tryClose;
 import static io.benwiegand.atvremote.phone.util.ByteUtil.hexOf;
 
 import android.content.Context;
+import android.net.nsd.NsdManager;
+import android.net.ssl.SSLSockets;
+import android.os.SystemClock;
 import android.util.Log;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.Certificate;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
-import javax.net.SocketFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 
 import io.benwiegand.atvremote.phone.auth.ssl.CorruptedKeystoreException;
 import io.benwiegand.atvremote.phone.auth.ssl.KeyUtil;
 import io.benwiegand.atvremote.phone.auth.ssl.KeystoreManager;
+import io.benwiegand.atvremote.phone.network.discovery.ReceiverLocator;
+import io.benwiegand.atvremote.phone.network.discovery.ServiceDiscoveryException;
+import io.benwiegand.atvremote.phone.network.metrics.HandshakeStats;
 import io.benwiegand.atvremote.phone.protocol.PairingData;
 import io.benwiegand.atvremote.phone.protocol.PairingManager;
 import io.benwiegand.atvremote.phone.protocol.RequiresPairingException;
@@ -31,18 +48,28 @@ import io.benwiegand.atvremote.phone.stuff.LGTMTrustManager;
 public class ConnectionManager {
     private static final String TAG = ConnectionManager.class.getSimpleName();
 
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int HANDSHAKE_TIMEOUT = 5000;
+    // how long to look for a TV that moved
+    private static final long DISCOVERY_TIMEOUT = 10000;
+
+    // address that won the last connection race, by the hostname it was for
+    private static final Map<String, InetAddress> lastWinners = new ConcurrentHashMap<>();
+
+    // protocol version each TV (by fingerprint) agreed to, so the next handshake can skip asking
+    private static final Map<String, String> knownVersions = new ConcurrentHashMap<>();
+
     private final KeystoreManager keystoreManager;
-    private final SSLContext sslContext;
+    private final InMemoryTlsSessionCache sessionCache = InMemoryTlsSessionCache.get();
     private final SSLContext pairingSslContext;
-    private SocketFactory socketFactory = null;
-    private SocketFactory pairingSocketFactory = null;
+    private SSLSocketFactory socketFactory = null;
+    private SSLSocketFactory pairingSocketFactory = null;
     private final PairingManager pairingManager;
 
     public ConnectionManager(Context context) {
         keystoreManager = new KeystoreManager(context);
         pairingManager = new PairingManager(context, keystoreManager);
         try {
-            sslContext = SSLContext.getInstance("TLS");
             pairingSslContext = SSLContext.getInstance("TLS");
         } catch (NoSuchAlgorithmException e) {
             // this is unlikely. if this ever happens it's probably a bug?
@@ -68,24 +95,81 @@ public class ConnectionManager {
     }
 
     public void refreshCertificates() throws CorruptedKeystoreException, KeyManagementException {
-        sslContext.init(
+        // shared so cached sessions survive this and new ConnectionManagers
+        socketFactory = sessionCache.init(
                 keystoreManager.getKeyManagers(),
                 keystoreManager.getTrustManagers(),
-                getSecureRandom()
+                fingerprint -> pairingManager.fetchPairingData(fingerprint) != null
         );
+    }
 
-        socketFactory = sslContext.getSocketFactory();
+    /**
+     * resolves every hostname and puts the address that won last time first
+     */
+    private static List<InetAddress> candidateAddresses(List<String> hostnames) throws UnknownHostException {
+        List<InetAddress> addresses = new ArrayList<>();
+        UnknownHostException error = null;
+        for (String hostname : hostnames) {
+            try {
+                for (InetAddress address : InetAddress.getAllByName(hostname))
+                    if (!addresses.contains(address)) addresses.add(address);
+            } catch (UnknownHostException e) {
+                Log.w(TAG, "failed to resolve " + hostname + ": " + e.getMessage());
+                error = e;
+            }
+        }
+        if (addresses.isEmpty()) throw error != null ? error : new UnknownHostException("no addresses");
+
+        addresses = RacingConnector.interleaveFamilies(addresses);
+        InetAddress lastWinner = lastWinners.get(hostnames.get(0));
+        if (lastWinner != null && addresses.remove(lastWinner)) addresses.add(0, lastWinner);
+        return addresses;
     }
 
-    private SSLSocket openSocket(String hostname, int port, boolean pairing) throws IOException {
-        SocketFactory factory = pairing ? pairingSocketFactory : socketFactory;
+    /**
+     * races a connection to every address the hostnames resolve to and keeps whichever finishes
+     * the handshake first.
+     * @param hostnames addresses/hostnames of the same TV. the first one is used to look up cached
+     *                  TLS sessions, so it should stay the same between connections.
+     */
+    private SSLSocket openSocket(List<String> hostnames, int port, boolean pairing) throws IOException {
+        SSLSocketFactory factory = pairing ? pairingSocketFactory : socketFactory;
         if (factory == null) throw new IllegalStateException("must call initializeSSL() first");
 
-        Log.d(TAG, "connecting to tv at address: " + hostname + ":" + port);
-        SSLSocket socket = (SSLSocket) factory.createSocket(hostname, port);
+        String sessionHost = hostnames.get(0);
+        List<InetAddress> addresses = candidateAddresses(hostnames);
+        Log.d(TAG, "connecting to tv at addresses: " + addresses + " port " + port);
+
+        RacingConnector.Result result;
         try {
-            socket.setTrafficClass(0x10 /* lowdelay */);
+            result = new RacingConnector(addresses, (plainSocket, address) ->
+                    handshake(factory, plainSocket, address, sessionHost, port, pairing))
+                    .connect();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("interrupted while connecting");
+        }
+
+        lastWinners.put(sessionHost, result.address());
+        return result.socket();
+    }
+
+    private SSLSocket handshake(SSLSocketFactory factory, Socket plainSocket, InetAddress address, String sessionHost, int port, boolean pairing) throws IOException {
+        plainSocket.setTrafficClass(0x10 /* lowdelay */);
+        plainSocket.connect(new InetSocketAddress(address, port), CONNECT_TIMEOUT);
+
+        SSLSocket socket = (SSLSocket) factory.createSocket(plainSocket, sessionHost, port, true);
+        try {
+            if (!pairing && SSLSockets.isSupportedSocket(socket))
+                SSLSockets.setUseSessionTickets(socket, true);
+
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT);
+            long handshakeStartedAt = System.currentTimeMillis();
+            long handshakeStart = System.nanoTime();
             socket.startHandshake();
+            long handshakeMicros = (System.nanoTime() - handshakeStart) / 1000;
+            socket.setSoTimeout(0);
+            if (!pairing) sessionCache.recordHandshake(socket.getSession(), handshakeStartedAt, handshakeMicros);
+
             Log.d(TAG, "CipherSuite: " + socket.getSession().getCipherSuite());
             Log.d(TAG, "Protocol: " + socket.getSession().getProtocol());
             Log.d(TAG, "PeerHost: " + socket.getSession().getPeerHost());
@@ -99,9 +183,103 @@ public class ConnectionManager {
     }
 
     public TVReceiverConnection connectToTV(Context context, String hostname, int port, TVReceiverConnectionCallback callback) throws IOException, RequiresPairingException {
+        return connectToTV(context, List.of(hostname), port, callback);
+    }
+
+    /**
+     * connects to a TV that may be reachable at several addresses, using whichever answers first
+     * @param hostnames addresses/hostnames of the same TV, the first one should be the usual one
+     */
+    public TVReceiverConnection connectToTV(Context context, List<String> hostnames, int port, TVReceiverConnectionCallback callback) throws IOException, RequiresPairingException {
+        return connectToTV(context, hostnames, port, null, callback);
+    }
+
+    /**
+     * @param expectedFingerprint the certificate fingerprint the TV must have, or null for any paired TV
+     */
+    private TVReceiverConnection connectToTV(Context context, List<String> hostnames, int port, String expectedFingerprint, TVReceiverConnectionCallback callback) throws IOException, RequiresPairingException {
+        try {
+            return connectToTV(context, hostnames, port, expectedFingerprint, callback, true);
+        } catch (PipelineRejectedException e) {
+            // the TV changed protocol versions since last time
+            Log.w(TAG, "pipelined handshake rejected, reconnecting without it", e);
+            return connectToTV(context, hostnames, port, expectedFingerprint, callback, false);
+        }
+    }
+
+    /**
+     * connects to a paired TV at the address it had last time, or wherever discovery finds it if
+     * that doesn't work. discovery starts right away so it's warmed up, but it's only used once
+     * the last address fails. every address of a discovered receiver is raced, IPv6 and IPv4.
+     * either way, the TV has to have the given certificate.
+     * @param hostnames address the TV had last time first, then any others it might be at
+     * @param port port the TV had last time
+     * @param fingerprint certificate fingerprint of the TV
+     */
+    public TVReceiverConnection connectToKnownTV(Context context, List<String> hostnames, int port, String fingerprint, TVReceiverConnectionCallback callback) throws IOException, RequiresPairingException {
+        ReceiverLocator locator = new ReceiverLocator(context.getSystemService(NsdManager.class));
+        locator.start();
+        try {
+            IOException error;
+            try {
+                return connectToTV(context, hostnames, port, fingerprint, callback);
+            } catch (IOException e) {
+                Log.w(TAG, "TV isn't at its last address, looking for it: " + e.getMessage());
+                error = e;
+            } catch (RequiresPairingException e) {
+                if (!isUntrustedCertificate(e)) throw e;
+                Log.w(TAG, "something else is at the TV's last address, looking for it");
+                error = new IOException("an unknown device is at the TV's last address", e);
+            }
+
+            Set<InetSocketAddress> tried = new HashSet<>();
+            for (String hostname : hostnames) tried.add(new InetSocketAddress(hostname, port));
+            long deadline = SystemClock.elapsedRealtime() + DISCOVERY_TIMEOUT;
+            long remaining;
+            while ((remaining = deadline - SystemClock.elapsedRealtime()) > 0) {
+                ReceiverLocator.Receiver receiver = locator.next(remaining);
+                if (receiver == null) break;
+
+                // race every address of it that hasn't failed already
+                List<String> addresses = new ArrayList<>();
+                for (InetAddress address : receiver.addresses()) {
+                    if (tried.add(new InetSocketAddress(address, receiver.port())))
+                        addresses.add(address.getHostAddress());
+                }
+                if (addresses.isEmpty()) continue;
+
+                try {
+                    return connectToTV(context, addresses, receiver.port(), fingerprint, callback);
+                } catch (IOException e) {
+                    error.addSuppressed(e);
+                } catch (RequiresPairingException e) {
+                    // another receiver, keep looking
+                    if (!isUntrustedCertificate(e)) throw e;
+                }
+            }
+
+            throw error;
+        } catch (ServiceDiscoveryException e) {
+            throw new IOException("TV isn't at its last address and discovery failed", e);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("interrupted while looking for TV");
+        } finally {
+            locator.stop();
+        }
+    }
+
+    /**
+     * @return true if the TV was turned away because its certificate isn't trusted, meaning it
+     *         isn't one we're paired with
+     */
+    private static boolean isUntrustedCertificate(RequiresPairingException e) {
+        return e.getCause() instanceof SSLException;
+    }
+
+    private TVReceiverConnection connectToTV(Context context, List<String> hostnames, int port, String expectedFingerprint, TVReceiverConnectionCallback callback, boolean pipelineVersion) throws IOException, RequiresPairingException {
         SSLSocket socket;
         try {
-            socket = openSocket(hostname, port, false);
+            socket = openSocket(hostnames, port, false);
         } catch (SSLException e) {
             throw new RequiresPairingException(e);
         }
@@ -110,17 +288,26 @@ public class ConnectionManager {
         if (cert == null) throw new IOException("TV didn't send an SSL certificate");
 
         String token;
+        String fingerprint;
         try {
-            String fingerprint = hexOf(calculateCertificateFingerprint(cert));
+            fingerprint = hexOf(calculateCertificateFingerprint(cert));
             Log.d(TAG, "certificate fingerprint: " + fingerprint);
 
+            if (expectedFingerprint != null && !expectedFingerprint.equals(fingerprint)) {
+                tryClose(socket);
+                throw new IOException("a different TV is at " + socket.getInetAddress().getHostAddress());
+            }
+
             PairingData pairingData = pairingManager.fetchPairingData(fingerprint);
             if (pairingData == null) throw new RequiresPairingException("certificate unknown");
             token = pairingData.token();
 
-            // update additional pairing info in a new thread because it takes forever
+            // update additional pairing info in a new thread because it takes forever.
+            // the address that won the race is the one most likely to work next time.
+            String address = socket.getInetAddress().getHostAddress();
+            int connectedPort = socket.getPort();
             new Thread(() -> {
-                PairingData updatedPairingData = pairingData.updateLastConnection(hostname, Instant.now().getEpochSecond());
+                PairingData updatedPairingData = pairingData.updateLastConnection(address, connectedPort, Instant.now().getEpochSecond());
                 boolean committed = pairingManager.updatePairingData(updatedPairingData);  // not the end of the world if this fails
                 if (!committed) Log.w(TAG, "failed to commit updated pairing data");
             }).start();
@@ -129,13 +316,16 @@ public class ConnectionManager {
             throw new RuntimeException("TV sent bad cert", e);
         }
 
-        TVReceiverConnection connection = new TVReceiverConnection(context, socket, callback, token);
+        String knownVersion = pipelineVersion ? knownVersions.get(fingerprint) : null;
+
+        TVReceiverConnection connection = new TVReceiverConnection(context, socket, callback, token, knownVersion);
         connection.init();
+        knownVersions.put(fingerprint, connection.getProtocolVersion());
         return connection;
     }
 
-    public TVReceiverConnection startPairingToTV(Context context, String hostname, int port, TVReceiverConnectionCallback callback) throws IOException {
-        SSLSocket socket = openSocket(hostname, port, true);
+    public TVReceiverConnection startPairingToTV(Context context, List<String> hostnames, int port, TVReceiverConnectionCallback callback) throws IOException {
+        SSLSocket socket = openSocket(hostnames, port, true);
         TVReceiverConnection connection = new TVReceiverConnection(context, socket, callback);
         try {
             connection.init();
@@ -146,6 +336,13 @@ public class ConnectionManager {
         return connection;
     }
 
+    /**
+     * @return resumed/full handshake counts for trusted connections, shared by every ConnectionManager
+     */
+    public HandshakeStats getHandshakeStats() {
+        return sessionCache.getStats();
+    }
+
     public PairingManager getPairingManager() {
         return pairingManager;
     }
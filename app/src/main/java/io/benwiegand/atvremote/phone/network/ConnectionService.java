@@ -1,16 +1,20 @@
 package io.benwiegand.atvremote.phone.network;
 
 import static io.benwiegand.atvremote.phone.network.SocketUtil.tryClose;
-import static io.benwiegand.atvremote.phone.util.ErrorUtil.getLightStackTrace;
+import static io.benwiegand.atvremote.phone.util.StackTraceUtil.getLightStackTrace;
 
 import android.app.Service;
 import android.content.Intent;
 import android.os.Binder;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
 import java.io.IOException;
 import java.security.KeyManagementException;
+import java.util.List;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -20,12 +24,21 @@ import java.util.function.Consumer;
 import io.benwiegand.atvremote.phone.auth.ssl.CorruptedKeystoreException;
 import io.benwiegand.atvremote.phone.protocol.PairingManager;
 import io.benwiegand.atvremote.phone.protocol.RequiresPairingException;
+import io.benwiegand.atvremote.phone.stuff.LruPool;
 import io.benwiegand.atvremote.phone.stuff.SerialInt;
 
 public class ConnectionService extends Service {
     private static final String TAG = ConnectionService.class.getSimpleName();
 
-    private record ConnectionSpec(String deviceName, String hostname, int port, boolean pairing) {}
+    // connections to other TVs are kept open for a while, so switching back is instant
+    private static final int DEFAULT_MAX_POOLED_CONNECTIONS = 3;
+    private static final long POOLED_CONNECTION_IDLE_TIMEOUT = 5 * 60 * 1000;
+    private static final long POOL_EVICTION_CHECK_INTERVAL = 30 * 1000;
+
+    // fingerprint is set when connecting to a paired TV at its last known address
+    private record ConnectionSpec(String deviceName, List<String> hostnames, int port, boolean pairing, String fingerprint) {}
+
+    private record PooledConnection(TVReceiverConnection connection, ConnectionCallback callback) {}
 
     private final IBinder binder = new ConnectionServiceBinder();
 
@@ -41,7 +54,13 @@ public class ConnectionService extends Service {
     private ConnectionSpec connectionSpec = null;
     private ConnectionSpec establishedConnectionSpec = null;
     private TVReceiverConnection connection = null;
-    private TVReceiverConnectionCallback connectionCallback = null;
+    private ConnectionCallback connectionCallback = null;
+
+    // idle connections to TVs other than the current one. they keep pinging, so dead ones drop out.
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final LruPool<ConnectionSpec, PooledConnection> connectionPool = new LruPool<>(
+            DEFAULT_MAX_POOLED_CONNECTIONS, POOLED_CONNECTION_IDLE_TIMEOUT, this::onPooledConnectionEvicted);
+    private boolean poolEvictionScheduled = false;
 
     // ui
     private Callback uiCallback = null;
@@ -64,6 +83,8 @@ public class ConnectionService extends Service {
             if (connection != null) new Thread(
                     () -> tryClose(connection))
                     .start();
+            connectionPool.evictAll();
+            handler.removeCallbacksAndMessages(null);
             connectionThreadPool.shutdown();
         }
     }
@@ -179,6 +200,51 @@ public class ConnectionService extends Service {
         }
     }
 
+    private void onPooledConnectionEvicted(PooledConnection pooled) {
+        Log.d(TAG, "closing pooled connection");
+        pooled.callback().pooledAs = null;
+        // this is called with the lock held, and possibly after the executor has shut down
+        new Thread(() -> tryClose(pooled.connection())).start();
+    }
+
+    /**
+     * parks a connection that isn't needed right now, so it can be picked up again by connect().
+     * pairing connections aren't worth keeping.
+     * @return true if it was pooled, false if it should be closed instead
+     */
+    private boolean poolConnectionLocked(TVReceiverConnection connection, ConnectionCallback callback) {
+        if (callback == null || callback.spec.pairing() || connection.isDead()) return false;
+
+        Log.d(TAG, "keeping connection to " + callback.spec.deviceName() + " open in the background");
+        callback.pooledAs = new PooledConnection(connection, callback);
+        connectionPool.put(callback.spec, callback.pooledAs, SystemClock.elapsedRealtime());
+        if (!poolEvictionScheduled && connectionPool.size() > 0) {
+            poolEvictionScheduled = true;
+            handler.postDelayed(this::evictIdleConnections, POOL_EVICTION_CHECK_INTERVAL);
+        }
+        return true;
+    }
+
+    /**
+     * takes the pooled connection for the given spec out of the pool, so connect() can reuse it
+     * @return the pooled connection, or null if there isn't a live one
+     */
+    private PooledConnection takePooledConnectionLocked(ConnectionSpec spec) {
+        PooledConnection pooled = connectionPool.remove(spec);
+        if (pooled == null) return null;
+        pooled.callback().pooledAs = null;
+        return pooled.connection().isDead() ? null : pooled;
+    }
+
+    private void evictIdleConnections() {
+        synchronized (lock) {
+            connectionPool.evictIdle(SystemClock.elapsedRealtime());
+            poolEvictionScheduled = !dead && connectionPool.size() > 0;
+            if (poolEvictionScheduled)
+                handler.postDelayed(this::evictIdleConnections, POOL_EVICTION_CHECK_INTERVAL);
+        }
+    }
+
     /**
      * determines if connect() should try to open a new connection and close the old one (if any).
      * conditions:
@@ -208,7 +274,7 @@ public class ConnectionService extends Service {
     private void connect() {
         // use a serial to invalidate competing connections to avoid needing to lock for the entire connection init
         int serial;
-        TVReceiverConnection oldConnection, newConnection;
+        TVReceiverConnection oldConnection, newConnection = null;
         synchronized (lock) {
             if (!shouldReconnectLocked()) {
                 Log.i(TAG, "already connected, refusing to reconnect");
@@ -216,7 +282,8 @@ public class ConnectionService extends Service {
             }
 
             oldConnection = connection;
-            connectionCallback = new ConnectionCallback(); // rotate callback to avoid events from previous connection
+            ConnectionCallback oldCallback = connectionCallback;
+            connectionCallback = new ConnectionCallback(connectionSpec); // rotate callback to avoid events from previous connection
             if (oldConnection != null && !oldConnection.isDead())
                 callCallback(c -> c.onDisconnected(null));
 
@@ -224,17 +291,36 @@ public class ConnectionService extends Service {
             connection = null;
 
             serial = connectionSerial.advance();
+
+            // a live connection only gets replaced when switching TVs, keep it in case of switching back
+            if (oldConnection != null && oldCallback != null && !oldCallback.spec.equals(connectionSpec)
+                    && poolConnectionLocked(oldConnection, oldCallback)) {
+                oldConnection = null;
+            }
+
+            PooledConnection pooled = takePooledConnectionLocked(connectionSpec);
+            if (pooled != null) {
+                // the connection reports to the callback it was made with, so that one takes over
+                connectionCallback = pooled.callback();
+                newConnection = pooled.connection();
+            }
         }
 
-        // connection happens outside of lock, because the lock is locked on the main thread too
-        try {
-            if (oldConnection != null)
-                tryClose(oldConnection);
+        // closing and connection happen outside of lock, because the lock is locked on the main thread too.
+        // an old connection that wasn't pooled (pairing, or the same TV) gets closed even if a pooled one is reused.
+        if (oldConnection != null)
+            tryClose(oldConnection);
 
-            if (connectionSpec.pairing()) {
-                newConnection = connectionManager.startPairingToTV(this, connectionSpec.hostname(), connectionSpec.port(), connectionCallback);
+        try {
+            if (newConnection != null) {
+                // reused from the pool, it's finished the same way as a new one below
+                Log.i(TAG, "reusing pooled connection");
+            } else if (connectionSpec.pairing()) {
+                newConnection = connectionManager.startPairingToTV(this, connectionSpec.hostnames(), connectionSpec.port(), connectionCallback);
+            } else if (connectionSpec.fingerprint() != null) {
+                newConnection = connectionManager.connectToKnownTV(this, connectionSpec.hostnames(), connectionSpec.port(), connectionSpec.fingerprint(), connectionCallback);
             } else {
-                newConnection = connectionManager.connectToTV(this, connectionSpec.hostname(), connectionSpec.port(), connectionCallback);
+                newConnection = connectionManager.connectToTV(this, connectionSpec.hostnames(), connectionSpec.port(), connectionCallback);
             }
         } catch (Throwable t) {
             if (t instanceof IOException || t instanceof RequiresPairingException) {
@@ -282,6 +368,12 @@ public class ConnectionService extends Service {
     }
 
     private class ConnectionCallback implements TVReceiverConnectionCallback {
+        private final ConnectionSpec spec;
+        private PooledConnection pooledAs = null;
+
+        private ConnectionCallback(ConnectionSpec spec) {
+            this.spec = spec;
+        }
 
         private boolean invalid() {
             return connectionCallback != this;
@@ -296,7 +388,12 @@ public class ConnectionService extends Service {
         @Override
         public void onDisconnected(Throwable t) {
             synchronized (lock) {
-                if (invalid()) return;
+                if (invalid()) {
+                    // a pooled connection died (keepalive timeout or the TV went away)
+                    if (pooledAs != null) connectionPool.remove(spec, pooledAs);
+                    pooledAs = null;
+                    return;
+                }
 
                 callCallback(c -> c.onDisconnected(t));
                 connection = null;
@@ -366,15 +463,31 @@ public class ConnectionService extends Service {
          *     <li>onDisconnected() is called at any point after a connection is initialized if it dies</li>
          * </ul>
          * @param deviceName the device name
-         * @param hostname the hostname
+         * @param hostnames addresses/hostnames of the TV, raced against each other. the first one
+         *                  should be the usual one.
          * @param port the port number
          * @param forPairing if the connection is for pairing
          */
-        public void connect(String deviceName, String hostname, int port, boolean forPairing) {
+        public void connect(String deviceName, List<String> hostnames, int port, boolean forPairing) {
+            connect(new ConnectionSpec(deviceName, List.copyOf(hostnames), port, forPairing, null));
+        }
+
+        /**
+         * like connect(), but for a paired TV that might not be at the given addresses anymore. if
+         * it isn't, it's found through discovery by its certificate fingerprint.
+         * @param deviceName the device name
+         * @param hostnames the address the TV had last time, and any others it might be at
+         * @param port the port the TV had last time
+         * @param fingerprint certificate fingerprint of the TV
+         */
+        public void connectToKnown(String deviceName, List<String> hostnames, int port, String fingerprint) {
+            connect(new ConnectionSpec(deviceName, List.copyOf(hostnames), port, false, fingerprint));
+        }
+
+        private void connect(ConnectionSpec spec) {
             synchronized (lock) {
                 if (connectionManager == null) throw new IllegalStateException("must init first");
 
-                ConnectionSpec spec = new ConnectionSpec(deviceName, hostname, port, forPairing);
                 if (spec.equals(connectionSpec) && connection != null && !connection.isDead()) {
                     Log.d(TAG, "already connected, refusing to reconnect");
                     callCallback(c -> c.onConnected(connection));
@@ -413,6 +526,30 @@ public class ConnectionService extends Service {
                     connectionManager = null;
                     if (connection != null) scheduleLocked(this::disconnect);
                 }
+
+                // some of these might not be paired anymore
+                connectionPool.evictAll();
+            }
+        }
+
+        /**
+         * sets how many connections to TVs other than the current one are kept open. switching back
+         * to one of them skips the whole connection process. least recently used ones are closed
+         * first.
+         * @param maxPooledConnections the max, 0 to always close the old connection
+         */
+        public void setMaxPooledConnections(int maxPooledConnections) {
+            synchronized (lock) {
+                connectionPool.setMaxSize(maxPooledConnections);
+            }
+        }
+
+        /**
+         * @param idleTimeout how long (ms) a pooled connection can go unused before it's closed
+         */
+        public void setPooledConnectionIdleTimeout(long idleTimeout) {
+            synchronized (lock) {
+                connectionPool.setIdleTimeout(idleTimeout);
             }
         }
 
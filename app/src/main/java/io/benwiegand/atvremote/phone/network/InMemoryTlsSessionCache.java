@@ -0,0 +1,120 @@
+package io.benwiegand.atvremote.phone.network;
+
+import static io.benwiegand.atvremote.phone.auth.ssl.KeyUtil.calculateCertificateFingerprint;
+import static io.benwiegand.atvremote.phone.auth.ssl.KeyUtil.getSecureRandom;
+import static io.benwiegand.atvremote.phone.util.ByteUtil.hexOf;
+
+import android.util.Log;
+
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.Certificate;
+import java.util.Collections;
+import java.util.function.Predicate;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+
+import io.benwiegand.atvremote.phone.auth.ssl.CorruptedKeystoreException;
+import io.benwiegand.atvremote.phone.network.metrics.HandshakeStats;
+
+/**
+ * keeps TLS sessions with paired receivers in memory, so a reconnect resumes the session (one
+ * round trip, no key exchange) instead of doing a full handshake.
+ * <p>
+ *     the session cache belongs to the SSLContext and survives re-initializing it, so every
+ *     ConnectionManager shares this one context instead of making its own. that way sessions
+ *     outlive refreshCertificates() and ConnectionService being recreated, as long as the process
+ *     stays alive. nothing is written to disk, so the first connection in a new process is always
+ *     a full handshake.
+ * </p>
+ */
+public class InMemoryTlsSessionCache {
+    private static final String TAG = InMemoryTlsSessionCache.class.getSimpleName();
+
+    private static final int SESSION_TIMEOUT = 24 * 60 * 60; // seconds
+    private static final int SESSION_CACHE_SIZE = 32;
+
+    private static InMemoryTlsSessionCache instance = null;
+
+    private final SSLContext sslContext;
+    private final HandshakeStats stats = new HandshakeStats();
+
+    private InMemoryTlsSessionCache() {
+        try {
+            sslContext = SSLContext.getInstance("TLS");
+        } catch (NoSuchAlgorithmException e) {
+            Log.wtf(TAG, "unable to instantiate an SSLContext because JDK lacks TLS", e);
+            throw new UnsupportedOperationException("your device lacks TLS support?!", e);
+        }
+    }
+
+    public static synchronized InMemoryTlsSessionCache get() {
+        if (instance == null) instance = new InMemoryTlsSessionCache();
+        return instance;
+    }
+
+    /**
+     * (re)initializes the shared context with the current keys and trusted certificates. cached
+     * sessions are kept, except for receivers that aren't paired anymore.
+     * @param isPaired tests a certificate fingerprint
+     * @return a socket factory for the shared context
+     */
+    public synchronized SSLSocketFactory init(KeyManager[] keyManagers, TrustManager[] trustManagers, Predicate<String> isPaired) throws KeyManagementException {
+        sslContext.init(keyManagers, trustManagers, getSecureRandom());
+
+        SSLSessionContext sessions = sslContext.getClientSessionContext();
+        sessions.setSessionTimeout(SESSION_TIMEOUT);
+        sessions.setSessionCacheSize(SESSION_CACHE_SIZE);
+        forgetUnpaired(sessions, isPaired);
+
+        return sslContext.getSocketFactory();
+    }
+
+    private static void forgetUnpaired(SSLSessionContext sessions, Predicate<String> isPaired) {
+        for (byte[] id : Collections.list(sessions.getIds())) {
+            SSLSession session = sessions.getSession(id);
+            if (session == null) continue;
+
+            String fingerprint = fingerprintOf(session);
+            if (fingerprint != null && isPaired.test(fingerprint)) continue;
+
+            Log.d(TAG, "forgetting session for unpaired receiver: " + fingerprint);
+            session.invalidate();
+        }
+    }
+
+    private static String fingerprintOf(SSLSession session) {
+        try {
+            Certificate[] certificates = session.getPeerCertificates();
+            if (certificates.length == 0) return null;
+            return hexOf(calculateCertificateFingerprint(certificates[0]));
+        } catch (SSLPeerUnverifiedException | CorruptedKeystoreException e) {
+            return null;
+        }
+    }
+
+    /**
+     * records a finished handshake
+     * @param handshakeStartedAt wall clock time (ms) from right before the handshake started
+     * @param micros how long the handshake took
+     */
+    void recordHandshake(SSLSession session, long handshakeStartedAt, long micros) {
+        String fingerprint = fingerprintOf(session);
+        if (fingerprint == null) return;
+
+        // a resumed session keeps the creation time of the handshake that made it
+        boolean resumed = session.getCreationTime() < handshakeStartedAt;
+        stats.record(fingerprint, resumed, micros);
+        Log.d(TAG, (resumed ? "resumed session" : "full handshake") + " in " + micros + " us");
+    }
+
+    public HandshakeStats getStats() {
+        return stats;
+    }
+}
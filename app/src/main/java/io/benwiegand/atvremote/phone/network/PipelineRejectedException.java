@@ -0,0 +1,14 @@
+package io.benwiegand.atvremote.phone.network;
+
+import java.io.IOException;
+
+/**
+ * the TV didn't accept the protocol version of a pipelined handshake, so everything sent behind
+ * it was in the wrong format. reconnecting with a normal handshake should work.
+ */
+public class PipelineRejectedException extends IOException {
+
+    public PipelineRejectedException(String message) {
+        super(message);
+    }
+}
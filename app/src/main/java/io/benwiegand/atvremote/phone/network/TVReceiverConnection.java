@@ -9,8 +9,12 @@ import android.util.Log;
 import com.google.gson.Gson;
 
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 import javax.net.ssl.SSLSocket;
@@ -19,12 +23,21 @@ import io.benwiegand.atvremote.phone.R;
 import io.benwiegand.atvremote.phone.auth.ssl.CorruptedKeystoreException;
 import io.benwiegand.atvremote.phone.auth.ssl.KeyUtil;
 import io.benwiegand.atvremote.phone.async.Sec;
+import io.benwiegand.atvremote.phone.async.SecAdapter;
 import io.benwiegand.atvremote.phone.control.InputHandler;
+import io.benwiegand.atvremote.phone.network.event.EventMerger;
+import io.benwiegand.atvremote.phone.network.event.EventResult;
+import io.benwiegand.atvremote.phone.network.event.EventTemplate;
+import io.benwiegand.atvremote.phone.network.event.OutputPriority;
+import io.benwiegand.atvremote.phone.network.event.QueuedEvent;
+import io.benwiegand.atvremote.phone.network.metrics.LatencyRecorder;
 import io.benwiegand.atvremote.phone.protocol.KeyEventType;
 import io.benwiegand.atvremote.phone.protocol.MalformedResponseException;
 import io.benwiegand.atvremote.phone.protocol.OperationDefinition;
 import io.benwiegand.atvremote.phone.protocol.RemoteProtocolException;
 import io.benwiegand.atvremote.phone.protocol.RequiresPairingException;
+import io.benwiegand.atvremote.phone.protocol.json.BatchParams;
+import io.benwiegand.atvremote.phone.protocol.json.BatchResults;
 import io.benwiegand.atvremote.phone.protocol.json.CommitTextParams;
 import io.benwiegand.atvremote.phone.protocol.json.DeleteTextParams;
 import io.benwiegand.atvremote.phone.protocol.json.ErrorDetails;
@@ -43,6 +56,20 @@ public class TVReceiverConnection implements Closeable {
     public static final long KEEPALIVE_INTERVAL = 5000;
     public static final long KEEPALIVE_TIMEOUT = KEEPALIVE_INTERVAL * 2;
 
+    // how long an operation is worth waiting for, by the class of operation. input is useless
+    // once the user has moved on, but committed text still matters after a while.
+    private static final long INPUT_TIMEOUT = 5000;
+    private static final long TEXT_TIMEOUT = 120000;
+
+    // cursor moves that pile up while the connection is slow get summed into one
+    private static final EventMerger CURSOR_MOVE_MERGER = new EventMerger(OP_CURSOR_MOVE, (queued, next) -> {
+        String[] queuedMove = queued.split(" ");
+        String[] nextMove = next.split(" ");
+        int x = Integer.parseInt(queuedMove[1]) + Integer.parseInt(nextMove[1]);
+        int y = Integer.parseInt(queuedMove[2]) + Integer.parseInt(nextMove[2]);
+        return OP_CURSOR_MOVE + " " + x + " " + y;
+    });
+
     private final Context context;
     private final InputHandler inputForwarder = new InputForwarder();
 
@@ -56,32 +83,47 @@ public class TVReceiverConnection implements Closeable {
     private ReceiverDeviceMeta receiverDeviceMeta = null;
 
     private final TVReceiverConnectionCallback callback;
+    private Consumer<Throwable> asyncErrorListener = t -> Log.w(TAG, "async operation failed", t);
     private final String token;
+    private final String knownVersion;
+    private String version = null;
     private boolean dead = false;
     private boolean init = false;
+    // set once the TV says it doesn't know BATCH
+    private volatile boolean batchUnsupported = false;
 
     /**
      * connection to the TV receiver
-     * @param context context (for fetching string resources)
+     * @param context context (for the device meta sent to the tv)
      * @param socket the socket for the connection
      * @param callback callback for various events
      * @param token authentication token - a null value implies pairing mode
+     * @param knownVersion protocol version the TV agreed to last time, or null to negotiate it
      */
-    TVReceiverConnection(Context context, SSLSocket socket, TVReceiverConnectionCallback callback, String token) {
+    TVReceiverConnection(Context context, SSLSocket socket, TVReceiverConnectionCallback callback, String token, String knownVersion) {
         this.context = context;
         this.socket = socket;
         this.callback = callback;
         this.token = token;
+        this.knownVersion = knownVersion;
     }
 
+
     /**
      * connection to the TV receiver but for pairing
-     * @param context context (for fetching string resources)
+     * @param context context (for the device meta sent to the tv)
      * @param socket the socket for the connection
      * @param callback callback for various events
      */
     TVReceiverConnection(Context context, SSLSocket socket, TVReceiverConnectionCallback callback) {
-        this(context, socket, callback, null);
+        this(context, socket, callback, null, null);
+    }
+
+    /**
+     * @return the protocol version agreed upon during init()
+     */
+    String getProtocolVersion() {
+        return version;
     }
 
     public InputHandler getInputForwarder() {
@@ -99,60 +141,31 @@ public class TVReceiverConnection implements Closeable {
 
             reader = TCPReader.createFromStream(socket.getInputStream(), CHARSET);
             writer = TCPWriter.createFromStream(socket.getOutputStream(), CHARSET);
-            eventJuggler = new EventJuggler(context, socket, reader, writer, this::onSocketDeath, KEEPALIVE_INTERVAL, KEEPALIVE_TIMEOUT);
-
-            writer.sendLine(VERSION_1);
+            eventJuggler = new EventJuggler(socket, reader, writer, this::onSocketDeath, KEEPALIVE_INTERVAL, KEEPALIVE_TIMEOUT);
 
-            String line = reader.nextLine(SOCKET_AUTH_TIMEOUT);
-            if (line == null) throw new RuntimeException("TV didn't respond to version code. Make sure you have the right TV or try restarting the service on the TV.");
-            switch (line) {
-                case OP_CONFIRM -> Log.v(TAG, "agreed upon protocol v1");
-                case OP_UNSUPPORTED -> {
-                    Log.e(TAG, "tv responded: unsupported protocol");
-                    throw new RuntimeException("unsupported protocol version, try updating the app on this device and/or your TV");
-                }
-                default -> {
-                    Log.e(TAG, "unexpected response from TV");
-                    throw new RuntimeException("unexpected response");
-                }
-            }
-
-            // if no auth token provided, initiate pairing
             boolean pairing = token == null;
             if (pairing) {
+                negotiateVersion();
                 Log.v(TAG, "initiating pairing");
                 writer.sendLine(INIT_OP_PAIR);
+                readInitResponse(true);
             } else {
-                Log.v(TAG, "authenticating");
-                writer.sendLines(INIT_OP_CONNECT, token);
-            }
-
-            line = reader.nextLine(SOCKET_AUTH_TIMEOUT);
-            if (line == null) throw new RuntimeException("TV didn't respond to initial operation");
-
-            String[] response = line.split(" ", 2);
-            if (response.length == 0) throw new RuntimeException("empty response from TV");
+                // everything goes out in one flush, the version too if it's known from last time
+                if (knownVersion == null) negotiateVersion();
+                else writeVersion(knownVersion);
 
-            switch (response[0]) {
-                case OP_CONFIRM -> Log.v(TAG, "handshake completed");
-                case OP_UNAUTHORIZED -> {
-                    Log.e(TAG, "unauthorized");
-                    if (pairing) throw new RuntimeException("pairing is disabled on TV");
-                    else throw new RequiresPairingException("TV rejected auth token");
-                }
-                case OP_ERR -> {
-                    String json = response.length == 1 ? null : response[1];
-                    throw parseError(json);
-                }
-                default -> {
-                    Log.e(TAG, "unexpected response from tv");
-                    throw new RuntimeException("unexpected response");
-                }
+                Log.v(TAG, "authenticating");
+                writer.writeLine(INIT_OP_CONNECT);
+                writer.writeLine(token);
+                writer.writeLine(OP_META + " " + gson.toJson(RemoteDeviceMeta.getDeviceMeta(context)));
+                writer.flush();
+
+                if (knownVersion != null) readVersionResponse();
+                readInitResponse(false);
+                readMeta();
+                enableNoAckIfSupported();
             }
 
-            if (!pairing)
-                exchangeMeta();
-
             Log.i(TAG, "tv connected: " + socket.getRemoteSocketAddress());
             eventJuggler.start(getOperationDefinitions());
 
@@ -167,9 +180,105 @@ public class TVReceiverConnection implements Closeable {
         }
     }
 
-    private void exchangeMeta() throws IOException, InterruptedException {
-        writer.sendLine(OP_META + " " + gson.toJson(RemoteDeviceMeta.getDeviceMeta(context)));
+    private void readInitResponse(boolean pairing) throws IOException, InterruptedException, RequiresPairingException {
+        String line = reader.nextLine(SOCKET_AUTH_TIMEOUT);
+        if (line == null) throw new RuntimeException("TV didn't respond to initial operation");
+
+        String[] response = line.split(" ", 2);
+        if (response.length == 0) throw new RuntimeException("empty response from TV");
+
+        switch (response[0]) {
+            case OP_CONFIRM -> Log.v(TAG, "handshake completed");
+            case OP_UNAUTHORIZED -> {
+                Log.e(TAG, "unauthorized");
+                if (pairing) throw new RuntimeException("pairing is disabled on TV");
+                else throw new RequiresPairingException("TV rejected auth token");
+            }
+            case OP_ERR -> {
+                String json = response.length == 1 ? null : response[1];
+                throw parseError(json);
+            }
+            default -> {
+                Log.e(TAG, "unexpected response from tv");
+                throw new RuntimeException("unexpected response");
+            }
+        }
+    }
+
+    /**
+     * asks for protocol v2 and falls back to v1 if the TV doesn't support it.
+     * the handshake that follows is the same for both, v2 just wraps the lines in frames.
+     */
+    private void negotiateVersion() throws IOException, InterruptedException {
+        writer.sendLine(VERSION_2);
+
+        String line = reader.nextLine(SOCKET_AUTH_TIMEOUT);
+        if (line == null) throw new RuntimeException("TV didn't respond to version code. Make sure you have the right TV or try restarting the service on the TV.");
+        switch (line) {
+            case OP_CONFIRM -> {
+                Log.v(TAG, "agreed upon protocol v2");
+                // the TV won't send anything until it gets the init op, so it's safe to switch now
+                reader.switchToFrames();
+                writer.switchToFrames();
+                version = VERSION_2;
+                return;
+            }
+            case OP_UNSUPPORTED -> Log.v(TAG, "tv doesn't support protocol v2, falling back to v1");
+            default -> {
+                Log.e(TAG, "unexpected response from TV");
+                throw new RuntimeException("unexpected response");
+            }
+        }
+
+        writer.sendLine(VERSION_1);
+
+        line = reader.nextLine(SOCKET_AUTH_TIMEOUT);
+        if (line == null) throw new RuntimeException("TV didn't respond to version code. Make sure you have the right TV or try restarting the service on the TV.");
+        switch (line) {
+            case OP_CONFIRM -> {
+                Log.v(TAG, "agreed upon protocol v1");
+                version = VERSION_1;
+            }
+            case OP_UNSUPPORTED -> {
+                Log.e(TAG, "tv responded: unsupported protocol");
+                throw new RuntimeException("unsupported protocol version, try updating the app on this device and/or your TV");
+            }
+            default -> {
+                Log.e(TAG, "unexpected response from TV");
+                throw new RuntimeException("unexpected response");
+            }
+        }
+    }
+
+    /**
+     * writes the version without waiting for the reply, assuming the TV will accept it.
+     * in v2 the rest of the handshake follows in frames right away, and the reader switches as
+     * soon as the confirmation comes in.
+     */
+    private void writeVersion(String knownVersion) throws IOException {
+        writer.writeLine(knownVersion);
+        if (knownVersion.equals(VERSION_2)) {
+            reader.switchToFramesAfter(OP_CONFIRM);
+            writer.switchToFrames();
+        }
+    }
+
+    /**
+     * reads the reply to {@link #writeVersion(String)}.
+     * @throws PipelineRejectedException if the TV didn't accept the version. whatever was sent
+     *         after it was in the wrong format, so the connection is useless.
+     */
+    private void readVersionResponse() throws IOException, InterruptedException {
+        String line = reader.nextLine(SOCKET_AUTH_TIMEOUT);
+        if (line == null) throw new RuntimeException("TV didn't respond to version code. Make sure you have the right TV or try restarting the service on the TV.");
+        if (!line.equals(OP_CONFIRM))
+            throw new PipelineRejectedException("TV responded to " + knownVersion + " with: " + line);
+
+        Log.v(TAG, "protocol " + knownVersion + " still supported");
+        version = knownVersion;
+    }
 
+    private void readMeta() throws IOException, InterruptedException {
         String line = reader.nextLine(SOCKET_AUTH_TIMEOUT);
         if (line == null) {
             Log.w(TAG, "metadata fetch timed out");
@@ -188,6 +297,34 @@ public class TVReceiverConnection implements Closeable {
         }
     }
 
+    private void enableNoAckIfSupported() {
+        if (!writer.isFramed()) return;
+        if (receiverDeviceMeta == null || receiverDeviceMeta.capabilities() == null) return;
+        if (!receiverDeviceMeta.capabilities().hasFeature(ReceiverCapabilities.SUPPORTED_FEATURE_NO_ACK_EVENTS)) return;
+
+        Log.v(TAG, "tv supports no-ack events");
+        eventJuggler.setNoAckErrorListener(this::onNoAckError);
+        eventJuggler.enableNoAck();
+    }
+
+    private void onNoAckError(EventResult result) {
+        try {
+            parseResponse(result);
+            Log.w(TAG, "got non-error response for no-ack event: " + result.responseLine());
+        } catch (Throwable t) {
+            asyncErrorListener.accept(t);
+        }
+    }
+
+    /**
+     * fire-and-forget operations don't wait for a response, so if they fail on the TV, the error
+     * is passed to this listener instead.
+     * @param listener the listener
+     */
+    public void setAsyncErrorListener(Consumer<Throwable> listener) {
+        asyncErrorListener = listener;
+    }
+
     private void onSocketDeath(Throwable t) {
         tryClose(this);
         callback.onDisconnected(t);
@@ -214,6 +351,22 @@ public class TVReceiverConnection implements Closeable {
         return capabilities;
     }
 
+    /**
+     * @return latency stats for operations sent to the TV
+     */
+    public LatencyRecorder getLatencyRecorder() {
+        if (eventJuggler == null) throw new IllegalStateException("connection init not finished yet");
+        return eventJuggler.getLatencyRecorder();
+    }
+
+    /**
+     * dumps latency stats for operations sent to the TV to a file
+     * @param file the file, it's overwritten if it exists
+     */
+    public void dumpLatencyStats(File file) throws IOException {
+        getLatencyRecorder().dump(file);
+    }
+
     private RemoteProtocolException parseError(String json) {
         Log.e(TAG, "error response: " + json);
         if (json == null)
@@ -222,37 +375,75 @@ public class TVReceiverConnection implements Closeable {
         return gson.fromJson(json, ErrorDetails.class).toException();
     }
 
-    private Sec<String> sendOperation(String event) {
+    private static long timeoutFor(OutputPriority priority) {
+        return switch (priority) {
+            case INTERACTIVE -> INPUT_TIMEOUT;
+            case BULK -> TEXT_TIMEOUT;
+            case CONTROL, KEEPALIVE -> QueuedEvent.DEFAULT_TIMEOUT;
+        };
+    }
+
+    private Sec<String> sendOperation(String event, OutputPriority priority, EventMerger merger) {
         if (eventJuggler == null) throw new IllegalStateException("connection init not finished yet");
-        return eventJuggler.sendEvent(event)
-                .map(r -> {
-                    // parse errors
-                    int iSep = r.responseLine().indexOf(' ');
-                    String op, extra;
-                    if (iSep > 1) {
-                        op = r.responseLine().substring(0, iSep);
-                        extra = r.responseLine().substring(iSep + 1);
-                    } else {
-                        op = r.responseLine();
-                        extra = null;
-                    }
-
-                    return switch (op) {
-                        case OP_CONFIRM -> extra;
-                        case OP_ERR -> throw parseError(extra);
-                        case OP_UNSUPPORTED -> throw new RemoteProtocolException(R.string.protocol_error_op_unsupported, "operation not supported by tv", true);
-                        default -> throw new RemoteProtocolException(R.string.protocol_error_response_invalid, "unexpected response from tv", true);
-                    };
-                });
+        return eventJuggler.sendEvent(event, priority, merger, timeoutFor(priority))
+                .map(this::parseResponse);
+    }
+
+    /**
+     * @return the response extra
+     * @throws RemoteProtocolException if the response is an error
+     */
+    private String parseResponse(EventResult r) {
+        return switch (r.response()) {
+            case OP_CONFIRM -> r.extra();
+            case OP_ERR -> throw parseError(r.extra());
+            case OP_UNSUPPORTED -> throw new RemoteProtocolException(R.string.protocol_error_op_unsupported, "operation not supported by tv", true);
+            default -> throw new RemoteProtocolException(R.string.protocol_error_response_invalid, "unexpected response from tv", true);
+        };
+    }
+
+    private Sec<String> sendOperation(String event, OutputPriority priority) {
+        return sendOperation(event, priority, null);
+    }
+
+    private Sec<String> sendOperation(String event) {
+        return sendOperation(event, OutputPriority.CONTROL);
+    }
+
+    private Sec<Void> sendBasicOperation(String operation, EventMerger merger) {
+        return sendOperation(operation, OutputPriority.INTERACTIVE, merger)
+                .map(r -> null);
     }
 
     private Sec<Void> sendBasicOperation(String operation) {
-        return sendOperation(operation)
+        return sendBasicOperation(operation, null);
+    }
+
+    /**
+     * like {@link #sendBasicOperation(String)}, but written straight from a pre-encoded template.
+     */
+    private Sec<Void> sendBasicOperation(EventTemplate template) {
+        if (eventJuggler == null) throw new IllegalStateException("connection init not finished yet");
+        return eventJuggler.sendEvent(template, OutputPriority.INTERACTIVE, INPUT_TIMEOUT)
+                .map(this::parseResponse)
+                .map(r -> null);
+    }
+
+    /**
+     * sends an operation without waiting for the TV to acknowledge it, if the TV supports that.
+     * the Sec finishes once it's written, and failures go to the async error listener. until then,
+     * cancelling it takes it back out of the queue like any other event.
+     * otherwise it's the same as {@link #sendBasicOperation(EventTemplate)}.
+     */
+    private Sec<Void> sendFireAndForgetOperation(EventTemplate template) {
+        if (eventJuggler == null) throw new IllegalStateException("connection init not finished yet");
+        if (!eventJuggler.isNoAckEnabled()) return sendBasicOperation(template);
+        return eventJuggler.sendEventNoAck(template, OutputPriority.INTERACTIVE, INPUT_TIMEOUT)
                 .map(r -> null);
     }
 
-    private Sec<Boolean> sendOperationForBooleanResponse(String operation) {
-        return sendOperation(operation)
+    private Sec<Boolean> sendOperationForBooleanResponse(String operation, OutputPriority priority) {
+        return sendOperation(operation, priority)
                 .map(e -> switch (e.toLowerCase()) {
                     case "true" -> true;
                     case "false" -> false;
@@ -288,101 +479,238 @@ public class TVReceiverConnection implements Closeable {
         return eventStreamSubscriptionManager.unsubscribe(eventType, listener);
     }
 
+    /**
+     * @return a new batch for sending several operations in one round trip
+     */
+    public OperationBatch batch() {
+        return new OperationBatch();
+    }
+
+    /**
+     * collects operations and sends them to the TV as a single BATCH event. the TV runs them in
+     * order and responds once for all of them, so a sequence of N operations takes one round trip
+     * instead of N.
+     * <p>
+     *     each operation still gets its own result. they're independent, so one failing doesn't
+     *     stop the rest. if the TV doesn't support batches, the operations are sent one by one.
+     * </p>
+     * <p>
+     *     not thread safe. nothing is sent until {@link #send()}.
+     * </p>
+     */
+    public class OperationBatch {
+        private final List<String> operations = new ArrayList<>();
+        private final List<SecAdapter<String>> adapters = new ArrayList<>();
+        private boolean sent = false;
+
+        private OperationBatch() {}
+
+        /**
+         * adds an operation to the batch.
+         * @param operation the operation and its extra, like a normal event
+         * @return a Sec for the response extra of this operation
+         */
+        public Sec<String> add(String operation) {
+            if (sent) throw new IllegalStateException("batch already sent");
+            if (operation.startsWith(OP_BATCH)) throw new IllegalArgumentException("batches can't be nested");
+
+            SecAdapter.SecWithAdapter<String> secWithAdapter = SecAdapter.createThreadless();
+            operations.add(operation);
+            adapters.add(secWithAdapter.secAdapter());
+            return secWithAdapter.sec();
+        }
+
+        /**
+         * adds an event stream subscription to the batch.
+         * see {@link TVReceiverConnection#subscribeToEventStream(String, Consumer)}.
+         */
+        public Sec<Void> subscribeToEventStream(String eventType, Consumer<String> listener) {
+            return eventStreamSubscriptionManager.subscribe(eventType, listener, this::add);
+        }
+
+        public int size() {
+            return operations.size();
+        }
+
+        /**
+         * sends the batch. the Secs returned by {@link #add(String)} finish when the response
+         * arrives.
+         * @return a Sec that finishes once the batch has been responded to. it only fails if the
+         *         batch as a whole failed, errors of single operations go to their own Secs.
+         */
+        public Sec<Void> send() {
+            if (sent) throw new IllegalStateException("batch already sent");
+            sent = true;
+
+            SecAdapter.SecWithAdapter<Void> secWithAdapter = SecAdapter.createThreadless();
+            if (operations.isEmpty()) {
+                secWithAdapter.secAdapter().provideResult(null);
+            } else if (operations.size() == 1 || batchUnsupported) {
+                sendIndividually(secWithAdapter.secAdapter());
+            } else {
+                if (eventJuggler == null) throw new IllegalStateException("connection init not finished yet");
+                eventJuggler.sendEvent(OP_BATCH + " " + gson.toJson(new BatchParams(operations)), OutputPriority.CONTROL)
+                        .doOnResult(r -> onBatchResponse(r, secWithAdapter.secAdapter()))
+                        .doOnError(t -> {
+                            adapters.forEach(a -> a.throwError(t));
+                            secWithAdapter.secAdapter().throwError(t);
+                        })
+                        .callMeWhenDone();
+            }
+
+            return secWithAdapter.sec();
+        }
+
+        private void onBatchResponse(EventResult r, SecAdapter<Void> done) {
+            if (OP_UNSUPPORTED.equals(r.response())) {
+                Log.i(TAG, "tv doesn't support batches, sending operations individually");
+                batchUnsupported = true;
+                sendIndividually(done);
+                return;
+            }
+
+            List<String> results;
+            try {
+                results = gson.fromJson(parseResponse(r), BatchResults.class).results();
+                if (results.size() != operations.size())
+                    throw new MalformedResponseException("expected " + operations.size() + " batch results, got " + results.size());
+            } catch (RuntimeException e) {
+                adapters.forEach(a -> a.throwError(e));
+                done.throwError(e);
+                return;
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                SecAdapter<String> adapter = adapters.get(i);
+                String result;
+                try {
+                    result = parseResponse(EventResult.parse(results.get(i)));
+                } catch (RuntimeException e) {
+                    adapter.throwError(e);
+                    continue;
+                }
+                adapter.provideResult(result);
+            }
+            done.provideResult(null);
+        }
+
+        private void sendIndividually(SecAdapter<Void> done) {
+            AtomicInteger remaining = new AtomicInteger(operations.size());
+            Runnable onCompletion = () -> {
+                if (remaining.decrementAndGet() == 0) done.provideResult(null);
+            };
+
+            for (int i = 0; i < operations.size(); i++) {
+                SecAdapter<String> adapter = adapters.get(i);
+                sendOperation(operations.get(i))
+                        .doOnResult(r -> {
+                            adapter.provideResult(r);
+                            onCompletion.run();
+                        })
+                        .doOnError(t -> {
+                            adapter.throwError(t);
+                            onCompletion.run();
+                        })
+                        .callMeWhenDone();
+            }
+        }
+    }
+
     public class InputForwarder implements InputHandler {
 
         @Override
         public Sec<Void> dpadDown(KeyEventType type) {
-            return sendBasicOperation(OP_DPAD_DOWN + " " + type);
+            return sendFireAndForgetOperation(EventTemplate.of(OP_DPAD_DOWN, type));
         }
 
         @Override
         public Sec<Void> dpadUp(KeyEventType type) {
-            return sendBasicOperation(OP_DPAD_UP + " " + type);
+            return sendFireAndForgetOperation(EventTemplate.of(OP_DPAD_UP, type));
         }
 
         @Override
         public Sec<Void> dpadLeft(KeyEventType type) {
-            return sendBasicOperation(OP_DPAD_LEFT + " " + type);
+            return sendFireAndForgetOperation(EventTemplate.of(OP_DPAD_LEFT, type));
         }
 
         @Override
         public Sec<Void> dpadRight(KeyEventType type) {
-            return sendBasicOperation(OP_DPAD_RIGHT + " " + type);
+            return sendFireAndForgetOperation(EventTemplate.of(OP_DPAD_RIGHT, type));
         }
 
         @Override
         public Sec<Void> dpadSelect(KeyEventType type) {
-            return sendBasicOperation(OP_DPAD_SELECT + " " + type);
+            return sendBasicOperation(EventTemplate.of(OP_DPAD_SELECT, type));
         }
 
         @Override
         public Sec<Void> dpadLongPress() {
-            return sendBasicOperation(OP_DPAD_LONG_PRESS);
+            return sendBasicOperation(EventTemplate.of(OP_DPAD_LONG_PRESS));
         }
 
         @Override
         public Sec<Void> navHome(KeyEventType type) {
-            return sendBasicOperation(OP_NAV_HOME + " " + type);
+            return sendBasicOperation(EventTemplate.of(OP_NAV_HOME, type));
         }
 
         @Override
         public Sec<Void> navBack(KeyEventType type) {
-            return sendBasicOperation(OP_NAV_BACK + " " + type);
+            return sendBasicOperation(EventTemplate.of(OP_NAV_BACK, type));
         }
 
         @Override
         public Sec<Void> navRecent(KeyEventType type) {
-            return sendBasicOperation(OP_NAV_RECENT + " " + type);
+            return sendBasicOperation(EventTemplate.of(OP_NAV_RECENT, type));
         }
 
         @Override
         public Sec<Void> navNotifications(KeyEventType type) {
-            return sendBasicOperation(OP_NAV_NOTIFICATIONS + " " + type);
+            return sendBasicOperation(EventTemplate.of(OP_NAV_NOTIFICATIONS, type));
         }
 
         @Override
         public Sec<Void> navQuickSettings() {
-            return sendBasicOperation(OP_NAV_QUICK_SETTINGS);
+            return sendBasicOperation(EventTemplate.of(OP_NAV_QUICK_SETTINGS));
         }
 
         @Override
         public Sec<Void> volumeUp(KeyEventType type) {
-            return sendBasicOperation(OP_VOLUME_UP + " " + type);
+            return sendFireAndForgetOperation(EventTemplate.of(OP_VOLUME_UP, type));
         }
 
         @Override
         public Sec<Void> volumeDown(KeyEventType type) {
-            return sendBasicOperation(OP_VOLUME_DOWN + " " + type);
+            return sendFireAndForgetOperation(EventTemplate.of(OP_VOLUME_DOWN, type));
         }
 
         @Override
         public Sec<Void> toggleMute(KeyEventType type) {
-            return sendBasicOperation(OP_MUTE_TOGGLE + " " + type);
+            return sendBasicOperation(EventTemplate.of(OP_MUTE_TOGGLE, type));
         }
 
         @Override
         public Sec<Void> playPause(KeyEventType type) {
-            return sendBasicOperation(OP_PLAY_PAUSE + " " + type);
+            return sendBasicOperation(EventTemplate.of(OP_PLAY_PAUSE, type));
         }
 
         @Override
         public Sec<Void> nextTrack(KeyEventType type) {
-            return sendBasicOperation(OP_NEXT_TRACK + " " + type);
+            return sendBasicOperation(EventTemplate.of(OP_NEXT_TRACK, type));
         }
 
         @Override
         public Sec<Void> prevTrack(KeyEventType type) {
-            return sendBasicOperation(OP_PREV_TRACK + " " + type);
+            return sendBasicOperation(EventTemplate.of(OP_PREV_TRACK, type));
         }
 
         @Override
         public Sec<Void> skipBackward(KeyEventType type) {
-            return sendBasicOperation(OP_SKIP_BACKWARD + " " + type);
+            return sendFireAndForgetOperation(EventTemplate.of(OP_SKIP_BACKWARD, type));
         }
 
         @Override
         public Sec<Void> skipForward(KeyEventType type) {
-            return sendBasicOperation(OP_SKIP_FORWARD + " " + type);
+            return sendFireAndForgetOperation(EventTemplate.of(OP_SKIP_FORWARD, type));
         }
 
         @Override
@@ -433,22 +761,22 @@ public class TVReceiverConnection implements Closeable {
 
         @Override
         public Sec<Void> showCursor() {
-            return sendBasicOperation(OP_CURSOR_SHOW);
+            return sendBasicOperation(EventTemplate.of(OP_CURSOR_SHOW));
         }
 
         @Override
         public Sec<Void> hideCursor() {
-            return sendBasicOperation(OP_CURSOR_HIDE);
+            return sendBasicOperation(EventTemplate.of(OP_CURSOR_HIDE));
         }
 
         @Override
         public Sec<Void> cursorMove(int x, int y) {
-            return sendBasicOperation(OP_CURSOR_MOVE + " " + x + " " + y);
+            return sendBasicOperation(OP_CURSOR_MOVE + " " + x + " " + y, CURSOR_MOVE_MERGER);
         }
 
         @Override
         public Sec<Void> leftClick(KeyEventType type) {
-            return sendBasicOperation(OP_CURSOR_LEFT_BUTTON + " " + type);
+            return sendBasicOperation(EventTemplate.of(OP_CURSOR_LEFT_BUTTON, type));
         }
 
         @Override
@@ -460,7 +788,7 @@ public class TVReceiverConnection implements Closeable {
 
         @Override
         public Sec<Void> powerButton(KeyEventType type) {
-            return sendBasicOperation(OP_POWER_BUTTON + " " + type);
+            return sendBasicOperation(EventTemplate.of(OP_POWER_BUTTON, type));
         }
 
         @Override
@@ -484,22 +812,22 @@ public class TVReceiverConnection implements Closeable {
 
         @Override
         public Sec<Boolean> commitText(String input, int newCursorPosition) {
-            return sendOperationForBooleanResponse(OP_COMMIT_TEXT + " " + gson.toJson(new CommitTextParams(input, newCursorPosition)));
+            return sendOperationForBooleanResponse(OP_COMMIT_TEXT + " " + gson.toJson(new CommitTextParams(input, newCursorPosition)), OutputPriority.BULK);
         }
 
         @Override
         public Sec<Boolean> deleteSurroundingText(int beforeLength, int afterLength) {
-            return sendOperationForBooleanResponse(OP_DELETE_TEXT + " " + gson.toJson(new DeleteTextParams(beforeLength, afterLength)));
+            return sendOperationForBooleanResponse(OP_DELETE_TEXT + " " + gson.toJson(new DeleteTextParams(beforeLength, afterLength)), OutputPriority.BULK);
         }
 
         @Override
         public Sec<Boolean> sendKeyEvent(int keyCode, KeyEventType type) {
-            return sendOperationForBooleanResponse(OP_KEY_EVENT + " " + gson.toJson(new KeyEventParams(keyCode, type)));
+            return sendOperationForBooleanResponse(OP_KEY_EVENT + " " + gson.toJson(new KeyEventParams(keyCode, type)), OutputPriority.INTERACTIVE);
         }
 
         @Override
         public Sec<Boolean> performDefaultEditorAction() {
-            return sendOperationForBooleanResponse(OP_KEYBOARD_DEFAULT_EDITOR_ACTION);
+            return sendOperationForBooleanResponse(OP_KEYBOARD_DEFAULT_EDITOR_ACTION, OutputPriority.INTERACTIVE);
         }
     }
 
@@ -508,6 +836,8 @@ public class TVReceiverConnection implements Closeable {
     }
 
     public void close() {
+        // init failures and socket death both close it, possibly after it was already closed
+        if (dead) return;
         Log.d(TAG, "close()");
         dead = true;
 
@@ -522,7 +852,9 @@ public class TVReceiverConnection implements Closeable {
 
     private OperationDefinition[] getOperationDefinitions() {
         return new OperationDefinition[] {
-                new OperationDefinition(OP_EVENT_STREAM_EVENT, eventStreamSubscriptionManager::onIncomingStreamedEvent),
+                // each stream's events are handled in order, but different streams don't wait on each other
+                new OperationDefinition(OP_EVENT_STREAM_EVENT, eventStreamSubscriptionManager::onIncomingStreamedEvent)
+                        .withOrderingKey(EventStreamSubscriptionManager::eventTypeOf),
                 new OperationDefinition(OP_PING, () -> {}),
         };
     }
@@ -0,0 +1,96 @@
+package io.benwiegand.atvremote.phone.network.discovery;
+
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.MDNS_SERVICE_TYPE;
+
+import android.net.nsd.NsdManager;
+import android.net.nsd.NsdServiceInfo;
+import android.util.Log;
+
+import java.net.InetAddress;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * runs discovery in the background and hands out the addresses of every receiver it resolves, for
+ * when the address a TV had last time doesn't work anymore. it can't tell which receiver is which,
+ * so whatever connects to these has to check the certificate fingerprint.
+ */
+public class ReceiverLocator implements ServiceDiscoveryCallback {
+    private static final String TAG = ReceiverLocator.class.getSimpleName();
+
+    /**
+     * a resolved receiver
+     * @param addresses every address it resolved to, usually IPv6 and IPv4
+     * @param port its port
+     */
+    public record Receiver(List<InetAddress> addresses, int port) {}
+
+    private final ServiceExplorer serviceExplorer;
+    private final BlockingQueue<Receiver> found = new LinkedBlockingQueue<>();
+    private volatile ServiceDiscoveryException failure = null;
+    private boolean running = false;
+
+    public ReceiverLocator(NsdManager nsdManager) {
+        serviceExplorer = new ServiceExplorer(nsdManager, this);
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        serviceExplorer.startDiscovery(MDNS_SERVICE_TYPE);
+    }
+
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        serviceExplorer.stopDiscovery();
+    }
+
+    /**
+     * @param timeout how long to wait for one to be resolved, in ms
+     * @return the next receiver resolved, or null if none turned up in time
+     * @throws ServiceDiscoveryException if discovery failed and nothing is left
+     */
+    public Receiver next(long timeout) throws ServiceDiscoveryException, InterruptedException {
+        Receiver receiver = found.poll();
+        if (receiver != null) return receiver;
+
+        ServiceDiscoveryException e = failure;
+        if (e != null) throw e;
+
+        return found.poll(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void serviceDiscoveredPreResolution(String key, NsdServiceInfo partialServiceInfo) {}
+
+    @Override
+    public void serviceDiscovered(String key, NsdServiceInfo serviceInfo) {
+        List<InetAddress> addresses = ServiceExplorer.resolvedAddresses(serviceInfo);
+        if (addresses.isEmpty()) return;
+
+        Log.v(TAG, "found receiver " + key + " at " + addresses + " port " + serviceInfo.getPort());
+        found.add(new Receiver(addresses, serviceInfo.getPort()));
+    }
+
+    @Override
+    public void resolveFailed(String key, NsdServiceInfo partialServiceInfo, ServiceDiscoveryException e) {}
+
+    @Override
+    public void serviceLost(String key) {}
+
+    @Override
+    public void discoveryStarted() {}
+
+    @Override
+    public void discoveryStopped() {}
+
+    @Override
+    public void discoveryFailure(ServiceDiscoveryException e, boolean whileStopping) {
+        if (whileStopping) return;
+        Log.w(TAG, "discovery failed", e);
+        failure = e;
+    }
+}
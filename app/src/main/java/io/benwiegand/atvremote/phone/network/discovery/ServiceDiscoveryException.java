@@ -2,7 +2,6 @@ package io.benwiegand.atvremote.phone.network.discovery;
 
 import static io.benwiegand.atvremote.phone.network.discovery.ServiceExplorer.FAILURE_THE_DOCUMENTATION_LIES;
 
-import android.content.Context;
 import android.net.nsd.NsdManager;
 
 import androidx.annotation.StringRes;
@@ -10,6 +9,7 @@ import androidx.annotation.StringRes;
 import java.text.MessageFormat;
 
 import io.benwiegand.atvremote.phone.R;
+import io.benwiegand.atvremote.phone.platform.Platform;
 import io.benwiegand.atvremote.phone.ui.ErrorMessageException;
 
 public class ServiceDiscoveryException extends ErrorMessageException {
@@ -26,14 +26,14 @@ public class ServiceDiscoveryException extends ErrorMessageException {
     }
 
     @Override
-    public String getLocalizedMessage(Context context) {
+    public String getLocalizedMessage() {
         Integer stringRes = getStringResMessage();
         if (stringRes != null && R.string.discovery_failed_unexpected == stringRes) {
             return MessageFormat.format(
-                    context.getString(R.string.discovery_failed_unexpected),
+                    Platform.get().getString(R.string.discovery_failed_unexpected),
                     errorCodeDebugString(errorCode));
         }
-        return super.getLocalizedMessage(context);
+        return super.getLocalizedMessage();
     }
 
     @StringRes
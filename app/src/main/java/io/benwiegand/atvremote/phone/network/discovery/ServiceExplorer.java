@@ -2,8 +2,12 @@ package io.benwiegand.atvremote.phone.network.discovery;
 
 import android.net.nsd.NsdManager;
 import android.net.nsd.NsdServiceInfo;
+import android.os.Build;
 import android.util.Log;
 
+import java.net.InetAddress;
+import java.util.List;
+
 public class ServiceExplorer implements NsdManager.DiscoveryListener {
     private static final String TAG = ServiceExplorer.class.getSimpleName();
 
@@ -115,6 +119,18 @@ public class ServiceExplorer implements NsdManager.DiscoveryListener {
         // the documentation example has a call to stopServiceDiscovery() here, but that just seems to cause a crash
     }
 
+    /**
+     * receivers usually have both IPv6 and IPv4 addresses, but getHost() only gives one of them
+     * @return every address the service resolved to, or an empty list if it isn't resolved
+     */
+    public static List<InetAddress> resolvedAddresses(NsdServiceInfo serviceInfo) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE)
+            return serviceInfo.getHostAddresses();
+
+        InetAddress host = serviceInfo.getHost();
+        return host == null ? List.of() : List.of(host);
+    }
+
     private ServiceDiscoveryException createExceptionForErrorCode(int errorCode, Throwable t) {
         return t == null ?
                 new ServiceDiscoveryException(errorCode):
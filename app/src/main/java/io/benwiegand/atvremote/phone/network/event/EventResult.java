@@ -1,4 +0,0 @@
-package io.benwiegand.atvremote.phone.network.event;
-
-public record EventResult(String responseLine) {
-}
@@ -0,0 +1,46 @@
+package io.benwiegand.atvremote.phone.platform;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import io.benwiegand.atvremote.phone.R;
+
+public class AndroidPlatform extends Platform {
+    private final Context context;
+
+    /**
+     * @param context the application context, for string resources
+     */
+    public AndroidPlatform(Context context) {
+        this.context = context;
+    }
+
+    @Override
+    public void log(int priority, String tag, String message, Throwable t) {
+        if (priority == Log.ASSERT) {
+            android.util.Log.wtf(tag, message, t);
+            return;
+        }
+
+        if (t != null) message += "\n" + android.util.Log.getStackTraceString(t);
+        android.util.Log.println(priority, tag, message);
+    }
+
+    @Override
+    public long elapsedRealtimeNanos() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    @Override
+    public int getStringRes(ProtocolMessage message) {
+        return switch (message) {
+            case EVENT_TIMEOUT -> R.string.protocol_error_event_timeout;
+            case UNEXPECTED_ERROR -> R.string.protocol_error_unexpected;
+        };
+    }
+
+    @Override
+    public String getString(int stringRes) {
+        return context.getString(stringRes);
+    }
+}
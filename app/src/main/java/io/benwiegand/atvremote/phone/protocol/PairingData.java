@@ -6,19 +6,31 @@ import java.time.Instant;
 
 import io.benwiegand.atvremote.phone.util.ByteUtil;
 
-public record PairingData(String token, String fingerprint, String friendlyName, String lastConnectedIpAddress, long lastConnectedTimestamp) {
+public record PairingData(String token, String fingerprint, String friendlyName, String lastConnectedIpAddress, int lastConnectedPort, long lastConnectedTimestamp) {
 
+    // the port is filled in on the first connection
     public PairingData(String token, byte[] fingerprint, String friendlyName, String lastConnectedIpAddress, long lastConnectedTimestamp) {
         this(token, ByteUtil.hexOf(fingerprint), friendlyName, lastConnectedIpAddress, lastConnectedTimestamp);
     }
 
+    public PairingData(String token, String fingerprint, String friendlyName, String lastConnectedIpAddress, long lastConnectedTimestamp) {
+        this(token, fingerprint, friendlyName, lastConnectedIpAddress, -1, lastConnectedTimestamp);
+    }
+
     public Instant lastConnectedInstant() {
         if (lastConnectedTimestamp() < 0) return null;
         return Instant.ofEpochSecond(lastConnectedTimestamp());
     }
 
-    public PairingData updateLastConnection(String ipAddress, long timestamp) {
-        return new PairingData(token, fingerprint, friendlyName, ipAddress, timestamp);
+    public PairingData updateLastConnection(String ipAddress, int port, long timestamp) {
+        return new PairingData(token, fingerprint, friendlyName, ipAddress, port, timestamp);
+    }
+
+    /**
+     * @return true if it's known where to find the TV without discovering it first
+     */
+    public boolean hasLastConnectedAddress() {
+        return lastConnectedIpAddress() != null && lastConnectedPort() >= 0 && lastConnectedPort() <= 65535;
     }
 
     // for shared preferences
@@ -26,6 +38,7 @@ public record PairingData(String token, String fingerprint, String friendlyName,
     public static final String KEY_FINGERPRINT = "fingerprint";
     public static final String KEY_FRIENDLY_NAME = "name";
     public static final String KEY_LAST_CONNECTED_IP_ADDRESS = "addr";
+    public static final String KEY_LAST_CONNECTED_PORT = "port";
     public static final String KEY_LAST_CONNECTED_TIMESTAMP = "last_connected";
 
     public static PairingData readFromPreferences(SharedPreferences sp) {
@@ -42,6 +55,7 @@ public record PairingData(String token, String fingerprint, String friendlyName,
                 fingerprint,
                 sp.getString(KEY_FRIENDLY_NAME, null),
                 sp.getString(KEY_LAST_CONNECTED_IP_ADDRESS, null),
+                sp.getInt(KEY_LAST_CONNECTED_PORT, -1),
                 sp.getLong(KEY_LAST_CONNECTED_TIMESTAMP, -1)
         );
     }
@@ -52,6 +66,7 @@ public record PairingData(String token, String fingerprint, String friendlyName,
                 .putString(KEY_FINGERPRINT, fingerprint())
                 .putString(KEY_FRIENDLY_NAME, friendlyName())
                 .putString(KEY_LAST_CONNECTED_IP_ADDRESS, lastConnectedIpAddress())
+                .putInt(KEY_LAST_CONNECTED_PORT, lastConnectedPort())
                 .putLong(KEY_LAST_CONNECTED_TIMESTAMP, lastConnectedTimestamp())
                 .commit();
     }
@@ -6,7 +6,9 @@ import android.util.Log;
 
 import java.io.IOException;
 import java.security.cert.Certificate;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -91,6 +93,26 @@ public class PairingManager {
         return data;
     }
 
+    /**
+     * @return pairing data of the TV that was connected to most recently and has a known address,
+     *         or null if there isn't one
+     */
+    public PairingData fetchMostRecentPairingData() {
+        List<String> fingerprints;
+        synchronized (fingerprintMap) {
+            fingerprints = new ArrayList<>(fingerprintMap.keySet());
+        }
+
+        PairingData mostRecent = null;
+        for (String fingerprint : fingerprints) {
+            PairingData data = fetchPairingData(fingerprint);
+            if (data == null || !data.hasLastConnectedAddress()) continue;
+            if (mostRecent == null || data.lastConnectedTimestamp() > mostRecent.lastConnectedTimestamp())
+                mostRecent = data;
+        }
+        return mostRecent;
+    }
+
     private SharedPreferences sharedPreferencesForDevice(String deviceId) {
         String key = KEY_PREFIX_PAIRING_DATA + deviceId;
         Log.d(TAG, "loading " + key);
@@ -4,7 +4,7 @@ import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.EVENT_TYP
 import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.EVENT_TYPE_MEDIA_POSITION;
 import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.EVENT_TYPE_MEDIA_SESSIONS;
 import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.EVENT_TYPE_MEDIA_STATE;
-import static io.benwiegand.atvremote.phone.util.ErrorUtil.getLightStackTrace;
+import static io.benwiegand.atvremote.phone.util.StackTraceUtil.getLightStackTrace;
 
 import android.os.Handler;
 import android.os.Looper;
@@ -20,15 +20,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 import io.benwiegand.atvremote.phone.async.Sec;
-import io.benwiegand.atvremote.phone.async.SecAdapter;
 import io.benwiegand.atvremote.phone.network.TVReceiverConnection;
 import io.benwiegand.atvremote.phone.protocol.json.MediaMetaEvent;
 import io.benwiegand.atvremote.phone.protocol.json.MediaPositionEvent;
@@ -91,7 +87,15 @@ public class MediaSessionTracker {
     }
 
     private Sec<Void> subscribeFor(String type) {
-        return connection.subscribeToEventStream(type, listenerMap.get(type))
+        return onSubscribed(type, connection.subscribeToEventStream(type, listenerMap.get(type)));
+    }
+
+    private Sec<Void> subscribeFor(String type, TVReceiverConnection.OperationBatch batch) {
+        return onSubscribed(type, batch.subscribeToEventStream(type, listenerMap.get(type)));
+    }
+
+    private Sec<Void> onSubscribed(String type, Sec<Void> subscription) {
+        return subscription
                 .map(r -> {
                     subscribedEventTypes.add(type);
                     return null;
@@ -109,42 +113,29 @@ public class MediaSessionTracker {
     }
 
     public Sec<Void> init() {
-        SecAdapter.SecWithAdapter<Void> secWithAdapter = SecAdapter.createThreadless();
-
-        // subscribe to some basic low-bandwidth events
+        // subscribe to some basic low-bandwidth events, all in one round trip
+        TVReceiverConnection.OperationBatch batch = connection.batch();
         List<Sec<Void>> secs = List.of(
-                subscribeFor(EVENT_TYPE_MEDIA_SESSIONS),
-                subscribeFor(EVENT_TYPE_MEDIA_METADATA),
-                subscribeFor(EVENT_TYPE_MEDIA_STATE)
+                subscribeFor(EVENT_TYPE_MEDIA_SESSIONS, batch),
+                subscribeFor(EVENT_TYPE_MEDIA_METADATA, batch),
+                subscribeFor(EVENT_TYPE_MEDIA_STATE, batch)
         );
 
-        AtomicInteger completed = new AtomicInteger(0);
-        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
-
-        Runnable onSecCompletion = () -> {
-            if (completed.incrementAndGet() < secs.size()) return;
-
-            // all secs complete
-            if (failures.isEmpty()) {
-                secWithAdapter.secAdapter().provideResult(null);
-                return;
-            }
-
-            // there were errors
-            secWithAdapter.secAdapter().throwError(failures.peek()); // for now just return the first error
-            destroy();
-        };
+        // wait for all of them so destroy() catches every subscription that did succeed
+        Sec<Void> subscribed = Sec.allOf(secs)
+                .map(r -> (Void) null)
+                .mapError(t -> {
+                    Log.e(TAG, "failed to subscribe to media event streams", t);
+                    destroy();
+                    return t;
+                });
 
-        secs.forEach(s -> s
-                .doOnResult(r -> onSecCompletion.run())
-                .doOnError(t -> {
-                    Log.e(TAG, "failed to subscribe to a media event stream", t);
-                    failures.add(t);
-                    onSecCompletion.run();
-                })
-                .callMeWhenDone());
+        // results go to the individual secs
+        batch.send()
+                .doOnError(t -> Log.e(TAG, "failed to send subscription batch", t))
+                .callMeWhenDone();
 
-        return secWithAdapter.sec();
+        return subscribed;
     }
 
     public void destroy() {
@@ -12,6 +12,8 @@ import androidx.appcompat.app.AlertDialog;
 
 import java.io.IOException;
 import java.security.KeyManagementException;
+import java.util.ArrayList;
+import java.util.List;
 
 import io.benwiegand.atvremote.phone.R;
 import io.benwiegand.atvremote.phone.auth.ssl.CorruptedKeystoreException;
@@ -28,6 +30,10 @@ public abstract class ConnectingActivity extends DynamicColorsCompatActivity imp
     public static final String EXTRA_DEVICE_NAME = "name";
     public static final String EXTRA_HOSTNAME = "addr";
     public static final String EXTRA_PORT_NUMBER = "port";
+    // optional, other addresses of the same TV (like its IPv6 and IPv4 addresses from discovery)
+    public static final String EXTRA_ADDRESSES = "addrs";
+    // optional, for a paired TV that can be looked for if it's not at the given address
+    public static final String EXTRA_FINGERPRINT = "fingerprint";
 
     // connection
     private Intent serviceIntent;
@@ -35,7 +41,10 @@ public abstract class ConnectingActivity extends DynamicColorsCompatActivity imp
     protected ConnectionService.ConnectionServiceBinder binder = null;
     protected String deviceName;
     protected String remoteHostname;
+    // remoteHostname first, then the rest of EXTRA_ADDRESSES. these are raced when connecting.
+    protected List<String> remoteHostnames;
     protected int remotePort;
+    protected String remoteFingerprint;
     private boolean foreground = true;
 
     @Override
@@ -46,6 +55,7 @@ public abstract class ConnectingActivity extends DynamicColorsCompatActivity imp
         deviceName = getIntent().getStringExtra(EXTRA_DEVICE_NAME);
         remoteHostname = getIntent().getStringExtra(EXTRA_HOSTNAME);
         remotePort = getIntent().getIntExtra(EXTRA_PORT_NUMBER, -1);
+        remoteFingerprint = getIntent().getStringExtra(EXTRA_FINGERPRINT);
 
         if (remoteHostname == null || remotePort < 0 || remotePort > 65535) {
             Log.e(TAG, "PairingActivity not launched with required intent extras");
@@ -55,6 +65,14 @@ public abstract class ConnectingActivity extends DynamicColorsCompatActivity imp
         }
         if (deviceName == null) deviceName = remoteHostname;
 
+        remoteHostnames = new ArrayList<>();
+        remoteHostnames.add(remoteHostname);
+        String[] addresses = getIntent().getStringArrayExtra(EXTRA_ADDRESSES);
+        if (addresses != null) {
+            for (String address : addresses)
+                if (!remoteHostnames.contains(address)) remoteHostnames.add(address);
+        }
+
         serviceIntent = new Intent(this, ConnectionService.class);
         startService(serviceIntent);
         boolean bindResult = bindService(serviceIntent, connectionServiceConnection, BIND_IMPORTANT | BIND_AUTO_CREATE);
@@ -77,7 +77,7 @@ public class PairingActivity extends ConnectingActivity {
 
     private void connect() {
         showLoadingScreen(R.string.title_pairing_connecting, MessageFormat.format(getString(R.string.description_pairing_connecting), deviceName));
-        binder.connect(deviceName, remoteHostname, remotePort, true);
+        binder.connect(deviceName, remoteHostnames, remotePort, true);
     }
 
     @Override
@@ -174,6 +174,7 @@ public class PairingActivity extends ConnectingActivity {
             Intent intent = new Intent(this, RemoteActivity.class)
                     .putExtra(EXTRA_DEVICE_NAME, deviceName)
                     .putExtra(EXTRA_HOSTNAME, remoteHostname)
+                    .putExtra(EXTRA_ADDRESSES, remoteHostnames.toArray(new String[0]))
                     .putExtra(EXTRA_PORT_NUMBER, remotePort);
             startActivity(intent);
             finish();
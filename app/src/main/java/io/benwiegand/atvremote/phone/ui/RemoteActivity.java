@@ -35,6 +35,8 @@ import com.google.android.material.navigation.NavigationBarView;
 
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
@@ -228,7 +230,11 @@ public class RemoteActivity extends ConnectingActivity {
 
     private void connect() {
         setConnectionStatus(R.string.connection_status_connecting, true, false);
-        binder.connect(deviceName, remoteHostname, remotePort, false);
+        if (remoteFingerprint != null) {
+            binder.connectToKnown(deviceName, remoteHostnames, remotePort, remoteFingerprint);
+        } else {
+            binder.connect(deviceName, remoteHostnames, remotePort, false);
+        }
     }
 
     @Override
@@ -266,6 +272,7 @@ public class RemoteActivity extends ConnectingActivity {
     @Override
     public void onConnected(TVReceiverConnection connection) {
         inputHandler = connection.getInputForwarder();
+        connection.setAsyncErrorListener(this::handleActionError);
         capabilities = connection.getCapabilities();
 
         if (mediaSessionTracker != null)
@@ -288,6 +295,7 @@ public class RemoteActivity extends ConnectingActivity {
             Intent intent = new Intent(this, PairingActivity.class)
                     .putExtra(EXTRA_DEVICE_NAME, deviceName)
                     .putExtra(EXTRA_HOSTNAME, remoteHostname)
+                    .putExtra(EXTRA_ADDRESSES, remoteHostnames.toArray(new String[0]))
                     .putExtra(EXTRA_PORT_NUMBER, remotePort);
             startActivity(intent);
             finish();
@@ -356,10 +364,43 @@ public class RemoteActivity extends ConnectingActivity {
 
     }
 
+    /**
+     * remembers the repeats of a held key, so the ones that haven't gone out yet can be cancelled
+     * when it's let go. cancelling withdraws them from the output queue, which works the same for
+     * fire-and-forget repeats, since those only finish once they're written. only used on the ui
+     * thread.
+     */
+    private static class HeldKey {
+        private boolean held = false;
+        private final List<Sec<Void>> repeats = new ArrayList<>();
+
+        void onDown(Sec<Void> sec) {
+            // the first down always goes out, otherwise the up would be on its own
+            if (!held) {
+                held = true;
+                return;
+            }
+            repeats.removeIf(Sec::isFinished);
+            repeats.add(sec);
+        }
+
+        void onUp() {
+            held = false;
+            repeats.forEach(Sec::cancel);
+            repeats.clear();
+        }
+    }
+
     private Consumer<KeyEventType> wrapToHandleButtonResult(BiFunction<InputHandler, KeyEventType, Sec<Void>> sender) {
+        HeldKey heldKey = new HeldKey();
         return event -> {
             if (inputHandler == null) return;
-            sender.apply(inputHandler, event)
+            if (event == KeyEventType.UP) heldKey.onUp();
+
+            Sec<Void> sec = sender.apply(inputHandler, event);
+            if (event == KeyEventType.DOWN) heldKey.onDown(sec);
+
+            sec
                     .doOnError(this::handleActionError)
                     .callMeWhenDone();
         };
@@ -31,9 +31,12 @@ import java.util.List;
 import java.util.Map;
 
 import io.benwiegand.atvremote.phone.R;
+import io.benwiegand.atvremote.phone.auth.ssl.KeystoreManager;
 import io.benwiegand.atvremote.phone.network.discovery.ServiceDiscoveryCallback;
 import io.benwiegand.atvremote.phone.network.discovery.ServiceDiscoveryException;
 import io.benwiegand.atvremote.phone.network.discovery.ServiceExplorer;
+import io.benwiegand.atvremote.phone.protocol.PairingData;
+import io.benwiegand.atvremote.phone.protocol.PairingManager;
 import io.benwiegand.atvremote.phone.util.ErrorUtil;
 import io.benwiegand.atvremote.phone.util.UiUtil;
 
@@ -72,6 +75,39 @@ public class TVDiscoveryActivity extends DynamicColorsCompatActivity implements
             handleNotificationPermission();
         }
 
+        // when launched fresh, go straight to the last TV. this stays underneath, so back still
+        // gets here if that's not the one the user wants.
+        if (savedInstanceState == null && Intent.ACTION_MAIN.equals(getIntent().getAction()))
+            launchLastConnectedRemote();
+    }
+
+    private void launchLastConnectedRemote() {
+        // the keystore and pairing data are slow to load, so look it up in a new thread
+        new Thread(() -> {
+            PairingData pairingData;
+            try {
+                PairingManager pairingManager = new PairingManager(this, new KeystoreManager(this));
+                pairingData = pairingManager.fetchMostRecentPairingData();
+            } catch (Throwable t) {
+                Log.w(TAG, "failed to look up last connected TV", t);
+                return;
+            }
+            if (pairingData == null) return;
+
+            runOnUiThread(() -> {
+                if (isFinishing() || isDestroyed()) return;
+
+                Log.d(TAG, "starting remote activity for last connected TV");
+                Intent intent = new Intent(this, RemoteActivity.class);
+                if (pairingData.friendlyName() != null)
+                    intent.putExtra(RemoteActivity.EXTRA_DEVICE_NAME, pairingData.friendlyName());
+                intent.putExtra(RemoteActivity.EXTRA_HOSTNAME, pairingData.lastConnectedIpAddress());
+                intent.putExtra(RemoteActivity.EXTRA_PORT_NUMBER, pairingData.lastConnectedPort());
+                intent.putExtra(RemoteActivity.EXTRA_FINGERPRINT, pairingData.fingerprint());
+
+                startActivity(intent);
+            });
+        }).start();
     }
 
     @RequiresApi(api = Build.VERSION_CODES.TIRAMISU)
@@ -135,7 +171,7 @@ public class TVDiscoveryActivity extends DynamicColorsCompatActivity implements
         retryButton.setVisibility(View.GONE);
     }
 
-    private void setEntryViewResolved(View receiverEntry, String deviceName, String hostname, int port) {
+    private void setEntryViewResolved(View receiverEntry, String deviceName, String hostname, String[] addresses, int port) {
         TextView uriText = receiverEntry.findViewById(R.id.uri);
         View resolvedIndicator = receiverEntry.findViewById(R.id.resolved_indicator);
         View resolvingIndicator = receiverEntry.findViewById(R.id.resolving_indicator);
@@ -151,6 +187,7 @@ public class TVDiscoveryActivity extends DynamicColorsCompatActivity implements
             Intent intent = new Intent(this, RemoteActivity.class);
             intent.putExtra(RemoteActivity.EXTRA_DEVICE_NAME, deviceName);
             intent.putExtra(RemoteActivity.EXTRA_HOSTNAME, hostname);
+            intent.putExtra(RemoteActivity.EXTRA_ADDRESSES, addresses);
             intent.putExtra(RemoteActivity.EXTRA_PORT_NUMBER, port);
 
             startActivity(intent);
@@ -171,7 +208,7 @@ public class TVDiscoveryActivity extends DynamicColorsCompatActivity implements
 
         String message;
         if (resolveError instanceof ErrorMessageException e) {
-            message = e.getLocalizedMessage(this);
+            message = e.getLocalizedMessage();
         } else {
             message = ErrorUtil.getExceptionLine(this, resolveError);
         }
@@ -208,6 +245,9 @@ public class TVDiscoveryActivity extends DynamicColorsCompatActivity implements
     private void updateOrInflateEntry(String key, NsdServiceInfo serviceInfo, Throwable resolveError) {
         InetAddress host = serviceInfo.getHost();
         String hostname = host == null ? null : host.getHostAddress();
+        String[] addresses = ServiceExplorer.resolvedAddresses(serviceInfo).stream()
+                .map(InetAddress::getHostAddress)
+                .toArray(String[]::new);
         String deviceName = serviceInfo.getServiceName();
         int port = serviceInfo.getPort();
 
@@ -227,7 +267,7 @@ public class TVDiscoveryActivity extends DynamicColorsCompatActivity implements
             } else if (host == null) {
                 setEntryViewResolving(receiverEntry);
             } else {
-                setEntryViewResolved(receiverEntry, deviceName, hostname, port);
+                setEntryViewResolved(receiverEntry, deviceName, hostname, addresses, port);
             }
 
         });
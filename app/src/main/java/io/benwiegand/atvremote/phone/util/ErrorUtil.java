@@ -1,6 +1,7 @@
 package io.benwiegand.atvremote.phone.util;
 
 import static io.benwiegand.atvremote.phone.util.UiUtil.inflateButtonPreset;
+import static io.benwiegand.atvremote.phone.util.StackTraceUtil.getStackTrace;
 import static io.benwiegand.atvremote.phone.util.UiUtil.inflateDropdown;
 
 import android.content.Context;
@@ -51,7 +52,7 @@ public class ErrorUtil {
             // always prefer the higher-level error message if available
             if (descriptionRes() != null) return context.getString(descriptionRes());
             if (descriptionStr() != null) return descriptionStr();
-            if (throwable() instanceof ErrorMessageException e) return e.getLocalizedMessage(context);
+            if (throwable() instanceof ErrorMessageException e) return e.getLocalizedMessage();
             return generateErrorDescription(context, throwable());
         }
 
@@ -122,7 +123,7 @@ public class ErrorUtil {
         if (t instanceof ErrorMessageException e)
             return MessageFormat.format(
                     context.getString(R.string.exception_line_error_message),
-                    e.getLocalizedMessage(context));
+                    e.getLocalizedMessage());
 
         return MessageFormat.format(
                 context.getString(R.string.exception_line),
@@ -130,66 +131,4 @@ public class ErrorUtil {
                 t.getLocalizedMessage()
         );
     }
-
-
-    private static String getStackTraceExceptionLine(Throwable t) {
-        return t.getClass().getName() + ": " + t.getMessage();
-    }
-
-    private static String getStackTraceElementLine(StackTraceElement element) {
-        return "    at "
-                + element.getClassName()
-                + "."
-                + element.getMethodName()
-                + "("
-                + element.getFileName()
-                + ":"
-                + element.getLineNumber()
-                + ")";
-    }
-
-    public static String getStackTrace(Throwable t) {
-        StringBuilder sb = new StringBuilder();
-        boolean top = true;
-
-        do {
-            if (!top) sb.append("Caused by: ");
-            top = false;
-
-            sb.append(getStackTraceExceptionLine(t))
-                    .append("\n");
-
-            for (StackTraceElement element : t.getStackTrace()) sb
-                    .append(getStackTraceElementLine(element))
-                    .append("\n");
-
-        } while ((t = t.getCause()) != null);
-
-        return sb.toString();
-    }
-
-    public static String getLightStackTrace(Throwable t) {
-        StringBuilder sb = new StringBuilder();
-        boolean top = true;
-
-        do {
-            if (!top) sb.append("Caused by: ");
-            top = false;
-
-            sb.append(getStackTraceExceptionLine(t)).append("\n");
-
-            for (StackTraceElement element : t.getStackTrace()) {
-                // filter for my app package
-                if (!element.getClassName().startsWith("io.benwiegand.atvremote.phone")) continue;
-                sb.append(getStackTraceElementLine(element)).append("\n");
-            }
-
-        } while ((t = t.getCause()) != null);
-
-        return sb.toString();
-    }
-
-    public static String getLightStackTrace() {
-        return getLightStackTrace(new Throwable().fillInStackTrace());
-    }
 }
@@ -0,0 +1,77 @@
+package io.benwiegand.atvremote.phone.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.benwiegand.atvremote.phone.async.KeyedSerialExecutor;
+import io.benwiegand.atvremote.phone.protocol.Opcodes;
+
+/**
+ * the incoming side of an event: finding the operation and handing it to the executor that
+ * keeps events of the same operation in order.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBenchmark {
+    private static final int EVENTS_PER_INVOCATION = 1024;
+    private static final String[] LINES = {
+            "AAAB DPAD_UP CLICK",
+            "AAAC VOLUME_DOWN DOWN",
+            "AAAD EVENT EVENT_TYPE_MEDIA_STATE {}",
+            "AAAE NOT_AN_OPERATION",
+    };
+
+    @Param({"1", "4", "16"})
+    public int keys;
+
+    private ExecutorService threadPool;
+    private KeyedSerialExecutor executor;
+    private int line = 0;
+
+    @Setup
+    public void setup() {
+        threadPool = Executors.newFixedThreadPool(4);
+        executor = new KeyedSerialExecutor(threadPool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        threadPool.shutdownNow();
+    }
+
+    @Benchmark
+    public int resolveOpcode() {
+        String s = LINES[line++ & (LINES.length - 1)];
+        int end = s.indexOf(' ', 5);
+        return Opcodes.opcodeOf(s, 5, end < 0 ? s.length() : end);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS_PER_INVOCATION)
+    public void keyedDispatch() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(EVENTS_PER_INVOCATION);
+        for (int i = 0; i < EVENTS_PER_INVOCATION; i++)
+            executor.execute(i % keys, latch::countDown);
+        latch.await();
+    }
+}
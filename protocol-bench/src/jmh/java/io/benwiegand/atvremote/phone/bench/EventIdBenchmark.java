@@ -0,0 +1,65 @@
+package io.benwiegand.atvremote.phone.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import io.benwiegand.atvremote.phone.stuff.IntMap;
+
+/**
+ * event id allocation the way EventJuggler does it: sequential ids that skip over anything still
+ * in flight, with a fixed number of events waiting for responses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventIdBenchmark {
+    private static final int EVENT_ID_MASK = 0xFFFFFF;
+
+    @Param({"1", "64", "1024"})
+    public int inFlight;
+
+    private final IntMap<Object> responseMap = new IntMap<>();
+    private int[] window;
+    private int windowPosition = 0;
+    private int nextEventId = 0;
+
+    @Setup
+    public void setup() {
+        window = new int[inFlight];
+        for (int i = 0; i < inFlight; i++) window[i] = allocate();
+    }
+
+    private int allocate() {
+        int eventId;
+        do {
+            eventId = nextEventId;
+            nextEventId = (nextEventId + 1) & EVENT_ID_MASK;
+        } while (responseMap.containsKey(eventId));
+        responseMap.putIfAbsent(eventId, this);
+        return eventId;
+    }
+
+    @Benchmark
+    public int allocateAndRespond() {
+        // the oldest event gets its response, a new one is sent
+        responseMap.remove(window[windowPosition]);
+        int eventId = allocate();
+        window[windowPosition] = eventId;
+        windowPosition = (windowPosition + 1) % window.length;
+        return eventId;
+    }
+}
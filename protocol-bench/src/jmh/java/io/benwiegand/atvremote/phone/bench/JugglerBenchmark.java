@@ -0,0 +1,140 @@
+package io.benwiegand.atvremote.phone.bench;
+
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.CHARSET;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_DPAD_UP;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.net.ssl.SSLContext;
+
+import io.benwiegand.atvremote.phone.async.Sec;
+import io.benwiegand.atvremote.phone.network.EventJuggler;
+import io.benwiegand.atvremote.phone.network.TCPReader;
+import io.benwiegand.atvremote.phone.network.TCPWriter;
+import io.benwiegand.atvremote.phone.network.event.EventResult;
+import io.benwiegand.atvremote.phone.network.event.OutputPriority;
+import io.benwiegand.atvremote.phone.protocol.OperationDefinition;
+
+/**
+ * events through an EventJuggler on each end of a loopback connection: queueing, batching, event
+ * ids, dispatch to the operation handler on the other side, and matching up the response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JugglerBenchmark {
+    private static final long TIMEOUT = 5000;
+    private static final long PING_INTERVAL = 5000;
+    private static final long PING_TIMEOUT = 10000;
+    private static final int BURST_SIZE = 256;
+    private static final String EVENT = OP_DPAD_UP + " CLICK";
+
+    @Param({"false", "true"})
+    public boolean tls;
+
+    @Param({"false", "true"})
+    public boolean framed;
+
+    private ServerSocket serverSocket;
+    private EventJuggler client;
+    private EventJuggler receiver;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        SSLContext sslContext = tls ? LoopbackBenchmark.createSSLContext() : null;
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+
+        serverSocket = tls ?
+                sslContext.getServerSocketFactory().createServerSocket(0, 1, loopback) :
+                new ServerSocket(0, 1, loopback);
+
+        // the tls handshake happens once the readers start reading, so nothing blocks here
+        Socket clientSocket = tls ?
+                sslContext.getSocketFactory().createSocket(loopback, serverSocket.getLocalPort()) :
+                new Socket(loopback, serverSocket.getLocalPort());
+        Socket receiverSocket = serverSocket.accept();
+
+        receiver = createJuggler(receiverSocket);
+        receiver.start(new OperationDefinition[] {
+                new OperationDefinition(OP_DPAD_UP, extra -> {}),
+        });
+
+        client = createJuggler(clientSocket);
+        client.start(new OperationDefinition[0]);
+    }
+
+    private EventJuggler createJuggler(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        TCPReader reader = new TCPReader(socket.getInputStream(), CHARSET);
+        TCPWriter writer = new TCPWriter(socket.getOutputStream(), CHARSET);
+        if (framed) {
+            reader.switchToFrames();
+            writer.switchToFrames();
+        }
+        return new EventJuggler(socket, reader, writer, t -> {}, PING_INTERVAL, PING_TIMEOUT);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        client.close();
+        receiver.close();
+        serverSocket.close();
+    }
+
+    private static void await(CountDownLatch latch, AtomicReference<Throwable> error) throws Throwable {
+        if (!latch.await(TIMEOUT, TimeUnit.MILLISECONDS)) throw new IllegalStateException("no response within timeout");
+        if (error.get() != null) throw error.get();
+    }
+
+    private static void countDownWhenDone(Sec<EventResult> sec, CountDownLatch latch, AtomicReference<Throwable> error) {
+        sec.doOnResult(r -> latch.countDown())
+                .doOnError(t -> {
+                    error.set(t);
+                    latch.countDown();
+                })
+                .callMeWhenDone();
+    }
+
+    @Benchmark
+    public void roundTrip() throws Throwable {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        countDownWhenDone(client.sendEvent(EVENT, OutputPriority.CONTROL), latch, error);
+        await(latch, error);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OperationsPerInvocation(BURST_SIZE)
+    public void burst() throws Throwable {
+        CountDownLatch latch = new CountDownLatch(BURST_SIZE);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        for (int i = 0; i < BURST_SIZE; i++)
+            countDownWhenDone(client.sendEvent(EVENT, OutputPriority.CONTROL), latch, error);
+        await(latch, error);
+    }
+}
@@ -0,0 +1,58 @@
+package io.benwiegand.atvremote.phone.bench;
+
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.CHARSET;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import io.benwiegand.atvremote.phone.network.MessageDecoder;
+
+/**
+ * decoding incoming lines, like a stream of media position events.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LineDecodeBenchmark {
+    private static final String POSITION_EVENT = "AAAB EVENT EVENT_TYPE_MEDIA_POSITION {\"id\":\"com.example.player/1\",\"position\":123456,\"duration\":3600000,\"speed\":1.0}";
+
+    @Param({"false", "true"})
+    public boolean direct;
+
+    private MessageDecoder decoder;
+
+    @Setup
+    public void setup() {
+        byte[] lines = (POSITION_EVENT + "\n").repeat(64).getBytes(CHARSET);
+        decoder = new MessageDecoder(new RepeatingInputStream(lines), CHARSET, 4096, direct);
+    }
+
+    @Benchmark
+    public String nextLine() throws IOException {
+        String line;
+        while ((line = decoder.nextLine()) == null) decoder.fill();
+        return line;
+    }
+
+    @Benchmark
+    public CharSequence nextLineView() throws IOException {
+        CharSequence line;
+        while ((line = decoder.nextLineView()) == null) decoder.fill();
+        return line;
+    }
+}
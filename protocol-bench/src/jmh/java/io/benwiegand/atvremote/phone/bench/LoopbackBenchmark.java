@@ -0,0 +1,170 @@
+package io.benwiegand.atvremote.phone.bench;
+
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.CHARSET;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.KeyStore;
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+
+import io.benwiegand.atvremote.phone.network.TCPReader;
+import io.benwiegand.atvremote.phone.network.TCPWriter;
+import io.benwiegand.atvremote.phone.network.frame.Frame;
+import io.benwiegand.atvremote.phone.protocol.Opcodes;
+import io.benwiegand.atvremote.phone.protocol.ProtocolConstants;
+
+/**
+ * a full round trip through TCPWriter and TCPReader over loopback, with an echo server on the
+ * other end. the tls keystore is generated by the gradle build (see build.gradle).
+ * {@link JugglerBenchmark} does the same with an EventJuggler on each end.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoopbackBenchmark {
+    private static final long TIMEOUT = 5000;
+    private static final String EVENT = "AAAB DPAD_UP CLICK";
+    private static final int OPCODE = Opcodes.opcodeOf(ProtocolConstants.OP_DPAD_UP, 0, ProtocolConstants.OP_DPAD_UP.length());
+    private static final byte[] PAYLOAD = "CLICK".getBytes(CHARSET);
+
+    @Param({"false", "true"})
+    public boolean tls;
+
+    @Param({"false", "true"})
+    public boolean framed;
+
+    private ServerSocket serverSocket;
+    private Socket clientSocket;
+    private Thread echoThread;
+    private TCPReader reader;
+    private TCPWriter writer;
+    private int eventId = 0;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        SSLContext sslContext = tls ? createSSLContext() : null;
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+
+        serverSocket = tls ?
+                sslContext.getServerSocketFactory().createServerSocket(0, 1, loopback) :
+                new ServerSocket(0, 1, loopback);
+
+        echoThread = new Thread(this::echoLoop, "echo");
+        echoThread.start();
+
+        clientSocket = tls ?
+                sslContext.getSocketFactory().createSocket(loopback, serverSocket.getLocalPort()) :
+                new Socket(loopback, serverSocket.getLocalPort());
+        clientSocket.setTcpNoDelay(true);
+        if (clientSocket instanceof SSLSocket sslSocket) sslSocket.startHandshake();
+
+        reader = new TCPReader(clientSocket.getInputStream(), CHARSET);
+        writer = new TCPWriter(clientSocket.getOutputStream(), CHARSET);
+        if (framed) {
+            reader.switchToFrames();
+            writer.switchToFrames();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        reader.close();
+        writer.close();
+        clientSocket.close();
+        serverSocket.close();
+        echoThread.join(TIMEOUT);
+    }
+
+    private void echoLoop() {
+        try (Socket socket = serverSocket.accept()) {
+            socket.setTcpNoDelay(true);
+            TCPReader echoReader = new TCPReader(socket.getInputStream(), CHARSET);
+            TCPWriter echoWriter = new TCPWriter(socket.getOutputStream(), CHARSET);
+            if (framed) {
+                echoReader.switchToFrames();
+                echoWriter.switchToFrames();
+            }
+
+            while (!echoReader.isDead()) {
+                if (framed) {
+                    Frame frame = echoReader.nextFrame(TIMEOUT);
+                    if (frame == null) continue;
+                    echoWriter.sendFrame(Frame.response(frame.eventId(), frame.opcode(), frame.payload()));
+                } else {
+                    String line = echoReader.nextLine(TIMEOUT);
+                    if (line == null) continue;
+                    echoWriter.sendLine(line);
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // benchmark is over
+        }
+    }
+
+    static SSLContext createSSLContext() throws Exception {
+        String path = System.getProperty("bench.keystore");
+        char[] password = System.getProperty("bench.keystorePassword", "").toCharArray();
+        if (path == null) throw new IllegalStateException("bench.keystore is not set, run through gradle");
+
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream is = new FileInputStream(path)) {
+            keyStore.load(is, password);
+        }
+
+        // trust the server's own self-signed certificate
+        KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        trustStore.load(null, null);
+        Enumeration<String> aliases = keyStore.aliases();
+        while (aliases.hasMoreElements()) {
+            String alias = aliases.nextElement();
+            trustStore.setCertificateEntry(alias, keyStore.getCertificate(alias));
+        }
+
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(keyStore, password);
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(trustStore);
+
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(kmf.getKeyManagers(), tmf.getTrustManagers(), null);
+        return sslContext;
+    }
+
+    @Benchmark
+    public Object roundTrip() throws IOException, InterruptedException {
+        if (framed) {
+            writer.sendFrame(Frame.event(eventId++, OPCODE, PAYLOAD));
+            return reader.nextFrame(TIMEOUT);
+        } else {
+            writer.sendLine(EVENT);
+            return reader.nextLine(TIMEOUT);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package io.benwiegand.atvremote.phone.bench;
+
+import java.io.InputStream;
+
+/**
+ * endlessly repeats the same bytes, so decoders can be benchmarked in a steady state.
+ */
+class RepeatingInputStream extends InputStream {
+    private final byte[] bytes;
+    private int position = 0;
+
+    RepeatingInputStream(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    @Override
+    public int read() {
+        byte b = bytes[position];
+        position = (position + 1) % bytes.length;
+        return b & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        int n = Math.min(len, bytes.length - position);
+        System.arraycopy(bytes, position, b, off, n);
+        position = (position + n) % bytes.length;
+        return n;
+    }
+}
@@ -0,0 +1,60 @@
+package io.benwiegand.atvremote.phone.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import io.benwiegand.atvremote.phone.async.Sec;
+import io.benwiegand.atvremote.phone.async.SecAdapter;
+
+/**
+ * a response going through a typical chain of Sec maps, like TVReceiverConnection does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecBenchmark {
+
+    @Benchmark
+    public void chainThenProvide(Blackhole bh) {
+        SecAdapter.SecWithAdapter<String> secWithAdapter = SecAdapter.createThreadless();
+        secWithAdapter.sec()
+                .map(String::length)
+                .map(length -> length > 0)
+                .doOnResult(bh::consume)
+                .callMeWhenDone();
+        secWithAdapter.secAdapter().provideResult("OK");
+    }
+
+    @Benchmark
+    public void provideThenChain(Blackhole bh) {
+        Sec.premeditatedResult("OK")
+                .map(String::length)
+                .map(length -> length > 0)
+                .doOnResult(bh::consume)
+                .callMeWhenDone();
+    }
+
+    @Benchmark
+    public void error(Blackhole bh) {
+        SecAdapter.SecWithAdapter<String> secWithAdapter = SecAdapter.createThreadless();
+        secWithAdapter.sec()
+                .map(String::length)
+                .mapError(t -> t)
+                .doOnError(bh::consume)
+                .callMeWhenDone();
+        secWithAdapter.secAdapter().throwError(new RuntimeException());
+    }
+}
@@ -0,0 +1,23 @@
+package io.benwiegand.atvremote.phone.async;
+
+import java.util.List;
+
+/**
+ * several Secs failed with different errors. the first one (in the order the Secs were given) is
+ * the cause, the rest show up as suppressed in stack traces, and all of them are in {@link #getErrors()}.
+ */
+public class CompositeException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Throwable> errors;
+
+    public CompositeException(List<Throwable> errors) {
+        super(errors.size() + " errors, first: " + errors.get(0), errors.get(0));
+        this.errors = List.copyOf(errors);
+        for (int i = 1; i < errors.size(); i++) addSuppressed(errors.get(i));
+    }
+
+    public List<Throwable> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,60 @@
+package io.benwiegand.atvremote.phone.async;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * passes results and errors on to several adapters
+ * @param adapters the adapters
+ */
+public record FanOutSecAdapter<T>(List<SecAdapter<T>> adapters) implements SecAdapter<T> {
+
+    /**
+     * combines two adapters, flattening them if either is already a FanOutSecAdapter
+     */
+    public static <T> FanOutSecAdapter<T> of(SecAdapter<T> first, SecAdapter<T> second) {
+        List<SecAdapter<T>> adapters = new ArrayList<>();
+        addFlattened(adapters, first);
+        addFlattened(adapters, second);
+        return new FanOutSecAdapter<>(adapters);
+    }
+
+    private static <T> void addFlattened(List<SecAdapter<T>> adapters, SecAdapter<T> adapter) {
+        if (adapter instanceof FanOutSecAdapter<T> fanOut) adapters.addAll(fanOut.adapters());
+        else adapters.add(adapter);
+    }
+
+    @Override
+    public void provideResult(T result) {
+        for (SecAdapter<T> adapter : adapters) adapter.provideResult(result);
+    }
+
+    @Override
+    public void throwError(Throwable t) {
+        for (SecAdapter<T> adapter : adapters) adapter.throwError(t);
+    }
+
+    /**
+     * @return true only if every adapter was cancelled
+     */
+    @Override
+    public boolean isCancelled() {
+        for (SecAdapter<T> adapter : adapters) {
+            if (!adapter.isCancelled()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * the handler is only called once every adapter was cancelled, since the others still want the result
+     */
+    @Override
+    public void setCancelHandler(Runnable handler) {
+        AtomicInteger remaining = new AtomicInteger(adapters.size());
+        Runnable countdown = () -> {
+            if (remaining.decrementAndGet() == 0) handler.run();
+        };
+        for (SecAdapter<T> adapter : adapters) adapter.setCancelHandler(countdown);
+    }
+}
@@ -0,0 +1,88 @@
+package io.benwiegand.atvremote.phone.async;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import io.benwiegand.atvremote.phone.platform.Log;
+
+/**
+ * runs tasks on another executor, but tasks with the same key run one at a time in the order they
+ * were submitted. tasks with different keys can still run in parallel.
+ */
+public class KeyedSerialExecutor {
+    private static final String TAG = KeyedSerialExecutor.class.getSimpleName();
+
+    // after this many tasks in a row, a key gives its thread back so other keys get a chance
+    private static final int MAX_TASKS_PER_TURN = 16;
+
+    private final Executor executor;
+
+    // keys with a task currently running, mapped to the tasks waiting behind it
+    private final Map<Object, Queue<Runnable>> pending = new HashMap<>();
+
+    public KeyedSerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @param key tasks with equal keys run in order
+     * @param task the task
+     */
+    public void execute(Object key, Runnable task) {
+        synchronized (pending) {
+            Queue<Runnable> queue = pending.get(key);
+            if (queue != null) {
+                // a task for this key is already running, it'll get to this one
+                queue.add(task);
+                return;
+            }
+            pending.put(key, new ArrayDeque<>());
+        }
+
+        submit(key, task);
+    }
+
+    private void submit(Object key, Runnable task) {
+        try {
+            executor.execute(() -> runTasks(key, task));
+        } catch (Throwable t) {
+            synchronized (pending) {
+                pending.remove(key);
+            }
+            throw t;
+        }
+    }
+
+    private void runTasks(Object key, Runnable task) {
+        for (int i = 0; i < MAX_TASKS_PER_TURN; i++) {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                // don't let one task hold up the rest
+                Log.e(TAG, "uncaught exception in task for key: " + key, t);
+            }
+
+            synchronized (pending) {
+                task = pending.get(key).poll();
+                if (task == null) {
+                    pending.remove(key);
+                    return;
+                }
+            }
+        }
+
+        submit(key, task);
+    }
+
+    /**
+     * @return number of keys with tasks running or waiting
+     */
+    public int activeKeys() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+}
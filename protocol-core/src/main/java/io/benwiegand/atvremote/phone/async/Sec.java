@@ -0,0 +1,345 @@
+package io.benwiegand.atvremote.phone.async;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import io.benwiegand.atvremote.phone.platform.Log;
+
+// as in "just a sec"
+public class Sec<T> {
+    private static final String TAG = Sec.class.getSimpleName();
+
+    /*
+     * the whole lifecycle is in one int, and every transition is a single atomic update:
+     *  - ARMED: callbacks (or a map stage) are set up, no more changes allowed
+     *  - COMPLETING: someone claimed the right to provide the result/error
+     *  - DONE: result/error are written and visible
+     *  - CANCELLED: set along with COMPLETING by cancel(). the producer doesn't know about it, so
+     *    anything it provides afterward is ignored instead of being an error.
+     * callbacks run exactly once, on whichever thread's update makes the state ARMED | DONE.
+     * the plain fields are written before the update that publishes them and only read after
+     * observing it.
+     */
+    private static final int ARMED = 1;
+    private static final int COMPLETING = 1 << 1;
+    private static final int DONE = 1 << 2;
+    private static final int CANCELLED = 1 << 3;
+
+    // stands in for the cancel handler once it has been called (or there wasn't one)
+    private static final Runnable CANCEL_HANDLER_CALLED = () -> {};
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<Sec> STATE = AtomicIntegerFieldUpdater.newUpdater(Sec.class, "state");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Sec, Runnable> CANCEL_HANDLER = AtomicReferenceFieldUpdater.newUpdater(Sec.class, Runnable.class, "cancelHandler");
+
+    private volatile int state = 0;
+    private T result = null;
+    private Throwable error = null;
+
+    private Consumer<T> onResult = null;
+    private Consumer<Throwable> onError = null;
+
+    // fused map stage: completes the next Sec directly instead of going through callbacks + an adapter
+    private Sec<Object> next = null;
+    private Function<T, ?> resultMap = null;
+    private Function<Throwable, Throwable> errorMap = null;
+
+    // cancellation goes up the chain to the Sec the producer knows about
+    private Sec<?> upstream = null;
+    private volatile Runnable cancelHandler = null;
+
+    Sec() {}
+
+    Adapter createAdapter() {
+        return new Adapter();
+    }
+
+    public boolean isFinished() {
+        return (state & DONE) != 0;
+    }
+
+    public boolean isSuccessful() {
+        if (!isFinished()) throw new IllegalStateException("not finished, success is not yet known");
+        return error == null;
+    }
+
+    public T getResult() {
+        if (!isFinished()) throw new IllegalStateException("not finished, result doesn't exist yet");
+        return result;
+    }
+
+    public Throwable getError() {
+        if (!isFinished()) throw new IllegalStateException("not finished, error doesn't exist yet");
+        return error;
+    }
+
+    public boolean isCancelled() {
+        return (state & CANCELLED) != 0;
+    }
+
+    public T getResultOrThrow() throws Throwable {
+        if (!isFinished()) throw new IllegalStateException("not finished, result/error doesn't exist yet");
+
+        if (error != null) throw error;
+        return result;
+    }
+
+    public Sec<T> doOnResult(Consumer<T> onResult) {
+        if ((state & ARMED) != 0) throw new IllegalStateException("callbacks already set up");
+        this.onResult = onResult;
+        return this;
+    }
+
+    public Sec<T> doOnError(Consumer<Throwable> onError) {
+        if ((state & ARMED) != 0) throw new IllegalStateException("callbacks already set up");
+        this.onError = onError;
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <U> Sec<U> chain(Function<T, ?> resultMap, Function<Throwable, Throwable> errorMap) {
+        if ((state & ARMED) != 0) throw new IllegalStateException("callbacks already set up");
+
+        Sec<U> downstream = new Sec<>();
+        downstream.upstream = this;
+        this.next = (Sec<Object>) downstream;
+        this.resultMap = resultMap;
+        this.errorMap = errorMap;
+        onResult = null;
+        onError = null;
+
+        arm("callbacks already set up");
+        return downstream;
+    }
+
+    public <U> Sec<U> map(Function<T, U> map) {
+        return chain(map, null);
+    }
+
+    public Sec<T> mapError(Function<Throwable, Throwable> map) {
+        return chain(null, map);
+    }
+
+    public void callMeWhenDone() {
+        arm("callMeWhenDone() cannot be called twice");
+    }
+
+    /**
+     * cancels it if it isn't finished yet. it finishes with a {@link CancellationException} and the
+     * producer gets a chance to withdraw whatever was going to provide the result. cancelling a
+     * mapped Sec cancels the one it was mapped from, and the error comes down the chain as usual,
+     * so every stage reports {@link #isCancelled()}.
+     * @return true if it was cancelled, false if it had already finished
+     */
+    public boolean cancel() {
+        Sec<?> root = this;
+        while (root.upstream != null) root = root.upstream;
+        return root.cancelRoot();
+    }
+
+    private boolean cancelRoot() {
+        int prev = STATE.getAndUpdate(this, s -> (s & COMPLETING) != 0 ? s : s | COMPLETING | CANCELLED);
+        if ((prev & COMPLETING) != 0) return false;
+
+        boolean ready = publish(null, new CancellationException("cancelled"));
+        runCancelHandler(CANCEL_HANDLER.getAndSet(this, CANCEL_HANDLER_CALLED));
+        if (ready) callCallbacks(this);
+        return true;
+    }
+
+    private static void runCancelHandler(Runnable handler) {
+        if (handler == null) return;
+        try {
+            handler.run();
+        } catch (Throwable t) {
+            Log.e(TAG, "error during cancel handler", t);
+        }
+    }
+
+    private void arm(String alreadyArmedMessage) {
+        int prev = STATE.getAndUpdate(this, s -> s | ARMED);
+        if ((prev & ARMED) != 0) throw new IllegalStateException(alreadyArmedMessage);
+        if ((prev & DONE) != 0) callCallbacks(this);
+    }
+
+    /**
+     * sets the result or error.
+     * @return true if callbacks were already set up, meaning the caller has to call them
+     */
+    private boolean complete(T r, Throwable t) {
+        return complete(r, t, COMPLETING);
+    }
+
+    /**
+     * @param claim COMPLETING, plus CANCELLED when a cancellation comes down the chain
+     */
+    private boolean complete(T r, Throwable t, int claim) {
+        int prev = STATE.getAndUpdate(this, s -> (s & COMPLETING) != 0 ? s : s | claim);
+        if ((prev & COMPLETING) != 0) {
+            if ((prev & CANCELLED) != 0) return false;
+            throw new IllegalStateException("a result or error has already been provided");
+        }
+
+        return publish(r, t);
+    }
+
+    /**
+     * writes the result or error once COMPLETING is claimed
+     * @return true if callbacks were already set up
+     */
+    private boolean publish(T r, Throwable t) {
+        result = r;
+        error = t;
+
+        // nobody else sets DONE once COMPLETING is claimed
+        int prev = STATE.getAndAdd(this, DONE);
+        return (prev & ARMED) != 0;
+    }
+
+    /**
+     * calls back on the given Sec, then walks down any fused map stages in a loop so long chains
+     * don't recurse.
+     */
+    private static void callCallbacks(Sec<?> sec) {
+        while (sec != null) sec = sec.callCallbacksOnce();
+    }
+
+    /**
+     * @return the next stage if it was completed and is ready to call back, otherwise null
+     */
+    private Sec<Object> callCallbacksOnce() {
+        if (next != null) {
+            boolean ready;
+            if (error == null) {
+                Object mapped;
+                try {
+                    mapped = resultMap == null ? result : resultMap.apply(result);
+                } catch (Throwable t) {
+                    return next.complete(null, t) ? next : null;
+                }
+                ready = next.complete(mapped, null);
+            } else {
+                Throwable mapped;
+                try {
+                    mapped = errorMap == null ? error : errorMap.apply(error);
+                    if (mapped == null) mapped = new IllegalArgumentException("mapped throwable cannot be null", error);
+                } catch (Throwable t) {
+                    mapped = t;
+                }
+                ready = next.complete(null, mapped, (state & CANCELLED) | COMPLETING);
+            }
+            return ready ? next : null;
+        }
+
+        try {
+            if (error == null && onResult != null)
+                onResult.accept(result);
+        } catch (Throwable t) {
+            Log.e(TAG, "error during onResult callback", t);
+        }
+
+        try {
+            if (error != null && onError != null)
+                onError.accept(error);
+        } catch (Throwable t) {
+            Log.e(TAG, "error during onError callback", t);
+        }
+
+        return null;
+    }
+
+    private class Adapter implements SecAdapter<T> {
+        @Override
+        public void provideResult(T r) {
+            if (complete(r, null)) callCallbacks(Sec.this);
+        }
+
+        @Override
+        public void throwError(Throwable t) {
+            if (t == null) throw new IllegalArgumentException("throwable cannot be null");
+            if (complete(null, t)) callCallbacks(Sec.this);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return Sec.this.isCancelled();
+        }
+
+        @Override
+        public void setCancelHandler(Runnable handler) {
+            while (true) {
+                Runnable current = cancelHandler;
+                if (current == CANCEL_HANDLER_CALLED) {
+                    // already cancelled
+                    runCancelHandler(handler);
+                    return;
+                }
+                if (CANCEL_HANDLER.compareAndSet(Sec.this, current, handler)) return;
+            }
+        }
+    }
+
+    public static <T> Sec<T> premeditatedError(Throwable t) {
+        if (t == null) throw new IllegalArgumentException("throwable cannot be null");
+        Sec<T> sec = new Sec<>();
+        sec.complete(null, t);
+        return sec;
+    }
+
+    public static <T> Sec<T> premeditatedResult(T r) {
+        Sec<T> sec = new Sec<>();
+        sec.complete(r, null);
+        return sec;
+    }
+
+    /*
+     * combinators. these set up callbacks on the given Secs, so they can't be used for anything else.
+     * when several errors are combined, one distinct error is passed on as-is, more than that become
+     * a CompositeException.
+     */
+
+    /**
+     * waits for every Sec to finish.
+     * @return the results in the same order, or the combined errors of every Sec that failed
+     */
+    public static <T> Sec<List<T>> allOf(List<Sec<T>> secs) {
+        return SecCombinators.allOf(secs, false);
+    }
+
+    /**
+     * like {@link #allOf(List)}, but with failFast the first error is passed on right away
+     * without waiting for the rest.
+     */
+    public static <T> Sec<List<T>> allOf(List<Sec<T>> secs, boolean failFast) {
+        return SecCombinators.allOf(secs, failFast);
+    }
+
+    /**
+     * @return the first successful result, or the combined errors if every Sec failed
+     */
+    public static <T> Sec<T> anyOf(List<Sec<T>> secs) {
+        return SecCombinators.anyOf(secs);
+    }
+
+    /**
+     * @return the result or error of whichever Sec finishes first
+     */
+    public static <T> Sec<T> race(List<Sec<T>> secs) {
+        return SecCombinators.race(secs);
+    }
+
+    /**
+     * starts each Sec after the previous one succeeds, stopping at the first error.
+     * @return the results in order
+     */
+    public static <T> Sec<List<T>> sequence(List<Supplier<Sec<T>>> steps) {
+        return SecCombinators.sequence(steps);
+    }
+
+}
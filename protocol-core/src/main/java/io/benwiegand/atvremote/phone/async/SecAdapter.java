@@ -0,0 +1,33 @@
+package io.benwiegand.atvremote.phone.async;
+
+public interface SecAdapter<T> {
+
+    void provideResult(T result);
+    void throwError(Throwable t);
+
+    /**
+     * @return true if the Sec was cancelled, so there's no point in providing anything anymore.
+     *         providing a result or error after that is ignored.
+     */
+    default boolean isCancelled() {
+        return false;
+    }
+
+    /**
+     * @param handler called once if the Sec gets cancelled before it finishes, to withdraw
+     *                whatever would have provided the result. replaces the previous handler, and
+     *                is called right away if the Sec was already cancelled.
+     */
+    default void setCancelHandler(Runnable handler) {}
+
+    record SecWithAdapter<T>(Sec<T> sec, SecAdapter<T> secAdapter) {}
+
+    static <T> SecWithAdapter<T> createThreadless() {
+
+        Sec<T> sec = new Sec<>();
+        SecAdapter<T> adapter = sec.createAdapter();
+
+        return new SecWithAdapter<>(sec, adapter);
+
+    }
+}
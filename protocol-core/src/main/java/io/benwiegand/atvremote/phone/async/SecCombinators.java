@@ -0,0 +1,185 @@
+package io.benwiegand.atvremote.phone.async;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * the implementations behind Sec.allOf() and friends. each element only writes its own slot, and
+ * one atomic counter/flag per combinator decides who finishes, so there's nothing to lock.
+ * cancelling a combined Sec cancels everything it's still waiting on.
+ */
+final class SecCombinators {
+
+    private SecCombinators() {}
+
+    /**
+     * @return null if there are no errors, the error if there's only one distinct error, otherwise
+     *         a {@link CompositeException}
+     */
+    static Throwable combineErrors(Throwable[] errors) {
+        List<Throwable> distinct = new ArrayList<>(errors.length);
+        for (Throwable error : errors) {
+            if (error == null) continue;
+
+            // batched operations often fail with the same instance, no need to repeat it
+            boolean seen = false;
+            for (Throwable d : distinct) seen |= d == error;
+            if (!seen) distinct.add(error);
+        }
+
+        if (distinct.isEmpty()) return null;
+        if (distinct.size() == 1) return distinct.get(0);
+        return new CompositeException(distinct);
+    }
+
+    private static void cancelAll(List<? extends Sec<?>> secs) {
+        for (Sec<?> sec : secs) sec.cancel();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> resultList(Object[] results) {
+        return Collections.unmodifiableList((List<T>) Arrays.asList(results));
+    }
+
+    static <T> Sec<List<T>> allOf(List<Sec<T>> secs, boolean failFast) {
+        if (secs.isEmpty()) return Sec.premeditatedResult(List.of());
+
+        SecAdapter.SecWithAdapter<List<T>> secWithAdapter = SecAdapter.createThreadless();
+        SecAdapter<List<T>> adapter = secWithAdapter.secAdapter();
+        adapter.setCancelHandler(() -> cancelAll(secs));
+
+        Object[] results = new Object[secs.size()];
+        Throwable[] errors = new Throwable[secs.size()];
+
+        // goes negative once failing fast, so nothing else reaches 0
+        AtomicInteger remaining = new AtomicInteger(secs.size());
+        Runnable onCompletion = () -> {
+            if (remaining.decrementAndGet() != 0) return;
+
+            Throwable error = combineErrors(errors);
+            if (error == null) adapter.provideResult(resultList(results));
+            else adapter.throwError(error);
+        };
+
+        for (int i = 0; i < secs.size(); i++) {
+            int index = i;
+            secs.get(i)
+                    .doOnResult(r -> {
+                        results[index] = r;
+                        onCompletion.run();
+                    })
+                    .doOnError(t -> {
+                        if (failFast) {
+                            if (remaining.getAndSet(-1) > 0) adapter.throwError(t);
+                            return;
+                        }
+
+                        errors[index] = t;
+                        onCompletion.run();
+                    })
+                    .callMeWhenDone();
+        }
+
+        return secWithAdapter.sec();
+    }
+
+    static <T> Sec<T> anyOf(List<Sec<T>> secs) {
+        if (secs.isEmpty()) throw new IllegalArgumentException("anyOf() needs at least one Sec");
+
+        SecAdapter.SecWithAdapter<T> secWithAdapter = SecAdapter.createThreadless();
+        SecAdapter<T> adapter = secWithAdapter.secAdapter();
+        adapter.setCancelHandler(() -> cancelAll(secs));
+
+        Throwable[] errors = new Throwable[secs.size()];
+
+        // counts failures down, set negative by the first success
+        AtomicInteger remaining = new AtomicInteger(secs.size());
+
+        for (int i = 0; i < secs.size(); i++) {
+            int index = i;
+            secs.get(i)
+                    .doOnResult(r -> {
+                        if (remaining.getAndSet(-1) > 0) adapter.provideResult(r);
+                    })
+                    .doOnError(t -> {
+                        errors[index] = t;
+                        if (remaining.decrementAndGet() == 0) adapter.throwError(combineErrors(errors));
+                    })
+                    .callMeWhenDone();
+        }
+
+        return secWithAdapter.sec();
+    }
+
+    static <T> Sec<T> race(List<Sec<T>> secs) {
+        if (secs.isEmpty()) throw new IllegalArgumentException("race() needs at least one Sec");
+
+        SecAdapter.SecWithAdapter<T> secWithAdapter = SecAdapter.createThreadless();
+        SecAdapter<T> adapter = secWithAdapter.secAdapter();
+        adapter.setCancelHandler(() -> cancelAll(secs));
+
+        AtomicBoolean finished = new AtomicBoolean(false);
+        for (Sec<T> sec : secs) {
+            sec
+                    .doOnResult(r -> {
+                        if (finished.compareAndSet(false, true)) adapter.provideResult(r);
+                    })
+                    .doOnError(t -> {
+                        if (finished.compareAndSet(false, true)) adapter.throwError(t);
+                    })
+                    .callMeWhenDone();
+        }
+
+        return secWithAdapter.sec();
+    }
+
+    static <T> Sec<List<T>> sequence(List<Supplier<Sec<T>>> steps) {
+        SecAdapter.SecWithAdapter<List<T>> secWithAdapter = SecAdapter.createThreadless();
+        SecAdapter<List<T>> adapter = secWithAdapter.secAdapter();
+
+        // cancelling stops it from starting more steps and cancels the one that's running
+        AtomicReference<Sec<T>> current = new AtomicReference<>();
+        adapter.setCancelHandler(() -> {
+            Sec<T> sec = current.get();
+            if (sec != null) sec.cancel();
+        });
+
+        // only one step runs at a time, and each one starts from the previous one's callback
+        runStep(steps, 0, new ArrayList<>(steps.size()), adapter, current);
+        return secWithAdapter.sec();
+    }
+
+    private static <T> void runStep(List<Supplier<Sec<T>>> steps, int index, List<T> results, SecAdapter<List<T>> adapter, AtomicReference<Sec<T>> current) {
+        if (adapter.isCancelled()) return;
+        if (index == steps.size()) {
+            adapter.provideResult(Collections.unmodifiableList(results));
+            return;
+        }
+
+        Sec<T> sec;
+        try {
+            sec = steps.get(index).get();
+        } catch (Throwable t) {
+            adapter.throwError(t);
+            return;
+        }
+
+        // the cancel handler might have run while the step was starting and missed it
+        current.set(sec);
+        if (adapter.isCancelled()) sec.cancel();
+
+        sec
+                .doOnResult(r -> {
+                    results.add(r);
+                    runStep(steps, index + 1, results, adapter, current);
+                })
+                .doOnError(adapter::throwError)
+                .callMeWhenDone();
+    }
+}
@@ -0,0 +1,856 @@
+package io.benwiegand.atvremote.phone.network;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import io.benwiegand.atvremote.phone.async.KeyedSerialExecutor;
+import io.benwiegand.atvremote.phone.async.Sec;
+import io.benwiegand.atvremote.phone.async.SecAdapter;
+import io.benwiegand.atvremote.phone.network.frame.Frame;
+import io.benwiegand.atvremote.phone.network.metrics.LatencyRecorder;
+import io.benwiegand.atvremote.phone.network.event.EventMerger;
+import io.benwiegand.atvremote.phone.network.event.EventResult;
+import io.benwiegand.atvremote.phone.network.event.EventTemplate;
+import io.benwiegand.atvremote.phone.network.event.InFlightEvent;
+import io.benwiegand.atvremote.phone.network.event.OutputPriority;
+import io.benwiegand.atvremote.phone.network.event.OutputQueue;
+import io.benwiegand.atvremote.phone.network.event.QueuedDisconnection;
+import io.benwiegand.atvremote.phone.network.event.QueuedEvent;
+import io.benwiegand.atvremote.phone.network.event.QueuedOutput;
+import io.benwiegand.atvremote.phone.network.event.QueuedResponse;
+import io.benwiegand.atvremote.phone.platform.Log;
+import io.benwiegand.atvremote.phone.platform.Platform;
+import io.benwiegand.atvremote.phone.platform.ProtocolMessage;
+import io.benwiegand.atvremote.phone.platform.SystemClock;
+import io.benwiegand.atvremote.phone.protocol.MalformedEventException;
+import io.benwiegand.atvremote.phone.protocol.Opcodes;
+import io.benwiegand.atvremote.phone.protocol.OperationDefinition;
+import io.benwiegand.atvremote.phone.protocol.RemoteProtocolException;
+import io.benwiegand.atvremote.phone.protocol.json.BatchParams;
+import io.benwiegand.atvremote.phone.protocol.json.BatchResults;
+import io.benwiegand.atvremote.phone.protocol.json.ErrorDetails;
+import io.benwiegand.atvremote.phone.stuff.IntMap;
+import io.benwiegand.atvremote.phone.stuff.ThrowingRunnable;
+import io.benwiegand.atvremote.phone.stuff.TimingWheel;
+import io.benwiegand.atvremote.phone.ui.ErrorMessageException;
+import io.benwiegand.atvremote.phone.util.StackTraceUtil;
+
+import static io.benwiegand.atvremote.phone.network.SocketUtil.tryClose;
+import static io.benwiegand.atvremote.phone.network.event.EventIds.EVENT_ID_LENGTH;
+import static io.benwiegand.atvremote.phone.network.event.EventIds.EVENT_ID_MASK;
+import static io.benwiegand.atvremote.phone.network.event.EventIds.appendEventId;
+import static io.benwiegand.atvremote.phone.network.event.EventIds.decodeEventId;
+import static io.benwiegand.atvremote.phone.network.event.EventIds.encodeEventId;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.*;
+
+import com.google.gson.Gson;
+
+/**
+ * it juggles the events between the devices
+ */
+public class EventJuggler implements Closeable {
+    private static final String TAG = EventJuggler.class.getSimpleName();
+
+    // no-ack events are v2 only, so they can use ids outside the 24 bits v1 is limited to. this
+    // way an error response can be told apart from a response to a normal event.
+    private static final int NO_ACK_EVENT_ID_FLAG = 1 << 24;
+    private static final EventTemplate PING_TEMPLATE = EventTemplate.of(OP_PING);
+
+    // timeouts can fire up to one tick late. one rotation covers the default timeout, so most
+    // entries only get looked at once.
+    private static final long TIMEOUT_TICK_DURATION = 250;
+    private static final int TIMEOUT_WHEEL_SIZE = 256;
+
+    // limits for how much queued output gets written before a flush
+    public static final int DEFAULT_MAX_BATCH_SIZE = 32;
+    public static final int DEFAULT_MAX_BATCH_BYTES = TCPWriter.WRITE_BUFFER_SIZE;
+
+    // how many times a lower priority lane can be passed over before it gets a turn anyway
+    private static final int OUTPUT_STARVATION_LIMIT = 8;
+
+    private static final Gson gson = new Gson();
+
+    private final ThreadPoolExecutor threadPool = new ThreadPoolExecutor(2, 8, 3, TimeUnit.SECONDS, new LinkedBlockingDeque<>());
+    // incoming events are handled in order per operation (or ordering key)
+    private final KeyedSerialExecutor eventExecutor = new KeyedSerialExecutor(threadPool);
+    private final Socket socket;
+
+    // incoming events
+    private final Thread inThread = new Thread(runLoop(this::inputLoop));
+    private final TCPReader reader;
+    // operations in the opcode table are looked up by opcode, only the rest go in the map
+    private final OperationDefinition[] opcodeDefinitions = new OperationDefinition[Opcodes.count()];
+    private final Map<String, OperationDefinition> operationMap = new ConcurrentHashMap<>();
+
+    // outgoing events
+    private final Thread outThread = new Thread(runLoop(this::outputLoop));
+    private final TCPWriter writer;
+    private final OutputQueue outQueue = new OutputQueue(OUTPUT_STARVATION_LIMIT);
+    private final IntMap<InFlightEvent> responseMap = new IntMap<>();
+
+    // event timeouts
+    private final Thread timeoutThread = new Thread(runLoop(this::timeoutLoop));
+    private final TimingWheel<InFlightEvent> timeoutWheel = new TimingWheel<>(TIMEOUT_TICK_DURATION, TIMEOUT_WHEEL_SIZE, SystemClock.elapsedRealtime());
+    private long expiredEventCount = 0;
+    // only written by the output thread
+    private volatile long droppedEventCount = 0;
+
+    // stats
+    private final LatencyRecorder latencyRecorder = new LatencyRecorder();
+
+    // fire-and-forget
+    private volatile boolean noAckEnabled = false;
+    private volatile Consumer<EventResult> noAckErrorListener = r -> Log.w(TAG, "no-ack event failed: " + r.responseLine());
+
+    // event ids, only touched by the output thread
+    private int nextEventId = 0;
+    private int nextNoAckEventId = 0;
+    private final StringBuilder lineBuilder = new StringBuilder();
+    private final byte[] eventIdBytes = new byte[EVENT_ID_LENGTH];
+
+    // misc
+    private final long pingInterval;
+    private final long pingTimeout;
+    private final int maxBatchSize;
+    private final int maxBatchBytes;
+    private final Consumer<Throwable> onDeath;
+    private boolean onDeathCalled = false;
+    private boolean dead = false;
+
+    /**
+     * @param socket the socket
+     * @param reader reader for the socket
+     * @param writer writer for the socket
+     * @param onDeath called once when the connection dies
+     * @param pingInterval how long the output can be idle before a ping is sent
+     * @param pingTimeout how long the input can be idle before the connection is considered dead
+     * @param maxBatchSize max number of queued messages to write before flushing
+     * @param maxBatchBytes max number of bytes to write before flushing. a message is never split,
+     *                      so a batch can go over this by at most one message
+     */
+    public EventJuggler(Socket socket, TCPReader reader, TCPWriter writer, Consumer<Throwable> onDeath, long pingInterval, long pingTimeout, int maxBatchSize, int maxBatchBytes) {
+        if (maxBatchSize < 1) throw new IllegalArgumentException("max batch size must be at least 1");
+        this.socket = socket;
+        this.reader = reader;
+        this.writer = writer;
+        this.pingInterval = pingInterval;
+        this.pingTimeout = pingTimeout;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchBytes = maxBatchBytes;
+        this.onDeath = onDeath;
+    }
+
+    public EventJuggler(Socket socket, TCPReader reader, TCPWriter writer, Consumer<Throwable> onDeath, long pingInterval, long pingTimeout) {
+        this(socket, reader, writer, onDeath, pingInterval, pingTimeout, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_BYTES);
+    }
+
+    public void start(OperationDefinition[] operations) {
+        for (OperationDefinition operation : operations) {
+            int opcode = Opcodes.opcodeOf(operation.operation());
+            if (opcode == Opcodes.OPCODE_LITERAL) operationMap.put(operation.operation(), operation);
+            else opcodeDefinitions[opcode] = operation;
+        }
+        inThread.start();
+        outThread.start();
+        timeoutThread.start();
+    }
+
+    public void close() {
+        Log.d(TAG, "close()");
+        synchronized (onDeath) {
+            if (dead) {
+                Log.w(TAG, "close() called but already dead", new Throwable());
+                return;
+            }
+            dead = true;
+        }
+
+        tryClose(socket);
+        tryClose(reader);
+        tryClose(writer);
+
+        try {
+            inThread.interrupt();
+            outThread.interrupt();
+            timeoutThread.interrupt();
+        } catch (Throwable t) {
+            Log.e(TAG, "failed to interrupt threads", t);
+        }
+
+        outQueue.drain(this::failQueuedOutput);
+
+        // events written as part of a batch might not have made it out, and nothing is going to answer them now
+        responseMap.drain(inFlightEvent -> inFlightEvent.adapter().throwError(new IOException("connection closed")));
+
+        threadPool.shutdown();
+    }
+
+    public boolean isDead() {
+        return dead;
+    }
+
+    /**
+     * @return number of events that got no response within the timeout
+     */
+    public long getExpiredEventCount() {
+        synchronized (timeoutWheel) {
+            return expiredEventCount;
+        }
+    }
+
+    /**
+     * @return number of events that were never sent because their deadline passed while queued
+     */
+    public long getDroppedEventCount() {
+        return droppedEventCount;
+    }
+
+    /**
+     * @return per operation latency stats for events sent over this connection
+     */
+    public LatencyRecorder getLatencyRecorder() {
+        return latencyRecorder;
+    }
+
+    /**
+     * @return number of events sent that haven't been responded to yet
+     */
+    public int getInFlightEventCount() {
+        return responseMap.size();
+    }
+
+    /**
+     * @param priority the priority class
+     * @return number of queued messages of that priority that haven't been written yet
+     */
+    public int getQueueDepth(OutputPriority priority) {
+        return outQueue.depth(priority);
+    }
+
+    /**
+     * @return number of events that were merged into another queued event instead of sent on their own
+     */
+    public long getMergedEventCount() {
+        return outQueue.mergedCount();
+    }
+
+    /**
+     * sends an event
+     * @param event the event (operation and extra)
+     * @param priority determines what it can cut in front of in the queue
+     * @param merger if not null, the event can be merged with a queued event that has the same
+     *               merge key. every merged caller gets the response of the combined event.
+     * @param timeout ms until nobody cares about the response. if the event is still queued by
+     *                then it's dropped, otherwise it times out.
+     * @return Sec for the response. cancelling it before the event is written keeps it from being
+     *         sent, after that the response is ignored.
+     */
+    public Sec<EventResult> sendEvent(String event, OutputPriority priority, EventMerger merger, long timeout) {
+        SecAdapter.SecWithAdapter<EventResult> secWithAdapter = SecAdapter.createThreadless();
+        return sendEvent(new QueuedEvent(event, priority, secWithAdapter.secAdapter(), true, timeout), merger, secWithAdapter.sec());
+    }
+
+    public Sec<EventResult> sendEvent(String event, OutputPriority priority, EventMerger merger) {
+        return sendEvent(event, priority, merger, QueuedEvent.DEFAULT_TIMEOUT);
+    }
+
+    private Sec<EventResult> sendEvent(QueuedEvent queuedEvent, EventMerger merger, Sec<EventResult> sec) {
+        // until it's written, cancelling takes it back out of the queue. writeOutput() replaces
+        // this once it's sent, and skips it if it was cancelled before it was even queued.
+        queuedEvent.adapter().setCancelHandler(() -> outQueue.withdraw(queuedEvent, merger));
+        if (merger == null) enqueueOutput(queuedEvent);
+        else outQueue.add(queuedEvent, merger);
+
+        // do this after to prevent race conditions while avoiding needing a lock.
+        // close() might have drained the queue before it was added (or merged into something
+        // queued), and nothing is going to write it now, so fail whatever is still queued.
+        if (dead) {
+            outQueue.drain(this::failQueuedOutput);
+            return Sec.premeditatedError(new IOException("connection is dead"));
+        }
+
+        return sec;
+    }
+
+    public Sec<EventResult> sendEvent(String event, OutputPriority priority) {
+        return sendEvent(event, priority, null);
+    }
+
+    public Sec<EventResult> sendEvent(String event) {
+        return sendEvent(event, OutputPriority.CONTROL);
+    }
+
+    /**
+     * like {@link #sendEvent(String, OutputPriority)}, but the event is written straight from its
+     * pre-encoded template.
+     */
+    public Sec<EventResult> sendEvent(EventTemplate template, OutputPriority priority, long timeout) {
+        SecAdapter.SecWithAdapter<EventResult> secWithAdapter = SecAdapter.createThreadless();
+        return sendEvent(new QueuedEvent(template, priority, secWithAdapter.secAdapter(), true, timeout), null, secWithAdapter.sec());
+    }
+
+    public Sec<EventResult> sendEvent(EventTemplate template, OutputPriority priority) {
+        return sendEvent(template, priority, QueuedEvent.DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * enables {@link #sendEventNoAck(String, OutputPriority)}. only call this if the other side
+     * advertised support for no-ack events.
+     * @throws IllegalStateException if not using v2 frames
+     */
+    public void enableNoAck() {
+        if (!writer.isFramed()) throw new IllegalStateException("no-ack events require protocol v2");
+        noAckEnabled = true;
+    }
+
+    public boolean isNoAckEnabled() {
+        return noAckEnabled;
+    }
+
+    /**
+     * @param listener called with the response when a no-ack event fails on the other side
+     */
+    public void setNoAckErrorListener(Consumer<EventResult> listener) {
+        noAckErrorListener = listener;
+    }
+
+    /**
+     * sends an event without asking for a response. nothing is tracked for it, and the other side
+     * only responds if it fails, in which case the no-ack error listener is called.
+     * @param event the event (operation and extra)
+     * @param priority determines what it can cut in front of in the queue
+     * @param timeout ms until it's not worth sending anymore
+     * @return Sec that finishes with a null result once the event is written
+     * @throws IllegalStateException if no-ack events aren't enabled
+     */
+    public Sec<EventResult> sendEventNoAck(String event, OutputPriority priority, long timeout) {
+        if (!noAckEnabled) throw new IllegalStateException("no-ack events are not enabled");
+        SecAdapter.SecWithAdapter<EventResult> secWithAdapter = SecAdapter.createThreadless();
+        return sendEvent(new QueuedEvent(event, priority, secWithAdapter.secAdapter(), false, timeout), null, secWithAdapter.sec());
+    }
+
+    public Sec<EventResult> sendEventNoAck(String event, OutputPriority priority) {
+        return sendEventNoAck(event, priority, QueuedEvent.DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * like {@link #sendEventNoAck(String, OutputPriority)}, but the event is written straight from
+     * its pre-encoded template.
+     */
+    public Sec<EventResult> sendEventNoAck(EventTemplate template, OutputPriority priority, long timeout) {
+        if (!noAckEnabled) throw new IllegalStateException("no-ack events are not enabled");
+        SecAdapter.SecWithAdapter<EventResult> secWithAdapter = SecAdapter.createThreadless();
+        return sendEvent(new QueuedEvent(template, priority, secWithAdapter.secAdapter(), false, timeout), null, secWithAdapter.sec());
+    }
+
+    public Sec<EventResult> sendEventNoAck(EventTemplate template, OutputPriority priority) {
+        return sendEventNoAck(template, priority, QueuedEvent.DEFAULT_TIMEOUT);
+    }
+
+    private void failQueuedOutput(QueuedOutput output) {
+        if (output.type() == QueuedOutput.Type.EVENT)
+            ((QueuedEvent) output).adapter().throwError(new IOException("connection closed"));
+    }
+
+    private void enqueueOutput(QueuedOutput output) {
+        outQueue.add(output);
+    }
+
+    private QueuedResponse createErrorResponse(int eventId, ErrorDetails e) {
+        return new QueuedResponse(eventId, OP_ERR, gson.toJson(e));
+    }
+
+    private QueuedResponse createErrorResponse(int eventId, Throwable t) {
+        return createErrorResponse(eventId, ErrorDetails.fromException(t));
+    }
+
+    private void expireEvent(InFlightEvent inFlightEvent) {
+        // the wheel doesn't know about responses, so only expire it if it's still in flight
+        if (!responseMap.remove(inFlightEvent.eventId(), inFlightEvent)) return;
+
+        Log.d(TAG, "expiring event: " + inFlightEvent.eventId());
+        expiredEventCount++;
+        threadPool.execute(() -> inFlightEvent.adapter()
+                .throwError(new RemoteProtocolException(Platform.get().getStringRes(ProtocolMessage.EVENT_TIMEOUT), "timed out")));
+    }
+
+    private void dropCancelledEvent(InFlightEvent inFlightEvent) {
+        // whatever the other side says about it doesn't matter anymore
+        if (responseMap.remove(inFlightEvent.eventId(), inFlightEvent))
+            Log.v(TAG, "dropped cancelled event: " + inFlightEvent.eventId());
+    }
+
+    private void scheduleTimeout(InFlightEvent inFlightEvent) {
+        synchronized (timeoutWheel) {
+            InFlightEvent collision = responseMap.putIfAbsent(inFlightEvent.eventId(), inFlightEvent);
+            assert collision == null; // this should be impossible
+            timeoutWheel.schedule(inFlightEvent, TimeUnit.NANOSECONDS.toMillis(inFlightEvent.deadline()));
+        }
+    }
+
+    private void timeoutLoop() throws InterruptedException {
+        while (!dead) {
+            timeoutWheel.awaitEntries();
+
+            long now = SystemClock.elapsedRealtime();
+            synchronized (timeoutWheel) {
+                timeoutWheel.advance(now, this::expireEvent);
+
+                // most events get a response long before they expire. once nothing is in flight
+                // the leftovers can be dropped, so this thread can sleep until the next event.
+                // this is synchronized with scheduleTimeout() so a new event can't be dropped.
+                if (responseMap.isEmpty()) timeoutWheel.clear();
+            }
+
+            Thread.sleep(timeoutWheel.timeUntilNextTick(now));
+        }
+    }
+
+    /**
+     * @param eventId id of the event being responded to
+     * @param result the response
+     * @param receivedAt when the response was read, in elapsed realtime nanos
+     */
+    private void handleResponse(int eventId, EventResult result, long receivedAt) {
+        if ((eventId & NO_ACK_EVENT_ID_FLAG) != 0) {
+            // no-ack events only get a response if they fail
+            noAckErrorListener.accept(result);
+            return;
+        }
+
+        InFlightEvent inFlightEvent = responseMap.remove(eventId);
+        if (inFlightEvent == null) {
+            // the event could have timed out or been cancelled
+            Log.w(TAG, "got response for non-existent event: " + eventId);
+            return;
+        }
+
+        latencyRecorder.recordRoundTrip(inFlightEvent.opcode(), TimeUnit.NANOSECONDS.toMicros(receivedAt - inFlightEvent.sentAt()));
+
+        inFlightEvent.adapter().provideResult(result);
+    }
+
+    /**
+     * @param s contains a v1 style response (operation and extra)
+     * @param start start index of the response
+     */
+    private static EventResult parseResult(String s, int start) {
+        int iExtra = s.indexOf(' ', start);
+        int end = iExtra < 0 ? s.length() : iExtra;
+
+        // known responses don't need a substring
+        int opcode = Opcodes.opcodeOf(s, start, end);
+        String response = opcode == Opcodes.OPCODE_LITERAL ? s.substring(start, end) : Opcodes.operationOf(opcode);
+        return new EventResult(response, iExtra < 0 ? null : s.substring(iExtra + 1));
+    }
+
+    private void handleResponse(String line) {
+        long receivedAt = SystemClock.elapsedRealtimeNanos();
+
+        int i = line.indexOf(' ');
+        if (i < 2) throw new MalformedEventException("response has no event id");
+        if (line.length() < i + 2) throw new MalformedEventException("response is empty");
+
+        int eventId;
+        try {
+            eventId = decodeEventId(line, 1, i);
+        } catch (MalformedEventException e) {
+            Log.w(TAG, "got response with invalid event id: " + line);
+            return;
+        }
+
+        threadPool.execute(() -> handleResponse(eventId, parseResult(line, i + 1), receivedAt));
+    }
+
+    private void dispatchEvent(int eventId, OperationDefinition definition, String extra, boolean ack) {
+        if (definition == null) {
+            enqueueOutput(new QueuedResponse(eventId, OP_UNSUPPORTED));
+            return;
+        }
+
+        try {
+            String responseExtra = definition.handler().apply(extra);
+            if (ack) enqueueOutput(new QueuedResponse(eventId, OP_CONFIRM, responseExtra));
+        } catch (Throwable t) {
+            if (!(t instanceof ErrorMessageException)) Log.e(TAG, "unexpected error while handling", t);
+            enqueueOutput(createErrorResponse(eventId, t));
+            if (definition.closeConnectionOnFailure())
+                enqueueOutput(new QueuedDisconnection());
+        }
+    }
+
+    /**
+     * runs the operations of a BATCH event in order and sends all their results back as a single
+     * response. every operation runs even if an earlier one fails, they're independent.
+     */
+    private void dispatchBatch(int eventId, String extra, boolean ack) {
+        BatchParams params;
+        try {
+            params = gson.fromJson(extra, BatchParams.class);
+            if (params == null || params.operations() == null) throw new MalformedEventException("no operations in batch");
+        } catch (RuntimeException e) {
+            Log.w(TAG, "invalid batch", e);
+            enqueueOutput(createErrorResponse(eventId, e));
+            return;
+        }
+
+        List<String> results = new ArrayList<>(params.operations().size());
+        boolean disconnect = false;
+        for (String operation : params.operations()) {
+            int iExtra = operation.indexOf(' ');
+            int opEnd = iExtra < 0 ? operation.length() : iExtra;
+            int opcode = Opcodes.opcodeOf(operation, 0, opEnd);
+            String opExtra = iExtra < 0 ? null : operation.substring(iExtra + 1);
+
+            // no nested batches
+            OperationDefinition definition = definitionOf(opcode, operation, 0, opEnd);
+            if (definition == null) {
+                results.add(OP_UNSUPPORTED);
+                continue;
+            }
+
+            try {
+                String responseExtra = definition.handler().apply(opExtra);
+                results.add(responseExtra == null ? OP_CONFIRM : OP_CONFIRM + " " + responseExtra);
+            } catch (Throwable t) {
+                if (!(t instanceof ErrorMessageException)) Log.e(TAG, "unexpected error while handling batched operation", t);
+                results.add(OP_ERR + " " + gson.toJson(ErrorDetails.fromException(t)));
+                disconnect |= definition.closeConnectionOnFailure();
+            }
+        }
+
+        if (ack || results.stream().anyMatch(r -> !r.startsWith(OP_CONFIRM)))
+            enqueueOutput(new QueuedResponse(eventId, OP_CONFIRM, gson.toJson(new BatchResults(results))));
+        if (disconnect) enqueueOutput(new QueuedDisconnection());
+    }
+
+    /**
+     * @return the definition of the operation, or null if there isn't one
+     */
+    private OperationDefinition definitionOf(int opcode, String s, int start, int end) {
+        if (opcode != Opcodes.OPCODE_LITERAL) return opcodeDefinitions[opcode];
+        if (operationMap.isEmpty()) return null;
+        return operationMap.get(s.substring(start, end));
+    }
+
+    private record OrderingKey(OperationDefinition definition, String key) {}
+
+    private static Object orderingKeyOf(String op, OperationDefinition definition, String extra) {
+        // unknown operations all get HUH?, the order doesn't matter much
+        if (definition == null) return op;
+        if (definition.orderingKey() == null || extra == null) return definition;
+        try {
+            return new OrderingKey(definition, definition.orderingKey().apply(extra));
+        } catch (RuntimeException e) {
+            // the handler will complain about it
+            return definition;
+        }
+    }
+
+    /**
+     * hands an event off to be handled. events with the same operation (and ordering key, if the
+     * operation has one) are handled one at a time in the order they arrived.
+     * @param opcode opcode of the operation, or {@link Opcodes#OPCODE_LITERAL} if it isn't known
+     * @param s contains the operation name
+     * @param opStart start index of the operation name
+     * @param opEnd end index of the operation name (exclusive)
+     * @param ack false if the other side only wants a response if it fails
+     */
+    private void queueEvent(int eventId, int opcode, String s, int opStart, int opEnd, String extra, boolean ack) {
+        if (opcode == Opcodes.OPCODE_BATCH && opcodeDefinitions[opcode] == null) {
+            eventExecutor.execute(OP_BATCH, () -> dispatchBatch(eventId, extra, ack));
+            return;
+        }
+
+        OperationDefinition definition = definitionOf(opcode, s, opStart, opEnd);
+        String op = definition != null ? definition.operation() : s.substring(opStart, opEnd);
+        eventExecutor.execute(orderingKeyOf(op, definition, extra), () -> dispatchEvent(eventId, definition, extra, ack));
+    }
+
+    private void handleEvent(String line) {
+        // responses start with '!'
+        if (line.charAt(0) == '!') {
+            handleResponse(line);
+            return;
+        }
+
+        // everything is found by index, so the only new string is the extra
+        int iId = line.indexOf(' ');
+        if (iId < 1 || line.length() < iId + 2) throw new MalformedEventException("no operation");
+
+        int eventId;
+        try {
+            eventId = decodeEventId(line, 0, iId);
+        } catch (MalformedEventException e) {
+            // a response couldn't carry this id back, but it's no reason to drop the whole connection
+            Log.w(TAG, "got event with invalid event id: " + line);
+            return;
+        }
+
+        int opStart = iId + 1;
+        int iExtra = line.indexOf(' ', opStart);
+        int opEnd = iExtra < 0 ? line.length() : iExtra;
+        String extra = iExtra < 0 ? null : line.substring(iExtra + 1);
+
+        queueEvent(eventId, Opcodes.opcodeOf(line, opStart, opEnd), line, opStart, opEnd, extra, true);
+    }
+
+    private void handleFrame(Frame frame) {
+        switch (frame.type()) {
+            case Frame.TYPE_RESPONSE -> {
+                long receivedAt = SystemClock.elapsedRealtimeNanos();
+                threadPool.execute(() -> {
+                    String op = Opcodes.operationOf(frame.opcode());
+                    if (op == null) {
+                        if (frame.opcode() != Opcodes.OPCODE_LITERAL || !frame.hasPayload()) {
+                            Log.w(TAG, "got response with unknown opcode: " + frame.opcode());
+                            return;
+                        }
+                        handleResponse(frame.eventId(), parseResult(new String(frame.payload(), CHARSET), 0), receivedAt);
+                    } else {
+                        String extra = frame.hasPayload() ? new String(frame.payload(), CHARSET) : null;
+                        handleResponse(frame.eventId(), new EventResult(op, extra), receivedAt);
+                    }
+                });
+            }
+            case Frame.TYPE_EVENT, Frame.TYPE_EVENT_NO_ACK -> {
+                boolean ack = frame.type() == Frame.TYPE_EVENT;
+                String op = Opcodes.operationOf(frame.opcode());
+                String extra = frame.hasPayload() ? new String(frame.payload(), CHARSET) : null;
+                if (op != null) {
+                    queueEvent(frame.eventId(), frame.opcode(), op, 0, op.length(), extra, ack);
+                } else if (frame.opcode() == Opcodes.OPCODE_LITERAL && extra != null) {
+                    // operation name is in the payload
+                    int iExtra = extra.indexOf(' ');
+                    int opEnd = iExtra < 0 ? extra.length() : iExtra;
+                    queueEvent(frame.eventId(), Opcodes.OPCODE_LITERAL, extra, 0, opEnd, iExtra < 0 ? null : extra.substring(iExtra + 1), ack);
+                } else {
+                    enqueueOutput(new QueuedResponse(frame.eventId(), OP_UNSUPPORTED));
+                }
+            }
+            default -> throw new MalformedEventException("unexpected frame type: " + frame.type());
+        }
+    }
+
+    private void inputLoop() throws IOException, InterruptedException {
+        while (!dead) {
+            if (reader.isFramed()) {
+                Frame frame = reader.nextFrame(pingTimeout);
+                if (frame == null) throw new IOException("no message or ping received within timeout");
+
+                handleFrame(frame);
+                continue;
+            }
+
+            String line = reader.nextLine(pingTimeout);
+            if (line == null) throw new IOException("no message or ping received within timeout");
+            if (line.isEmpty()) continue;
+
+            handleEvent(line);
+        }
+    }
+
+    /**
+     * allocates the next event id. ids are sequential and wrap around after 24 bits, so they fit
+     * in 4 base64 characters for v1. an id is only reused if the event that had it is no longer in
+     * flight, which in practice means never.
+     * @return a new event id
+     */
+    private int generateEventId() {
+        int eventId;
+        do {
+            eventId = nextEventId;
+            nextEventId = (nextEventId + 1) & EVENT_ID_MASK;
+        } while (responseMap.containsKey(eventId));
+        return eventId;
+    }
+
+    private void writeResponse(QueuedResponse response) throws IOException {
+        lineBuilder.setLength(0);
+        if (writer.isFramed()) {
+            int opcode = Opcodes.opcodeOf(response.response());
+            if (opcode != Opcodes.OPCODE_LITERAL) {
+                writer.writeFrame(Frame.TYPE_RESPONSE, response.eventId(), opcode, response.extra());
+                return;
+            }
+
+            lineBuilder.append(response.response());
+            if (response.extra() != null) lineBuilder.append(' ').append(response.extra());
+            writer.writeFrame(Frame.TYPE_RESPONSE, response.eventId(), opcode, lineBuilder);
+            return;
+        }
+
+        appendEventId(lineBuilder.append('!'), response.eventId())
+                .append(' ')
+                .append(response.response());
+        if (response.extra() != null) lineBuilder.append(' ').append(response.extra());
+        writer.writeLine(lineBuilder);
+    }
+
+    private void writeEvent(int eventId, EventTemplate template, boolean ack) throws IOException {
+        if (writer.isFramed()) {
+            writer.writeFrame(ack ? Frame.TYPE_EVENT : Frame.TYPE_EVENT_NO_ACK, eventId, template.opcode(), template.payload());
+            return;
+        }
+
+        assert ack; // no-ack is v2 only
+
+        encodeEventId(eventIdBytes, eventId);
+        writer.writeLine(eventIdBytes, template.line());
+    }
+
+    private void writeEvent(int eventId, QueuedEvent event, int opcode, boolean ack) throws IOException {
+        if (event.template() != null) {
+            writeEvent(eventId, event.template(), ack);
+            return;
+        }
+        writeEvent(eventId, event.event(), opcode, ack);
+    }
+
+    private void writeEvent(int eventId, String event, int opcode, boolean ack) throws IOException {
+        if (writer.isFramed()) {
+            byte type = ack ? Frame.TYPE_EVENT : Frame.TYPE_EVENT_NO_ACK;
+            if (opcode == Opcodes.OPCODE_LITERAL) {
+                writer.writeFrame(type, eventId, opcode, event);
+                return;
+            }
+
+            int iExtra = event.indexOf(' ');
+            int payloadStart = iExtra < 0 ? event.length() : iExtra + 1;
+            writer.writeFrame(type, eventId, opcode, event, payloadStart, event.length());
+            return;
+        }
+
+        assert ack; // no-ack is v2 only
+
+        lineBuilder.setLength(0);
+        appendEventId(lineBuilder, eventId)
+                .append(' ')
+                .append(event);
+        writer.writeLine(lineBuilder);
+    }
+
+    private QueuedEvent createPing() {
+        SecAdapter.SecWithAdapter<EventResult> secWithAdapter = SecAdapter.createThreadless();
+        return new QueuedEvent(PING_TEMPLATE, OutputPriority.KEEPALIVE, secWithAdapter.secAdapter(), true);
+    }
+
+    private void writeOutput(QueuedOutput output) throws IOException {
+        switch (output.type()) {
+            case RESPONSE -> writeResponse((QueuedResponse) output);
+            case EVENT -> {
+                QueuedEvent event = (QueuedEvent) output;
+
+                // cancelled events are usually withdrawn from the queue, but one can be cancelled
+                // right as it's taken
+                if (event.adapter().isCancelled()) return;
+
+                // nobody is waiting for it anymore, so don't make the other side deal with it
+                long sentAt = SystemClock.elapsedRealtimeNanos();
+                if (event.isExpired(sentAt)) {
+                    droppedEventCount++;
+                    Log.d(TAG, "dropping event that was queued past its deadline");
+                    threadPool.execute(() -> event.adapter()
+                            .throwError(new RemoteProtocolException(Platform.get().getStringRes(ProtocolMessage.EVENT_TIMEOUT), "deadline passed before it was sent")));
+                    return;
+                }
+
+                InFlightEvent inFlightEvent = null;
+                try {
+                    int opcode;
+                    if (event.template() != null) {
+                        opcode = event.template().opcode();
+                    } else {
+                        int iExtra = event.event().indexOf(' ');
+                        opcode = Opcodes.opcodeOf(event.event(), 0, iExtra < 0 ? event.event().length() : iExtra);
+                    }
+
+                    latencyRecorder.recordQueueWait(opcode, TimeUnit.NANOSECONDS.toMicros(sentAt - event.enqueuedAt()));
+
+                    if (!event.ack()) {
+                        int eventId = NO_ACK_EVENT_ID_FLAG | nextNoAckEventId;
+                        nextNoAckEventId = (nextNoAckEventId + 1) & EVENT_ID_MASK;
+                        writeEvent(eventId, event, opcode, false);
+                        threadPool.execute(() -> event.adapter().provideResult(null));
+                        return;
+                    }
+
+                    int eventId = generateEventId();
+                    inFlightEvent = event.toInFlightEvent(eventId, opcode, sentAt);
+                    scheduleTimeout(inFlightEvent);
+                    writeEvent(eventId, event, opcode, true);
+                    InFlightEvent sent = inFlightEvent;
+                    event.adapter().setCancelHandler(() -> dropCancelledEvent(sent));
+                } catch (Throwable t) {
+                    // once it's in the response map close() can fail it too, so only fail it here
+                    // if it can still be taken back out
+                    if (inFlightEvent == null || responseMap.remove(inFlightEvent.eventId(), inFlightEvent))
+                        threadPool.execute(() -> event.adapter().throwError(t));
+                    throw t;
+                }
+            }
+            case DISCONNECTION -> throw new AssertionError("disconnection isn't written");
+        }
+    }
+
+    private void outputLoop() throws IOException, InterruptedException {
+        while (!dead) {
+            QueuedOutput output = outQueue.take(pingInterval);
+            if (output == null) output = createPing();
+
+            // write out everything that's already queued and flush once, so a burst of events
+            // and responses ends up in one tls record instead of one per message
+            int batched = 0;
+            do {
+                if (output.type() == QueuedOutput.Type.DISCONNECTION) {
+                    writer.flush();
+                    Log.i(TAG, "disconnection event");
+                    tryClose(this);
+                    return;
+                }
+
+                writeOutput(output);
+            } while (++batched < maxBatchSize && writer.getUnflushedBytes() < maxBatchBytes && (output = outQueue.poll()) != null);
+
+            writer.flush();
+        }
+    }
+
+    private Runnable runLoop(ThrowingRunnable loop) {
+        return () -> {
+            Throwable exitThrowable = null;
+            try {
+                loop.run();
+            } catch (IOException e) {
+                Log.e(TAG, "connection died:\n" + StackTraceUtil.getLightStackTrace(e));
+                exitThrowable = e;
+            } catch (InterruptedException e) {
+                Log.e(TAG, "connection loop interrupted:\n" + StackTraceUtil.getLightStackTrace(e));
+                exitThrowable = e;
+            } catch (Throwable t) {
+                Log.e(TAG, "unexpected error in connection", t);
+                exitThrowable = t;
+            } finally {
+                boolean closeMe, callOnDeath;
+                synchronized (onDeath) {
+                    closeMe = !dead;
+                    if (dead) exitThrowable = null; // discard reactions from an intentional close
+                    callOnDeath = !onDeathCalled;
+                    onDeathCalled = true;
+                }
+                if (closeMe) tryClose(this);
+                if (callOnDeath) onDeath.accept(exitThrowable);
+            }
+        };
+    }
+
+}
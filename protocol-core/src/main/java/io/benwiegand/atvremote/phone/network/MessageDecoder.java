@@ -0,0 +1,190 @@
+package io.benwiegand.atvremote.phone.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+import io.benwiegand.atvremote.phone.network.frame.Frame;
+import io.benwiegand.atvremote.phone.network.frame.Varint;
+import io.benwiegand.atvremote.phone.protocol.MalformedEventException;
+
+/**
+ * decodes lines and v2 frames from a stream.
+ * <p>
+ *     bytes are read into one reusable ByteBuffer and newlines are found at the byte level, so
+ *     nothing is decoded until a line is complete, and then it's decoded exactly once. the buffer
+ *     only grows if a single message doesn't fit.
+ * </p>
+ * <p>
+ *     not thread safe, this is meant to be owned by a single read thread.
+ * </p>
+ */
+public class MessageDecoder {
+    private static final int MAX_MESSAGE_LENGTH = Frame.MAX_FRAME_LENGTH + Varint.MAX_LENGTH;
+
+    private final InputStream is;
+    private final ReadableByteChannel channel;
+    private final Charset charset;
+    private final CharsetDecoder charsetDecoder;
+    private final boolean direct;
+
+    // always in read mode, bytes between position and limit haven't been decoded yet
+    private ByteBuffer buffer;
+    // reused view of buffer for decoding lines into lineView
+    private ByteBuffer window;
+    private CharBuffer lineView;
+    // everything before this index is known to not be a newline
+    private int scanOffset = 0;
+
+    /**
+     * @param is the stream to read from
+     * @param charset charset of lines
+     * @param initialCapacity initial buffer size
+     * @param direct use a direct buffer. this only helps if the stream is backed by a channel,
+     *               otherwise the bytes are copied through a heap array anyway.
+     */
+    public MessageDecoder(InputStream is, Charset charset, int initialCapacity, boolean direct) {
+        this.is = is;
+        this.channel = direct ? Channels.newChannel(is) : null;
+        this.charset = charset;
+        this.charsetDecoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.direct = direct;
+
+        buffer = allocate(initialCapacity);
+        buffer.flip(); // nothing to read yet
+        window = buffer.duplicate();
+        lineView = CharBuffer.allocate(initialCapacity);
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private void grow() throws IOException {
+        if (buffer.capacity() >= MAX_MESSAGE_LENGTH) {
+            if (buffer.remaining() < buffer.capacity()) return; // there's still some room
+            throw new IOException("message exceeds maximum length");
+        }
+
+        ByteBuffer newBuffer = allocate(Math.min(buffer.capacity() * 2, MAX_MESSAGE_LENGTH));
+        scanOffset -= buffer.position();
+        newBuffer.put(buffer);
+        newBuffer.flip();
+
+        buffer = newBuffer;
+        window = buffer.duplicate();
+    }
+
+    /**
+     * reads more bytes from the stream, blocking until at least one byte is read.
+     * @throws IOException if the stream ends, fails, or a single message is too long
+     */
+    public void fill() throws IOException {
+        // grow if the buffer is mostly taken up by a single message
+        if (buffer.remaining() > buffer.capacity() / 2) grow();
+
+        scanOffset -= buffer.position();
+        buffer.compact();
+        try {
+            int len;
+            if (channel != null) {
+                len = channel.read(buffer);
+            } else {
+                len = is.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                if (len > 0) buffer.position(buffer.position() + len);
+            }
+            if (len < 0) throw new IOException("EOS (got -1)");
+        } finally {
+            buffer.flip();
+        }
+    }
+
+    private int findNewline() {
+        if (scanOffset < buffer.position()) scanOffset = buffer.position();
+        int limit = buffer.limit();
+        for (; scanOffset < limit; scanOffset++) {
+            if (buffer.get(scanOffset) == '\n') return scanOffset;
+        }
+        return -1;
+    }
+
+    private int lineEnd(int newline) {
+        // remove cr for crlf compatibility
+        if (newline > buffer.position() && buffer.get(newline - 1) == '\r') return newline - 1;
+        return newline;
+    }
+
+    private CharBuffer decodeView(int start, int end) {
+        int maxChars = (int) Math.ceil((end - start) * (double) charsetDecoder.maxCharsPerByte());
+        if (lineView.capacity() < maxChars) lineView = CharBuffer.allocate(maxChars);
+        lineView.clear();
+
+        window.limit(end);
+        window.position(start);
+        charsetDecoder.reset();
+        charsetDecoder.decode(window, lineView, true);
+        charsetDecoder.flush(lineView);
+
+        lineView.flip();
+        return lineView;
+    }
+
+    /**
+     * @return the next complete line (without the newline), or null if there isn't one buffered
+     */
+    public String nextLine() {
+        int newline = findNewline();
+        if (newline < 0) return null;
+
+        int start = buffer.position();
+        int end = lineEnd(newline);
+        String line = buffer.hasArray() ?
+                new String(buffer.array(), buffer.arrayOffset() + start, end - start, charset) :
+                decodeView(start, end).toString();
+
+        buffer.position(newline + 1);
+        return line;
+    }
+
+    /**
+     * like {@link #nextLine()}, but the line is decoded into a reused buffer instead of a new String.
+     * <b>the returned view is only valid until the next call to this decoder.</b>
+     * @return a view of the next complete line, or null if there isn't one buffered
+     */
+    public CharSequence nextLineView() {
+        int newline = findNewline();
+        if (newline < 0) return null;
+
+        CharBuffer line = decodeView(buffer.position(), lineEnd(newline));
+        buffer.position(newline + 1);
+        return line;
+    }
+
+    /**
+     * @return the next complete frame, or null if there isn't one buffered
+     * @throws MalformedEventException if the frame is invalid
+     */
+    public Frame nextFrame() {
+        int start = buffer.position();
+        long frameLength = Varint.decode(buffer, start, buffer.limit());
+        if (frameLength < 0) return null;
+
+        int length = Varint.valueOf(frameLength);
+        if (length > Frame.MAX_FRAME_LENGTH) throw new MalformedEventException("frame too long: " + length);
+
+        int bodyStart = start + Varint.lengthOf(frameLength);
+        if (buffer.limit() - bodyStart < length) return null;
+
+        Frame frame = Frame.decodeBody(buffer, bodyStart, length);
+        buffer.position(bodyStart + length);
+        return frame;
+    }
+}
@@ -0,0 +1,164 @@
+package io.benwiegand.atvremote.phone.network;
+
+import static io.benwiegand.atvremote.phone.network.SocketUtil.tryClose;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSocket;
+
+import io.benwiegand.atvremote.phone.platform.Log;
+
+/**
+ * connects to whichever of several addresses finishes the TLS handshake first. attempts start
+ * ATTEMPT_DELAY apart, or right away when one fails. once one wins, the rest are closed.
+ * <p>
+ *     this is happy eyeballs (RFC 8305), but raced all the way through the handshake, because a
+ *     stale address of a TV can still accept TCP (like a different device that got its DHCP lease).
+ * </p>
+ */
+public class RacingConnector {
+    private static final String TAG = RacingConnector.class.getSimpleName();
+
+    public static final long ATTEMPT_DELAY = 250;
+
+    public interface Attempt {
+        /**
+         * connects the socket to the address and does the handshake on top of it.
+         * closing the socket from another thread must abort it.
+         */
+        SSLSocket connect(Socket socket, InetAddress address) throws IOException;
+    }
+
+    public record Result(SSLSocket socket, InetAddress address) {}
+
+    private final List<InetAddress> addresses;
+    private final Attempt attempt;
+    private final Socket[] sockets;
+
+    private int started = 0;
+    private int failed = 0;
+    private Result winner = null;
+    private int winnerIndex = -1;
+    private IOException error = null;
+
+    public RacingConnector(List<InetAddress> addresses, Attempt attempt) {
+        if (addresses.isEmpty()) throw new IllegalArgumentException("no addresses to connect to");
+        this.addresses = addresses;
+        this.attempt = attempt;
+        sockets = new Socket[addresses.size()];
+    }
+
+    /**
+     * puts IPv6 and IPv4 addresses in alternating order (keeping the order within each family),
+     * so a broken family only costs one attempt delay.
+     */
+    public static List<InetAddress> interleaveFamilies(List<InetAddress> addresses) {
+        List<InetAddress> v6 = new ArrayList<>();
+        List<InetAddress> v4 = new ArrayList<>();
+        for (InetAddress address : addresses) {
+            if (address instanceof Inet6Address) v6.add(address);
+            else v4.add(address);
+        }
+
+        // whichever family came first goes first
+        boolean v6First = !addresses.isEmpty() && addresses.get(0) instanceof Inet6Address;
+        List<InetAddress> first = v6First ? v6 : v4;
+        List<InetAddress> second = v6First ? v4 : v6;
+
+        List<InetAddress> interleaved = new ArrayList<>(addresses.size());
+        for (int i = 0; i < Math.max(first.size(), second.size()); i++) {
+            if (i < first.size()) interleaved.add(first.get(i));
+            if (i < second.size()) interleaved.add(second.get(i));
+        }
+        return interleaved;
+    }
+
+    /**
+     * @return the socket and address of the first attempt to finish
+     * @throws IOException if every attempt failed. a TLS error is preferred over the others since
+     *         it means the TV was reached.
+     */
+    public synchronized Result connect() throws IOException, InterruptedException {
+        try {
+            long nextStart = 0;
+            int failedAtLastStart = -1;
+            while (winner == null && failed < addresses.size()) {
+                long now = System.currentTimeMillis();
+                // a failure means the next attempt doesn't need to wait
+                if (started < addresses.size() && (failed > failedAtLastStart || now >= nextStart)) {
+                    startAttempt(started++);
+                    nextStart = now + ATTEMPT_DELAY;
+                    failedAtLastStart = failed;
+                    continue;
+                }
+
+                if (started < addresses.size()) wait(nextStart - now);
+                else wait();
+            }
+
+            if (winner == null) throw error;
+            Log.d(TAG, "connected via " + winner.address() + " after " + started + " attempt(s)");
+            return winner;
+
+        } finally {
+            // the winner is layered over its socket, so that one stays open
+            for (int i = 0; i < started; i++) {
+                if (i != winnerIndex) tryClose(sockets[i]);
+            }
+        }
+    }
+
+    private void startAttempt(int index) {
+        Socket socket = new Socket();
+        sockets[index] = socket;
+        InetAddress address = addresses.get(index);
+        Log.v(TAG, "trying " + address);
+        new Thread(() -> runAttempt(index, socket, address), "connect-" + address.getHostAddress()).start();
+    }
+
+    private void runAttempt(int index, Socket socket, InetAddress address) {
+        SSLSocket sslSocket;
+        try {
+            sslSocket = attempt.connect(socket, address);
+        } catch (IOException e) {
+            Log.v(TAG, "attempt to " + address + " failed: " + e.getMessage());
+            onFailure(e);
+            return;
+        } catch (RuntimeException e) {
+            Log.e(TAG, "attempt to " + address + " threw unexpectedly", e);
+            onFailure(new IOException("unexpected error connecting to " + address, e));
+            return;
+        }
+
+        synchronized (this) {
+            if (winner == null) {
+                winner = new Result(sslSocket, address);
+                winnerIndex = index;
+                notifyAll();
+                return;
+            }
+        }
+
+        // too late
+        tryClose(sslSocket);
+    }
+
+    private synchronized void onFailure(IOException e) {
+        failed++;
+        if (error == null) {
+            error = e;
+        } else if (e instanceof SSLException && !(error instanceof SSLException)) {
+            e.addSuppressed(error);
+            error = e;
+        } else {
+            error.addSuppressed(e);
+        }
+        notifyAll();
+    }
+}
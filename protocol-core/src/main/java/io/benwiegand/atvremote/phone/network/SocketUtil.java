@@ -1,10 +1,10 @@
 package io.benwiegand.atvremote.phone.network;
 
-import android.util.Log;
-
 import java.io.Closeable;
 import java.net.Socket;
 
+import io.benwiegand.atvremote.phone.platform.Log;
+
 public class SocketUtil {
     private static final String TAG = SocketUtil.class.getSimpleName();
 
@@ -13,11 +13,6 @@ public class SocketUtil {
         tryClose((Closeable) socket);
     }
 
-    public static void tryClose(TVReceiverConnection connection) {
-        if (connection.isDead()) return;
-        tryClose((Closeable) connection);
-    }
-
     public static void tryClose(EventJuggler eventJuggler) {
         if (eventJuggler.isDead()) return;
         tryClose((Closeable) eventJuggler);
@@ -0,0 +1,242 @@
+package io.benwiegand.atvremote.phone.network;
+
+import static io.benwiegand.atvremote.phone.util.StackTraceUtil.getLightStackTrace;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import io.benwiegand.atvremote.phone.network.frame.Frame;
+import io.benwiegand.atvremote.phone.platform.Log;
+import io.benwiegand.atvremote.phone.protocol.MalformedEventException;
+
+public class TCPReader implements Closeable {
+    private final static String TAG = TCPReader.class.getSimpleName();
+    private final static int BYTE_BUFFER_SIZE = 4096;
+    private static final int MAX_LINE_BUFFER = 5;
+
+    private final InputStream is;
+    private final Charset charset;
+    private final MessageDecoder decoder;
+
+    private final Thread readThread = new Thread(this::readLoop);
+    private boolean dead = false;
+    private IOException deathException = new IOException("unknown error");
+
+    // v2 frames instead of lines
+    private volatile boolean framed = false;
+    // switch to frames as soon as this line is decoded
+    private volatile String framesAfterLine = null;
+
+    // two locks (including lineBuffer itself) because read thread needs to wait for reads for
+    // buffer limit and read calls need to wait for lineBuffer to have things.
+    // holds Strings for lines and Frames for v2 event/response frames.
+    private final Object lineBufferPollNotificationLock = new Object();
+    private final Queue<Object> lineBuffer = new ConcurrentLinkedQueue<>();
+
+    public TCPReader(InputStream is, Charset charset, boolean directBuffer) {
+        this.is = is;
+        this.charset = charset;
+        this.decoder = new MessageDecoder(is, charset, BYTE_BUFFER_SIZE, directBuffer);
+        readThread.start();
+    }
+
+    public TCPReader(InputStream is, Charset charset) {
+        this(is, charset, false);
+    }
+
+    /**
+     * switches from newline delimited messages to length-prefixed v2 frames.
+     * <p>
+     *     this must only be called while the other side is waiting on us, otherwise the read thread
+     *     may have already decoded frames as lines.
+     * </p>
+     */
+    public void switchToFrames() {
+        framed = true;
+    }
+
+    /**
+     * switches to v2 frames right after the read thread decodes the given line, before it decodes
+     * anything else. for when frames are already on their way behind the line, so the switch
+     * can't wait for it to be read.
+     * @param line the line that's followed by frames, if it arrives
+     */
+    public void switchToFramesAfter(String line) {
+        framesAfterLine = line;
+    }
+
+    public boolean isFramed() {
+        return framed;
+    }
+
+    /**
+     * @return true if buffer limit reduced, false if interrupted before that happens
+     */
+    private boolean waitForLineBufferLimit() {
+        synchronized (lineBufferPollNotificationLock) {
+            try {
+                while (lineBuffer.size() >= MAX_LINE_BUFFER) lineBufferPollNotificationLock.wait();
+                return true;
+            } catch (InterruptedException e) {
+                Log.d(TAG, "interrupted");
+                return false;
+            }
+        }
+    }
+
+    private void offer(Object message) {
+        synchronized (lineBuffer) {
+            lineBuffer.add(message);
+            lineBuffer.notify();
+        }
+    }
+
+    private boolean decodeLine() {
+        String line = decoder.nextLine();
+        if (line == null) return false;
+
+        String switchLine = framesAfterLine;
+        if (switchLine != null) {
+            framesAfterLine = null;
+            if (switchLine.equals(line)) framed = true;
+        }
+
+        offer(line);
+        return true;
+    }
+
+    private boolean decodeFrame() {
+        Frame frame = decoder.nextFrame();
+        if (frame == null) return false;
+
+        if (frame.type() == Frame.TYPE_LINE) {
+            offer(new String(frame.payload(), charset));
+        } else {
+            offer(frame);
+        }
+        return true;
+    }
+
+    private void readLoop() {
+        Log.d(TAG, "starting read loop");
+        try {
+            while (!dead) {
+
+                if (lineBuffer.size() >= MAX_LINE_BUFFER) {
+                    Log.w(TAG, "hit line buffer limit");
+                    if (!waitForLineBufferLimit()) continue;
+                }
+
+                if (framed ? decodeFrame() : decodeLine()) continue;
+
+                decoder.fill();
+            }
+
+            deathException = new IOException("stream closed");
+
+        } catch (IOException e) {
+            Log.w(TAG, "read thread encountered IOException:\n" + getLightStackTrace(e));
+            deathException = e;
+        } catch (RuntimeException e) {
+            Log.e(TAG, "read thread encountered unexpected exception", e);
+            deathException = new IOException("read thread encountered unexpected exception and will terminate", e);
+        } finally {
+            Log.d(TAG, "read thread terminating. dead = " + dead);
+            if (!dead) close();
+        }
+    }
+
+    private Object nextMessage(long timeout) throws IOException, InterruptedException {
+        synchronized (lineBuffer) {
+            if (dead) throw new IOException(deathException);
+
+            Object message = lineBuffer.poll();
+            if (message == null) {
+                lineBuffer.wait(timeout);
+                message = lineBuffer.poll();
+            }
+
+            if (message == null) {
+                if (dead) throw new IOException(deathException);
+                return null;
+            }
+
+            synchronized (lineBufferPollNotificationLock) {
+                lineBufferPollNotificationLock.notifyAll();
+            }
+
+            return message;
+        }
+    }
+
+    /**
+     * reads the next line. in framed mode this returns the contents of the next line frame.
+     * @param timeout timeout in ms
+     * @return the line, or null if nothing arrived within the timeout
+     * @throws MalformedEventException if the next message is an event/response frame
+     */
+    public String nextLine(long timeout) throws IOException, InterruptedException {
+        Object message = nextMessage(timeout);
+        if (message == null) return null;
+        if (!(message instanceof String line))
+            throw new MalformedEventException("expected a line but got a frame");
+
+        if (NetworkDebugConstants.NETWORK_DEBUG_LOGS) Log.d(TAG, "RX: " + line);
+        return line;
+    }
+
+    /**
+     * reads the next v2 event/response frame.
+     * @param timeout timeout in ms
+     * @return the frame, or null if nothing arrived within the timeout
+     * @throws MalformedEventException if the next message is a line
+     */
+    public Frame nextFrame(long timeout) throws IOException, InterruptedException {
+        Object message = nextMessage(timeout);
+        if (message == null) return null;
+        if (!(message instanceof Frame frame))
+            throw new MalformedEventException("expected a frame but got a line");
+
+        if (NetworkDebugConstants.NETWORK_DEBUG_LOGS)
+            Log.d(TAG, "RX: frame type=" + frame.type() + " id=" + frame.eventId() + " op=" + frame.opcode() + " payload=" + Arrays.toString(frame.payload()));
+        return frame;
+    }
+
+    public boolean isDead() {
+        return dead;
+    }
+
+    @Override
+    public void close() {
+        dead = true;
+
+        // close stream if not already
+        try {
+            is.close();
+        } catch (IOException e) {
+            Log.w(TAG, "failed to close stream", e);
+        }
+
+        // stop the read thread
+        try {
+            readThread.interrupt();
+        } catch (SecurityException e) {
+            Log.wtf(TAG, "failed to interrupt read thread due to security exception", e);
+        }
+
+        // free up threads blocking for next line
+        synchronized (lineBuffer) {
+            lineBuffer.notifyAll();
+        }
+    }
+
+    public static TCPReader createFromStream(InputStream is, Charset cs) {
+        return new TCPReader(is, cs);
+    }
+
+}
@@ -0,0 +1,191 @@
+package io.benwiegand.atvremote.phone.network;
+
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.NEWLINE;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import io.benwiegand.atvremote.phone.network.frame.Frame;
+import io.benwiegand.atvremote.phone.platform.Log;
+
+public class TCPWriter implements Closeable {
+    private static final String TAG = TCPWriter.class.getSimpleName();
+
+    // anything up to this size goes out in a single write to the socket
+    public static final int WRITE_BUFFER_SIZE = 8192;
+
+    private static final byte[] NEWLINE_BYTES = NEWLINE.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NO_BYTES = new byte[0];
+
+    private final OutputStream os;
+    private final CharsetEncoder encoder;
+    private ByteBuffer encodeBuffer = ByteBuffer.allocate(256);
+    private int unflushedBytes = 0;
+
+    // v2 frames instead of lines
+    private boolean framed = false;
+
+    public TCPWriter(OutputStream os, Charset charset) {
+        this.os = os;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * switches from newline delimited messages to length-prefixed v2 frames.
+     * lines sent after this are wrapped in line frames.
+     */
+    public void switchToFrames() {
+        framed = true;
+    }
+
+    public boolean isFramed() {
+        return framed;
+    }
+
+    /**
+     * encodes into a reused buffer, so writing doesn't allocate byte arrays.
+     * @return the buffer, flipped. only valid until the next call.
+     */
+    private ByteBuffer encode(CharSequence s, int start, int end) {
+        int maxBytes = (int) Math.ceil((end - start) * (double) encoder.maxBytesPerChar());
+        if (encodeBuffer.capacity() < maxBytes) encodeBuffer = ByteBuffer.allocate(maxBytes);
+        encodeBuffer.clear();
+
+        encoder.reset();
+        encoder.encode(CharBuffer.wrap(s, start, end), encodeBuffer, true);
+        encoder.flush(encodeBuffer);
+
+        encodeBuffer.flip();
+        return encodeBuffer;
+    }
+
+    /**
+     * writes a line without flushing. in framed mode the line is wrapped in a line frame.
+     * @param line the line
+     */
+    public void writeLine(CharSequence line) throws IOException {
+        if (NetworkDebugConstants.NETWORK_DEBUG_LOGS) Log.d(TAG, "TX: " + line);
+        if (framed) {
+            writeFrame(Frame.TYPE_LINE, 0, 0, line, 0, line.length());
+        } else {
+            ByteBuffer bytes = encode(line, 0, line.length());
+            os.write(bytes.array(), 0, bytes.limit());
+            os.write(NEWLINE_BYTES);
+            unflushedBytes += bytes.limit() + NEWLINE_BYTES.length;
+        }
+    }
+
+    /**
+     * writes a line that's already encoded, without flushing. v1 only.
+     * @param head start of the line
+     * @param tail rest of the line, without the newline
+     */
+    public void writeLine(byte[] head, byte[] tail) throws IOException {
+        if (framed) throw new IllegalStateException("in framed mode");
+        if (NetworkDebugConstants.NETWORK_DEBUG_LOGS) Log.d(TAG, "TX: " + new String(head, encoder.charset()) + new String(tail, encoder.charset()));
+        os.write(head);
+        os.write(tail);
+        os.write(NEWLINE_BYTES);
+        unflushedBytes += head.length + tail.length + NEWLINE_BYTES.length;
+    }
+
+    /**
+     * writes a frame without flushing.
+     * @param frame the frame
+     */
+    public void writeFrame(Frame frame) throws IOException {
+        if (!framed) throw new IllegalStateException("not in framed mode");
+        if (NetworkDebugConstants.NETWORK_DEBUG_LOGS) Log.d(TAG, "TX: frame type=" + frame.type() + " id=" + frame.eventId() + " op=" + frame.opcode());
+        frame.writeTo(os);
+        unflushedBytes += frame.length();
+    }
+
+    /**
+     * writes a frame without flushing, encoding the payload into a reused buffer.
+     * @param payload text holding the payload, or null for none
+     * @param start start index of the payload in the text
+     * @param end end index of the payload in the text (exclusive)
+     */
+    public void writeFrame(byte type, int eventId, int opcode, CharSequence payload, int start, int end) throws IOException {
+        if (!framed) throw new IllegalStateException("not in framed mode");
+        if (NetworkDebugConstants.NETWORK_DEBUG_LOGS) Log.d(TAG, "TX: frame type=" + type + " id=" + eventId + " op=" + opcode);
+
+        byte[] bytes = NO_BYTES;
+        int length = 0;
+        if (payload != null) {
+            ByteBuffer encoded = encode(payload, start, end);
+            bytes = encoded.array();
+            length = encoded.limit();
+        }
+
+        Frame.writeTo(os, type, eventId, opcode, bytes, 0, length);
+        unflushedBytes += Frame.length(type, eventId, opcode, length);
+    }
+
+    /**
+     * writes a frame without flushing, with a payload that's already encoded.
+     * @param payload the payload
+     */
+    public void writeFrame(byte type, int eventId, int opcode, byte[] payload) throws IOException {
+        if (!framed) throw new IllegalStateException("not in framed mode");
+        if (NetworkDebugConstants.NETWORK_DEBUG_LOGS) Log.d(TAG, "TX: frame type=" + type + " id=" + eventId + " op=" + opcode);
+        Frame.writeTo(os, type, eventId, opcode, payload, 0, payload.length);
+        unflushedBytes += Frame.length(type, eventId, opcode, payload.length);
+    }
+
+    /**
+     * like {@link #writeFrame(byte, int, int, CharSequence, int, int)} for the whole payload.
+     */
+    public void writeFrame(byte type, int eventId, int opcode, CharSequence payload) throws IOException {
+        writeFrame(type, eventId, opcode, payload, 0, payload == null ? 0 : payload.length());
+    }
+
+    /**
+     * @return bytes written since the last flush
+     */
+    public int getUnflushedBytes() {
+        return unflushedBytes;
+    }
+
+    public void flush() throws IOException {
+        os.flush();
+        unflushedBytes = 0;
+    }
+
+    public void sendLine(CharSequence line) throws IOException {
+        writeLine(line);
+        flush();
+    }
+
+    public void sendLines(String... lines) throws IOException {
+        for (String line : lines)
+            writeLine(line);
+
+        flush();
+    }
+
+    public void sendFrame(Frame frame) throws IOException {
+        writeFrame(frame);
+        flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        os.close();
+    }
+
+    public static TCPWriter createFromStream(OutputStream os, Charset cs) {
+        return new TCPWriter(new BufferedOutputStream(os, WRITE_BUFFER_SIZE), cs);
+    }
+
+}
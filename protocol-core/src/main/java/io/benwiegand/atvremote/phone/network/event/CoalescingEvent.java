@@ -0,0 +1,63 @@
+package io.benwiegand.atvremote.phone.network.event;
+
+import io.benwiegand.atvremote.phone.async.FanOutSecAdapter;
+import io.benwiegand.atvremote.phone.async.SecAdapter;
+
+/**
+ * a queued mergeable event that other events can still be folded into.
+ * only touched with the OutputQueue merge lock held.
+ */
+class CoalescingEvent implements QueuedOutput {
+    private final EventMerger merger;
+    private final OutputPriority priority;
+    private final long enqueuedAt;
+    private final boolean ack;
+    private String event;
+    private SecAdapter<EventResult> adapter;
+    private long deadline;
+
+    CoalescingEvent(QueuedEvent event, EventMerger merger) {
+        this.merger = merger;
+        this.priority = event.priority();
+        this.enqueuedAt = event.enqueuedAt();
+        this.ack = event.ack();
+        this.event = event.event();
+        this.adapter = event.adapter();
+        this.deadline = event.deadline();
+    }
+
+    String key() {
+        return merger.key();
+    }
+
+    void merge(QueuedEvent next) {
+        event = merger.merge().apply(event, next.event());
+        adapter = FanOutSecAdapter.of(adapter, next.adapter());
+        // the newest caller is still waiting after the older ones gave up
+        if (next.deadline() - deadline > 0) deadline = next.deadline();
+    }
+
+    /**
+     * @return true if everyone waiting on it cancelled
+     */
+    boolean isCancelled() {
+        return adapter.isCancelled();
+    }
+
+    /**
+     * @return the event to actually send. the oldest enqueue time and latest deadline are kept.
+     */
+    QueuedEvent toQueuedEvent() {
+        return new QueuedEvent(event, priority, adapter, enqueuedAt, ack, null, deadline);
+    }
+
+    @Override
+    public Type type() {
+        return Type.EVENT;
+    }
+
+    @Override
+    public OutputPriority priority() {
+        return priority;
+    }
+}
@@ -0,0 +1,62 @@
+package io.benwiegand.atvremote.phone.network.event;
+
+import java.util.Arrays;
+
+import io.benwiegand.atvremote.phone.protocol.MalformedEventException;
+
+/**
+ * v1 puts event ids on the wire as 4 base64 characters (24 bits). v2 sends them as varints instead.
+ */
+public class EventIds {
+    public static final int EVENT_ID_MASK = 0xFFFFFF;
+    public static final int EVENT_ID_LENGTH = 4;
+
+    private static final char[] BASE64_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final byte[] BASE64_DECODE_TABLE = new byte[128];
+    static {
+        Arrays.fill(BASE64_DECODE_TABLE, (byte) -1);
+        for (int i = 0; i < BASE64_ALPHABET.length; i++) BASE64_DECODE_TABLE[BASE64_ALPHABET[i]] = (byte) i;
+    }
+
+    /**
+     * @param sb where to append the v1 event id
+     * @param eventId 24-bit event id
+     * @return sb
+     */
+    public static StringBuilder appendEventId(StringBuilder sb, int eventId) {
+        for (int shift = 18; shift >= 0; shift -= 6)
+            sb.append(BASE64_ALPHABET[(eventId >>> shift) & 0x3F]);
+        return sb;
+    }
+
+    /**
+     * like {@link #appendEventId(StringBuilder, int)}, but straight into bytes.
+     * @param dst where to put the v1 event id, {@link #EVENT_ID_LENGTH} bytes long
+     * @param eventId 24-bit event id
+     */
+    public static void encodeEventId(byte[] dst, int eventId) {
+        for (int i = 0, shift = 18; shift >= 0; i++, shift -= 6)
+            dst[i] = (byte) BASE64_ALPHABET[(eventId >>> shift) & 0x3F];
+    }
+
+    /**
+     * @param s contains a v1 event id
+     * @param start start index of the event id
+     * @param end end index of the event id (exclusive)
+     * @return the 24-bit event id
+     * @throws MalformedEventException if it isn't a valid event id
+     */
+    public static int decodeEventId(CharSequence s, int start, int end) {
+        if (end - start != EVENT_ID_LENGTH)
+            throw new MalformedEventException("invalid event id: " + s.subSequence(start, end));
+
+        int eventId = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            int value = c < BASE64_DECODE_TABLE.length ? BASE64_DECODE_TABLE[c] : -1;
+            if (value < 0) throw new MalformedEventException("invalid event id: " + s.subSequence(start, end));
+            eventId = eventId << 6 | value;
+        }
+        return eventId;
+    }
+}
@@ -0,0 +1,12 @@
+package io.benwiegand.atvremote.phone.network.event;
+
+import java.util.function.BinaryOperator;
+
+/**
+ * marks an event as mergeable. if an event with the same key is still queued when another one is
+ * sent, they are folded into a single event, and the response goes to every caller.
+ * @param key events are only merged with events that have the same key
+ * @param merge combines the queued event with the new one, returning the event to send instead
+ */
+public record EventMerger(String key, BinaryOperator<String> merge) {
+}
@@ -0,0 +1,28 @@
+package io.benwiegand.atvremote.phone.network.event;
+
+/**
+ * a response from the other side
+ * @param response response operation (OK, ERR, HUH?, ...)
+ * @param extra response extra, or null
+ */
+public record EventResult(String response, String extra) {
+    public EventResult(String response) {
+        this(response, null);
+    }
+
+    /**
+     * @param responseLine response operation and extra separated by a space, like on the wire
+     */
+    public static EventResult parse(String responseLine) {
+        int iSep = responseLine.indexOf(' ');
+        if (iSep < 1) return new EventResult(responseLine);
+        return new EventResult(responseLine.substring(0, iSep), responseLine.substring(iSep + 1));
+    }
+
+    /**
+     * @return the response as it would be on the wire (without the event id)
+     */
+    public String responseLine() {
+        return extra == null ? response : response + " " + extra;
+    }
+}
@@ -0,0 +1,62 @@
+package io.benwiegand.atvremote.phone.network.event;
+
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.CHARSET;
+
+import io.benwiegand.atvremote.phone.protocol.KeyEventType;
+import io.benwiegand.atvremote.phone.protocol.Opcodes;
+
+/**
+ * an event that's encoded ahead of time, for operations with no extra or a {@link KeyEventType}
+ * extra. there's only a handful of those, so every combination is built once and buttons can be
+ * sent without building strings or encoding anything.
+ * @param event operation and extra
+ * @param opcode opcode of the operation
+ * @param payload encoded v2 frame payload (the extra)
+ * @param line encoded v1 line after the event id (" OP extra"), without the newline
+ */
+public record EventTemplate(String event, int opcode, byte[] payload, byte[] line) {
+
+    // [opcode][0] has no extra, [opcode][type.ordinal() + 1] has the key event type as the extra
+    private static final EventTemplate[][] TEMPLATES = new EventTemplate[Opcodes.count()][KeyEventType.values().length + 1];
+
+    static {
+        for (int opcode = Opcodes.OPCODE_LITERAL + 1; opcode < Opcodes.count(); opcode++) {
+            String operation = Opcodes.operationOf(opcode);
+            TEMPLATES[opcode][0] = create(opcode, operation, null);
+            for (KeyEventType type : KeyEventType.values())
+                TEMPLATES[opcode][type.ordinal() + 1] = create(opcode, operation, type.name());
+        }
+    }
+
+    private static EventTemplate create(int opcode, String operation, String extra) {
+        String event = extra == null ? operation : operation + " " + extra;
+        byte[] payload = extra == null ? new byte[0] : extra.getBytes(CHARSET);
+        return new EventTemplate(event, opcode, payload, (" " + event).getBytes(CHARSET));
+    }
+
+    private static int opcodeOf(String operation) {
+        int opcode = Opcodes.opcodeOf(operation);
+        if (opcode == Opcodes.OPCODE_LITERAL)
+            throw new IllegalArgumentException("no opcode for operation: " + operation);
+        return opcode;
+    }
+
+    /**
+     * @param operation an operation in the opcode table
+     * @return the template for the operation with no extra
+     * @throws IllegalArgumentException if the operation has no opcode
+     */
+    public static EventTemplate of(String operation) {
+        return TEMPLATES[opcodeOf(operation)][0];
+    }
+
+    /**
+     * @param operation an operation in the opcode table
+     * @param type the key event type extra
+     * @return the template for the operation with the key event type as its extra
+     * @throws IllegalArgumentException if the operation has no opcode
+     */
+    public static EventTemplate of(String operation, KeyEventType type) {
+        return TEMPLATES[opcodeOf(operation)][type.ordinal() + 1];
+    }
+}
@@ -0,0 +1,15 @@
+package io.benwiegand.atvremote.phone.network.event;
+
+import io.benwiegand.atvremote.phone.async.SecAdapter;
+
+/**
+ * an event that was written and is waiting for a response
+ * @param eventId the event id
+ * @param opcode opcode of the operation, for stats
+ * @param adapter where the response goes
+ * @param enqueuedAt when the event was queued, in elapsed realtime nanos
+ * @param sentAt when the event was written, in elapsed realtime nanos
+ * @param deadline when it times out, in elapsed realtime nanos
+ */
+public record InFlightEvent(int eventId, int opcode, SecAdapter<EventResult> adapter, long enqueuedAt, long sentAt, long deadline) {
+}
@@ -0,0 +1,24 @@
+package io.benwiegand.atvremote.phone.network.event;
+
+/**
+ * priority class of queued output, highest priority first.
+ * each one gets its own lane in {@link OutputQueue}.
+ */
+public enum OutputPriority {
+    /**
+     * button presses and other input the user is waiting to see the effect of
+     */
+    INTERACTIVE,
+    /**
+     * responses, subscriptions, pairing, and anything else not directly caused by input
+     */
+    CONTROL,
+    /**
+     * large or non-urgent things like committed text
+     */
+    BULK,
+    /**
+     * pings
+     */
+    KEEPALIVE,
+}
@@ -0,0 +1,194 @@
+package io.benwiegand.atvremote.phone.network.event;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+
+/**
+ * outgoing queue with one lane per {@link OutputPriority}.
+ * <p>
+ *     lanes are served in strict priority order, except that a lane which has been passed over
+ *     starvationLimit times while it had something queued gets served next. so a stream of input
+ *     can delay background traffic, but never block it forever.
+ * </p>
+ * <p>
+ *     events added with an {@link EventMerger} are folded into a queued event with the same key
+ *     if there is one, instead of taking up another spot in the queue.
+ * </p>
+ * <p>
+ *     anything can add, but only one thread (the output thread) should take/poll.
+ * </p>
+ */
+public class OutputQueue {
+    private static final OutputPriority[] PRIORITIES = OutputPriority.values();
+
+    @SuppressWarnings("unchecked")
+    private final Queue<QueuedOutput>[] lanes = (Queue<QueuedOutput>[]) new Queue<?>[PRIORITIES.length];
+    private final AtomicIntegerArray depths = new AtomicIntegerArray(PRIORITIES.length);
+    // one permit per queued entry across all lanes
+    private final Semaphore semaphore = new Semaphore(0);
+
+    // mergeable events that are still queued, by key
+    private final Map<String, CoalescingEvent> mergeable = new HashMap<>();
+    private long mergedCount = 0;
+
+    // only touched by the polling thread
+    private final int[] skipped = new int[PRIORITIES.length];
+    private final int starvationLimit;
+
+    /**
+     * @param starvationLimit how many times a lane can be passed over before it gets a turn
+     */
+    public OutputQueue(int starvationLimit) {
+        if (starvationLimit < 1) throw new IllegalArgumentException("starvation limit must be at least 1");
+        this.starvationLimit = starvationLimit;
+        for (int i = 0; i < lanes.length; i++) lanes[i] = new ConcurrentLinkedQueue<>();
+    }
+
+    public void add(QueuedOutput output) {
+        int lane = output.priority().ordinal();
+        lanes[lane].add(output);
+        depths.incrementAndGet(lane);
+        semaphore.release();
+    }
+
+    /**
+     * adds an event, or merges it into a queued event with the same key
+     * @param event the event
+     * @param merger how to merge it
+     */
+    public void add(QueuedEvent event, EventMerger merger) {
+        synchronized (mergeable) {
+            CoalescingEvent queued = mergeable.get(merger.key());
+            if (queued != null) {
+                queued.merge(event);
+                mergedCount++;
+                return;
+            }
+
+            CoalescingEvent coalescingEvent = new CoalescingEvent(event, merger);
+            mergeable.put(merger.key(), coalescingEvent);
+            add(coalescingEvent);
+        }
+    }
+
+    /**
+     * takes a cancelled event back out of its lane, so it doesn't count toward the depth or hold
+     * back other lanes anymore. a merged event only comes out once everything merged into it was
+     * cancelled.
+     * @param event the event as it was added
+     * @param merger the merger it was added with, or null
+     * @return true if it was still queued and got removed
+     */
+    public boolean withdraw(QueuedEvent event, EventMerger merger) {
+        QueuedOutput queued = event;
+        if (merger != null) {
+            synchronized (mergeable) {
+                CoalescingEvent coalescingEvent = mergeable.get(merger.key());
+                if (coalescingEvent == null || !coalescingEvent.isCancelled()) return false;
+                mergeable.remove(merger.key());
+                queued = coalescingEvent;
+            }
+        }
+
+        int lane = queued.priority().ordinal();
+        if (!lanes[lane].remove(queued)) return false;
+        depths.decrementAndGet(lane);
+        // the permit might be held by a poller already, which is fine. it takes whatever else is
+        // queued, or comes back empty handed if there's nothing.
+        semaphore.tryAcquire();
+        return true;
+    }
+
+    /**
+     * once a mergeable event is taken out of the queue, nothing else can be merged into it
+     */
+    private QueuedOutput seal(QueuedOutput output) {
+        if (!(output instanceof CoalescingEvent coalescingEvent)) return output;
+        synchronized (mergeable) {
+            mergeable.remove(coalescingEvent.key(), coalescingEvent);
+            return coalescingEvent.toQueuedEvent();
+        }
+    }
+
+    private int selectLane() {
+        for (int i = 0; i < lanes.length; i++) {
+            if (skipped[i] >= starvationLimit && !lanes[i].isEmpty()) return i;
+        }
+
+        for (int i = 0; i < lanes.length; i++) {
+            if (!lanes[i].isEmpty()) return i;
+        }
+
+        return -1;
+    }
+
+    private QueuedOutput pollLane() {
+        int lane;
+        QueuedOutput output = null;
+        do {
+            lane = selectLane();
+            if (lane < 0) return null;
+            output = lanes[lane].poll();
+        } while (output == null);
+
+        depths.decrementAndGet(lane);
+        skipped[lane] = 0;
+        for (int i = lane + 1; i < lanes.length; i++) {
+            if (!lanes[i].isEmpty()) skipped[i]++;
+        }
+
+        return seal(output);
+    }
+
+    /**
+     * @return the next entry, or null if there's nothing queued
+     */
+    public QueuedOutput poll() {
+        if (!semaphore.tryAcquire()) return null;
+        return pollLane();
+    }
+
+    /**
+     * @param timeout timeout in ms
+     * @return the next entry, or null if nothing was queued within the timeout
+     */
+    public QueuedOutput take(long timeout) throws InterruptedException {
+        if (!semaphore.tryAcquire(timeout, TimeUnit.MILLISECONDS)) return null;
+        return pollLane();
+    }
+
+    /**
+     * removes everything, passing each entry to the consumer
+     */
+    public void drain(Consumer<QueuedOutput> consumer) {
+        for (int i = 0; i < lanes.length; i++) {
+            QueuedOutput output;
+            while ((output = lanes[i].poll()) != null) {
+                depths.decrementAndGet(i);
+                consumer.accept(seal(output));
+            }
+        }
+    }
+
+    /**
+     * @return number of entries queued in the lane for the given priority
+     */
+    public int depth(OutputPriority priority) {
+        return depths.get(priority.ordinal());
+    }
+
+    /**
+     * @return number of events that were merged into an already queued event
+     */
+    public long mergedCount() {
+        synchronized (mergeable) {
+            return mergedCount;
+        }
+    }
+}
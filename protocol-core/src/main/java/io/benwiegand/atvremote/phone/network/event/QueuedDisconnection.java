@@ -5,4 +5,10 @@ public record QueuedDisconnection() implements QueuedOutput {
     public Type type() {
         return Type.DISCONNECTION;
     }
+
+    @Override
+    public OutputPriority priority() {
+        // same lane as responses so it goes out after the error response that caused it
+        return OutputPriority.CONTROL;
+    }
 }
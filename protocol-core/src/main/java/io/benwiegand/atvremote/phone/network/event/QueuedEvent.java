@@ -0,0 +1,82 @@
+package io.benwiegand.atvremote.phone.network.event;
+
+import java.util.concurrent.TimeUnit;
+
+import io.benwiegand.atvremote.phone.async.SecAdapter;
+import io.benwiegand.atvremote.phone.platform.SystemClock;
+
+/**
+ * an event waiting to be written
+ * @param event operation and extra
+ * @param priority queue priority
+ * @param adapter where the response goes
+ * @param enqueuedAt when the event was queued, in elapsed realtime nanos
+ * @param ack if false, the event is sent without asking for a response, and the adapter gets a
+ *            null result as soon as it's written
+ * @param template if not null, the pre-encoded form of the event, which is written instead
+ * @param deadline when nobody cares about the response anymore, in elapsed realtime nanos. the
+ *                 event is dropped if it's still queued by then, otherwise it times out.
+ */
+public record QueuedEvent(String event, OutputPriority priority, SecAdapter<EventResult> adapter, long enqueuedAt, boolean ack, EventTemplate template, long deadline) implements QueuedOutput {
+    /**
+     * timeout for events that don't have their own, in ms
+     */
+    public static final long DEFAULT_TIMEOUT = 30000;
+
+    public QueuedEvent(String event, OutputPriority priority, SecAdapter<EventResult> adapter, long enqueuedAt, boolean ack, long timeout) {
+        this(event, priority, adapter, enqueuedAt, ack, null, deadlineOf(enqueuedAt, timeout));
+    }
+
+    public QueuedEvent(String event, OutputPriority priority, SecAdapter<EventResult> adapter, long enqueuedAt, boolean ack) {
+        this(event, priority, adapter, enqueuedAt, ack, DEFAULT_TIMEOUT);
+    }
+
+    public QueuedEvent(String event, OutputPriority priority, SecAdapter<EventResult> adapter, long enqueuedAt) {
+        this(event, priority, adapter, enqueuedAt, true);
+    }
+
+    public QueuedEvent(String event, OutputPriority priority, SecAdapter<EventResult> adapter, boolean ack, long timeout) {
+        this(event, priority, adapter, SystemClock.elapsedRealtimeNanos(), ack, timeout);
+    }
+
+    public QueuedEvent(String event, OutputPriority priority, SecAdapter<EventResult> adapter, boolean ack) {
+        this(event, priority, adapter, ack, DEFAULT_TIMEOUT);
+    }
+
+    public QueuedEvent(String event, OutputPriority priority, SecAdapter<EventResult> adapter) {
+        this(event, priority, adapter, true);
+    }
+
+    public QueuedEvent(EventTemplate template, OutputPriority priority, SecAdapter<EventResult> adapter, boolean ack, long timeout) {
+        this(template, priority, adapter, SystemClock.elapsedRealtimeNanos(), ack, timeout);
+    }
+
+    public QueuedEvent(EventTemplate template, OutputPriority priority, SecAdapter<EventResult> adapter, boolean ack) {
+        this(template, priority, adapter, ack, DEFAULT_TIMEOUT);
+    }
+
+    private QueuedEvent(EventTemplate template, OutputPriority priority, SecAdapter<EventResult> adapter, long enqueuedAt, boolean ack, long timeout) {
+        this(template.event(), priority, adapter, enqueuedAt, ack, template, deadlineOf(enqueuedAt, timeout));
+    }
+
+    private static long deadlineOf(long enqueuedAt, long timeout) {
+        return enqueuedAt + TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    @Override
+    public Type type() {
+        return Type.EVENT;
+    }
+
+    /**
+     * @param now current elapsed realtime nanos
+     * @return true if the deadline has passed
+     */
+    public boolean isExpired(long now) {
+        return now - deadline > 0;
+    }
+
+    public InFlightEvent toInFlightEvent(int eventId, int opcode, long sentAt) {
+        return new InFlightEvent(eventId, opcode, adapter(), enqueuedAt(), sentAt, deadline());
+    }
+}
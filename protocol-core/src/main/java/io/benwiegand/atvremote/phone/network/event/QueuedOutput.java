@@ -8,4 +8,6 @@ public interface QueuedOutput {
     }
 
     Type type();
+
+    OutputPriority priority();
 }
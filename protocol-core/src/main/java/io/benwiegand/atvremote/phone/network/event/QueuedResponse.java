@@ -0,0 +1,23 @@
+package io.benwiegand.atvremote.phone.network.event;
+
+/**
+ * a response to an event from the other side
+ * @param eventId id of the event being responded to
+ * @param response response operation (OK, ERR, HUH?, ...)
+ * @param extra response extra, or null
+ */
+public record QueuedResponse(int eventId, String response, String extra) implements QueuedOutput {
+    public QueuedResponse(int eventId, String response) {
+        this(eventId, response, null);
+    }
+
+    @Override
+    public Type type() {
+        return Type.RESPONSE;
+    }
+
+    @Override
+    public OutputPriority priority() {
+        return OutputPriority.CONTROL;
+    }
+}
@@ -0,0 +1,141 @@
+package io.benwiegand.atvremote.phone.network.frame;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import io.benwiegand.atvremote.phone.protocol.MalformedEventException;
+
+/**
+ * a single protocol v2 frame.
+ * <p>
+ *     on the wire a frame is {@code varint(length) body}, where body is
+ *     {@code type varint(eventId) varint(opcode) payload} for events and responses. line frames
+ *     skip the event id and opcode, their body is just {@code type} followed by a UTF-8 line. they
+ *     carry the handshake, which stays line based regardless of the negotiated version.
+ * </p>
+ * <p>
+ *     no-ack events are handled like events, except the receiver only responds if something goes
+ *     wrong. they're only sent if the receiver advertises support for them.
+ * </p>
+ * <p>
+ *     an opcode of {@link io.benwiegand.atvremote.phone.protocol.Opcodes#OPCODE_LITERAL} means the
+ *     operation isn't in the opcode table, and the payload holds the v1 style "OP extra" text instead.
+ * </p>
+ * @param type one of the TYPE_ constants
+ * @param eventId event id (events and responses only)
+ * @param opcode operation or response opcode (events and responses only)
+ * @param payload raw payload, never null
+ */
+public record Frame(byte type, int eventId, int opcode, byte[] payload) {
+    public static final byte TYPE_LINE = 0;
+    public static final byte TYPE_EVENT = 1;
+    public static final byte TYPE_RESPONSE = 2;
+    public static final byte TYPE_EVENT_NO_ACK = 3;
+
+    public static final int MAX_FRAME_LENGTH = 1024 * 1024;
+
+    private static final byte[] NO_PAYLOAD = new byte[0];
+
+    public static Frame line(byte[] line) {
+        return new Frame(TYPE_LINE, 0, 0, line);
+    }
+
+    public static Frame event(int eventId, int opcode, byte[] payload) {
+        return new Frame(TYPE_EVENT, eventId, opcode, payload == null ? NO_PAYLOAD : payload);
+    }
+
+    public static Frame eventNoAck(int eventId, int opcode, byte[] payload) {
+        return new Frame(TYPE_EVENT_NO_ACK, eventId, opcode, payload == null ? NO_PAYLOAD : payload);
+    }
+
+    public static Frame response(int eventId, int opcode, byte[] payload) {
+        return new Frame(TYPE_RESPONSE, eventId, opcode, payload == null ? NO_PAYLOAD : payload);
+    }
+
+    public boolean hasPayload() {
+        return payload().length > 0;
+    }
+
+    private static int bodyLength(byte type, int eventId, int opcode, int payloadLength) {
+        if (type == TYPE_LINE) return 1 + payloadLength;
+        return 1 + Varint.size(eventId) + Varint.size(opcode) + payloadLength;
+    }
+
+    /**
+     * @param payloadLength length of the payload
+     * @return total length on the wire of a frame with that payload, including the length prefix
+     */
+    public static int length(byte type, int eventId, int opcode, int payloadLength) {
+        int bodyLength = bodyLength(type, eventId, opcode, payloadLength);
+        return Varint.size(bodyLength) + bodyLength;
+    }
+
+    /**
+     * @return total length on the wire, including the length prefix
+     */
+    public int length() {
+        return length(type(), eventId(), opcode(), payload().length);
+    }
+
+    /**
+     * writes a frame straight from a payload buffer, without creating a Frame.
+     * @param payload buffer holding the payload
+     * @param offset start of the payload in the buffer
+     * @param length length of the payload
+     */
+    public static void writeTo(OutputStream os, byte type, int eventId, int opcode, byte[] payload, int offset, int length) throws IOException {
+        Varint.write(os, bodyLength(type, eventId, opcode, length));
+        os.write(type);
+        if (type != TYPE_LINE) {
+            Varint.write(os, eventId);
+            Varint.write(os, opcode);
+        }
+        os.write(payload, offset, length);
+    }
+
+    public void writeTo(OutputStream os) throws IOException {
+        writeTo(os, type(), eventId(), opcode(), payload(), 0, payload().length);
+    }
+
+    /**
+     * decodes a frame body (everything after the length prefix) without moving the buffer position.
+     * @param buffer buffer containing the body
+     * @param offset absolute index of the start of the body
+     * @param length length of the body
+     * @return the frame
+     * @throws MalformedEventException if the body doesn't make sense
+     */
+    public static Frame decodeBody(ByteBuffer buffer, int offset, int length) {
+        if (length < 1) throw new MalformedEventException("empty frame");
+        int limit = offset + length;
+        byte type = buffer.get(offset++);
+
+        if (type == TYPE_LINE) {
+            return line(copyPayload(buffer, offset, limit));
+        } else if (type != TYPE_EVENT && type != TYPE_RESPONSE && type != TYPE_EVENT_NO_ACK) {
+            throw new MalformedEventException("unknown frame type: " + type);
+        }
+
+        long eventId = Varint.decode(buffer, offset, limit);
+        if (eventId < 0) throw new MalformedEventException("frame has no event id");
+        offset += Varint.lengthOf(eventId);
+
+        long opcode = Varint.decode(buffer, offset, limit);
+        if (opcode < 0) throw new MalformedEventException("frame has no opcode");
+        offset += Varint.lengthOf(opcode);
+
+        return new Frame(type, Varint.valueOf(eventId), Varint.valueOf(opcode), copyPayload(buffer, offset, limit));
+    }
+
+    private static byte[] copyPayload(ByteBuffer buffer, int offset, int limit) {
+        if (offset == limit) return NO_PAYLOAD;
+        byte[] payload = new byte[limit - offset];
+        if (buffer.hasArray()) {
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + offset, payload, 0, payload.length);
+        } else {
+            for (int i = 0; i < payload.length; i++) payload[i] = buffer.get(offset + i);
+        }
+        return payload;
+    }
+}
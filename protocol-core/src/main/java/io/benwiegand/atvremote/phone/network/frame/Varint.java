@@ -0,0 +1,65 @@
+package io.benwiegand.atvremote.phone.network.frame;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import io.benwiegand.atvremote.phone.protocol.MalformedEventException;
+
+/**
+ * unsigned LEB128 varints, as used by v2 frames for lengths, event ids and opcodes.
+ * only non-negative ints are supported, so a varint is never longer than 5 bytes.
+ */
+public class Varint {
+    public static final int MAX_LENGTH = 5;
+
+    public static int size(int value) {
+        if (value < 0) throw new IllegalArgumentException("varints must not be negative");
+        int size = 1;
+        while ((value >>>= 7) != 0) size++;
+        return size;
+    }
+
+    public static void write(OutputStream os, int value) throws IOException {
+        if (value < 0) throw new IllegalArgumentException("varints must not be negative");
+        while ((value & ~0x7F) != 0) {
+            os.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        os.write(value);
+    }
+
+    /**
+     * decodes a varint without allocating or moving the buffer position.
+     * @param buffer the buffer to read from
+     * @param offset absolute index where the varint starts
+     * @param limit end of the readable region (exclusive)
+     * @return -1 if the varint is incomplete, otherwise the value and encoded length packed into a
+     *         long. use {@link #valueOf(long)} and {@link #lengthOf(long)} to unpack.
+     * @throws MalformedEventException if the varint is too long or doesn't fit in a non-negative int
+     */
+    public static long decode(ByteBuffer buffer, int offset, int limit) {
+        int value = 0;
+        for (int i = 0; i < MAX_LENGTH; i++) {
+            if (offset + i >= limit) return -1;
+            byte b = buffer.get(offset + i);
+            // only the low 4 bits of the 5th byte fit in an int, anything above would be shifted out
+            if (i == MAX_LENGTH - 1 && (b & 0xF0) != 0)
+                throw new MalformedEventException("varint out of range");
+            value |= (b & 0x7F) << (7 * i);
+            if ((b & 0x80) == 0) {
+                if (value < 0) throw new MalformedEventException("varint out of range");
+                return ((long) (i + 1) << 32) | value;
+            }
+        }
+        throw new MalformedEventException("varint longer than " + MAX_LENGTH + " bytes");
+    }
+
+    public static int valueOf(long decoded) {
+        return (int) decoded;
+    }
+
+    public static int lengthOf(long decoded) {
+        return (int) (decoded >>> 32);
+    }
+}
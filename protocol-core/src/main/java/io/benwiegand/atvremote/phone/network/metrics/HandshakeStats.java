@@ -0,0 +1,93 @@
+package io.benwiegand.atvremote.phone.network.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * counts TLS handshakes per receiver (by certificate fingerprint), split into resumed sessions
+ * (hits) and full handshakes (misses). handshake times are in microseconds.
+ * <p>
+ *     thread safe.
+ * </p>
+ */
+public class HandshakeStats {
+
+    /**
+     * @param fingerprint certificate fingerprint of the receiver
+     * @param resumed handshakes that resumed a cached session
+     * @param full full handshakes
+     */
+    public record Stats(String fingerprint, long resumed, long full) {
+        /**
+         * @return fraction of handshakes that were resumed, 0 if there weren't any
+         */
+        public double hitRate() {
+            long total = resumed + full;
+            return total == 0 ? 0 : (double) resumed / total;
+        }
+    }
+
+    private record Counts(AtomicLong resumed, AtomicLong full) {
+        Counts() {
+            this(new AtomicLong(), new AtomicLong());
+        }
+    }
+
+    private final Map<String, Counts> counts = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final LatencyHistogram resumedHandshakeTimes = new LatencyHistogram();
+    private final LatencyHistogram fullHandshakeTimes = new LatencyHistogram();
+
+    /**
+     * @param fingerprint certificate fingerprint of the receiver
+     * @param resumed true if a cached session was resumed
+     * @param micros how long the handshake took
+     */
+    public void record(String fingerprint, boolean resumed, long micros) {
+        Counts receiverCounts = counts.computeIfAbsent(fingerprint, f -> new Counts());
+        if (resumed) {
+            receiverCounts.resumed().incrementAndGet();
+            hits.incrementAndGet();
+            resumedHandshakeTimes.record(micros);
+        } else {
+            receiverCounts.full().incrementAndGet();
+            misses.incrementAndGet();
+            fullHandshakeTimes.record(micros);
+        }
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * @return stats for the receiver, all zero if it was never connected to
+     */
+    public Stats get(String fingerprint) {
+        Counts receiverCounts = counts.get(fingerprint);
+        if (receiverCounts == null) return new Stats(fingerprint, 0, 0);
+        return new Stats(fingerprint, receiverCounts.resumed().get(), receiverCounts.full().get());
+    }
+
+    public List<Stats> all() {
+        List<Stats> stats = new ArrayList<>(counts.size());
+        for (String fingerprint : counts.keySet()) stats.add(get(fingerprint));
+        return stats;
+    }
+
+    public LatencyHistogram resumedHandshakeTimes() {
+        return resumedHandshakeTimes;
+    }
+
+    public LatencyHistogram fullHandshakeTimes() {
+        return fullHandshakeTimes;
+    }
+}
@@ -0,0 +1,123 @@
+package io.benwiegand.atvremote.phone.network.metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import io.benwiegand.atvremote.phone.protocol.Opcodes;
+
+/**
+ * records latency of outgoing events per operation, split into time spent waiting in the queue
+ * and the round trip from writing the event to getting the response.
+ * <p>
+ *     operations are identified by opcode, so recording never allocates (except for the first
+ *     sample of each operation). operations without an opcode are counted together as "other".
+ *     all times are in microseconds.
+ * </p>
+ */
+public class LatencyRecorder {
+    private static final String OTHER_OPERATION = "other";
+
+    private record OperationLatency(LatencyHistogram queueWait, LatencyHistogram roundTrip) {
+        OperationLatency() {
+            this(new LatencyHistogram(), new LatencyHistogram());
+        }
+    }
+
+    /**
+     * latency summary for an operation, all times in microseconds
+     */
+    public record Stats(String operation, long count, double mean, long p50, long p90, long p99, long max) {
+        private static Stats of(String operation, LatencyHistogram histogram) {
+            return new Stats(operation, histogram.count(), histogram.mean(),
+                    histogram.percentile(50), histogram.percentile(90), histogram.percentile(99),
+                    histogram.max());
+        }
+    }
+
+    private final AtomicReferenceArray<OperationLatency> latencies = new AtomicReferenceArray<>(Opcodes.count());
+
+    private OperationLatency latencyOf(int opcode) {
+        OperationLatency latency = latencies.get(opcode);
+        if (latency != null) return latency;
+
+        latencies.compareAndSet(opcode, null, new OperationLatency());
+        return latencies.get(opcode);
+    }
+
+    private static String operationName(int opcode) {
+        String operation = Opcodes.operationOf(opcode);
+        return operation == null ? OTHER_OPERATION : operation;
+    }
+
+    /**
+     * @param opcode opcode of the event, or {@link Opcodes#OPCODE_LITERAL}
+     * @param micros time between the event being queued and written
+     */
+    public void recordQueueWait(int opcode, long micros) {
+        latencyOf(opcode).queueWait().record(micros);
+    }
+
+    /**
+     * @param opcode opcode of the event, or {@link Opcodes#OPCODE_LITERAL}
+     * @param micros time between the event being written and the response arriving
+     */
+    public void recordRoundTrip(int opcode, long micros) {
+        latencyOf(opcode).roundTrip().record(micros);
+    }
+
+    public List<Stats> getQueueWaitStats() {
+        List<Stats> stats = new ArrayList<>();
+        for (int i = 0; i < latencies.length(); i++) {
+            OperationLatency latency = latencies.get(i);
+            if (latency == null) continue;
+            stats.add(Stats.of(operationName(i), latency.queueWait()));
+        }
+        return stats;
+    }
+
+    public List<Stats> getRoundTripStats() {
+        List<Stats> stats = new ArrayList<>();
+        for (int i = 0; i < latencies.length(); i++) {
+            OperationLatency latency = latencies.get(i);
+            if (latency == null) continue;
+            stats.add(Stats.of(operationName(i), latency.roundTrip()));
+        }
+        return stats;
+    }
+
+    private static void dumpStats(Writer writer, String title, List<Stats> statsList) throws IOException {
+        writer.write(title + "\n");
+        writer.write(String.format(Locale.ROOT, "%-28s %8s %10s %10s %10s %10s %10s\n",
+                "operation", "count", "mean", "p50", "p90", "p99", "max"));
+        for (Stats stats : statsList) {
+            writer.write(String.format(Locale.ROOT, "%-28s %8d %10.0f %10d %10d %10d %10d\n",
+                    stats.operation(), stats.count(), stats.mean(), stats.p50(), stats.p90(), stats.p99(), stats.max()));
+        }
+    }
+
+    /**
+     * writes a human readable table of all the stats
+     * @param writer where to write it
+     */
+    public void dump(Writer writer) throws IOException {
+        dumpStats(writer, "queue wait (us)", getQueueWaitStats());
+        writer.write("\n");
+        dumpStats(writer, "round trip (us)", getRoundTripStats());
+        writer.flush();
+    }
+
+    /**
+     * @param file file to dump the stats to, it's overwritten if it exists
+     */
+    public void dump(File file) throws IOException {
+        try (Writer writer = new FileWriter(file)) {
+            dump(writer);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package io.benwiegand.atvremote.phone.platform;
+
+import java.io.PrintStream;
+
+/**
+ * plain JVM platform. logs go to stderr and time comes from {@link System#nanoTime()}. there are
+ * no string resources, so user-facing messages are the untranslated fallbacks.
+ */
+public class JvmPlatform extends Platform {
+    private static final char[] PRIORITY_LETTERS = {'?', '?', 'V', 'D', 'I', 'W', 'E', 'A'};
+
+    private final int minPriority;
+
+    /**
+     * @param minPriority anything below this priority isn't logged
+     */
+    public JvmPlatform(int minPriority) {
+        this.minPriority = minPriority;
+    }
+
+    /**
+     * logs at the priority given by the {@code atvremote.log} system property (a priority letter,
+     * like D), or {@link Log#INFO} if it isn't set.
+     */
+    public JvmPlatform() {
+        this(priorityOf(System.getProperty("atvremote.log", "I")));
+    }
+
+    private static int priorityOf(String letter) {
+        for (int priority = Log.VERBOSE; priority <= Log.ASSERT; priority++) {
+            if (letter.equalsIgnoreCase(String.valueOf(PRIORITY_LETTERS[priority]))) return priority;
+        }
+        return Log.INFO;
+    }
+
+    @Override
+    public void log(int priority, String tag, String message, Throwable t) {
+        if (priority < minPriority) return;
+
+        PrintStream out = System.err;
+        synchronized (out) {
+            out.println(PRIORITY_LETTERS[priority] + "/" + tag + ": " + message);
+            if (t != null) t.printStackTrace(out);
+        }
+    }
+
+    @Override
+    public long elapsedRealtimeNanos() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public int getStringRes(ProtocolMessage message) {
+        return 0;
+    }
+
+    @Override
+    public String getString(int stringRes) {
+        return null;
+    }
+}
@@ -0,0 +1,53 @@
+package io.benwiegand.atvremote.phone.platform;
+
+/**
+ * same shape as android.util.Log, but goes through the installed {@link Platform}.
+ */
+public class Log {
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+    public static final int ASSERT = 7;
+
+    private static void log(int priority, String tag, String message, Throwable t) {
+        Platform.get().log(priority, tag, message, t);
+    }
+
+    public static void v(String tag, String message) {
+        log(VERBOSE, tag, message, null);
+    }
+
+    public static void d(String tag, String message) {
+        log(DEBUG, tag, message, null);
+    }
+
+    public static void i(String tag, String message) {
+        log(INFO, tag, message, null);
+    }
+
+    public static void w(String tag, String message) {
+        log(WARN, tag, message, null);
+    }
+
+    public static void w(String tag, String message, Throwable t) {
+        log(WARN, tag, message, t);
+    }
+
+    public static void e(String tag, String message) {
+        log(ERROR, tag, message, null);
+    }
+
+    public static void e(String tag, String message, Throwable t) {
+        log(ERROR, tag, message, t);
+    }
+
+    public static void wtf(String tag, String message) {
+        log(ASSERT, tag, message, null);
+    }
+
+    public static void wtf(String tag, String message, Throwable t) {
+        log(ASSERT, tag, message, t);
+    }
+}
@@ -0,0 +1,57 @@
+package io.benwiegand.atvremote.phone.platform;
+
+/**
+ * the few things protocol code needs from whatever it's running on.
+ * <p>
+ *     the app installs the android implementation when it starts. everything else (unit tests,
+ *     benchmarks, tools) gets {@link JvmPlatform}.
+ * </p>
+ */
+public abstract class Platform {
+    private static volatile Platform platform = new JvmPlatform();
+
+    public static Platform get() {
+        return platform;
+    }
+
+    /**
+     * replaces the platform. call this before any protocol code runs, timestamps from different
+     * platforms can't be compared.
+     */
+    public static void install(Platform platform) {
+        Platform.platform = platform;
+    }
+
+    /**
+     * @param priority one of the {@link Log} priority constants
+     * @param tag log tag
+     * @param message log message
+     * @param t throwable to log with the message, or null
+     */
+    public abstract void log(int priority, String tag, String message, Throwable t);
+
+    /**
+     * @return monotonic time in nanoseconds. only differences between values mean anything.
+     */
+    public abstract long elapsedRealtimeNanos();
+
+    /**
+     * @return the string resource id for the message, or 0 if the platform has no string resources
+     */
+    public abstract int getStringRes(ProtocolMessage message);
+
+    /**
+     * @param stringRes a string resource id
+     * @return the string, or null if the platform has no string resources
+     */
+    public abstract String getString(int stringRes);
+
+    /**
+     * @return the message as a string resource, or its fallback text if there isn't one
+     */
+    public String getString(ProtocolMessage message) {
+        int stringRes = getStringRes(message);
+        String string = stringRes == 0 ? null : getString(stringRes);
+        return string != null ? string : message.getFallback();
+    }
+}
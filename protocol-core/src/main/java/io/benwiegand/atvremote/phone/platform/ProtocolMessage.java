@@ -0,0 +1,24 @@
+package io.benwiegand.atvremote.phone.platform;
+
+/**
+ * user-facing messages protocol code can produce on its own. the platform decides where the
+ * translated text comes from (string resources on android), see {@link Platform#getString(ProtocolMessage)}.
+ */
+public enum ProtocolMessage {
+    EVENT_TIMEOUT("timed out"),
+    // {0} is the exception class, {1} its message
+    UNEXPECTED_ERROR("encountered unexpected error: {0} - {1}");
+
+    private final String fallback;
+
+    ProtocolMessage(String fallback) {
+        this.fallback = fallback;
+    }
+
+    /**
+     * @return untranslated text, for platforms without string resources
+     */
+    public String getFallback() {
+        return fallback;
+    }
+}
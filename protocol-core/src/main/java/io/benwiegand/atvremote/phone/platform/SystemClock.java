@@ -0,0 +1,17 @@
+package io.benwiegand.atvremote.phone.platform;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * same shape as android.os.SystemClock, but goes through the installed {@link Platform}.
+ */
+public class SystemClock {
+
+    public static long elapsedRealtimeNanos() {
+        return Platform.get().elapsedRealtimeNanos();
+    }
+
+    public static long elapsedRealtime() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedRealtimeNanos());
+    }
+}
@@ -1,8 +1,5 @@
 package io.benwiegand.atvremote.phone.protocol;
 
-import static android.view.KeyEvent.ACTION_DOWN;
-import static android.view.KeyEvent.ACTION_UP;
-
 /**
  * enum representation of the optional key event type extra.
  * <ul>
@@ -17,6 +14,10 @@ public enum KeyEventType {
     DOWN,
     UP;
 
+    // same as android.view.KeyEvent, which isn't available here
+    private static final int ACTION_DOWN = 0;
+    private static final int ACTION_UP = 1;
+
     public static KeyEventType fromKeyEventAction(int action) {
         return switch (action) {
             case ACTION_UP -> DOWN;
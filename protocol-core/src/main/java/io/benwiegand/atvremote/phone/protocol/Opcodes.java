@@ -0,0 +1,173 @@
+package io.benwiegand.atvremote.phone.protocol;
+
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.*;
+
+import java.util.Arrays;
+
+/**
+ * numeric opcodes for protocol v2 frames.
+ * <p>
+ *     the opcode is the index into the table, so <b>only ever append to it</b>. reordering or
+ *     removing entries breaks compatibility with every receiver out there.
+ * </p>
+ */
+public class Opcodes {
+
+    /**
+     * the operation isn't in the table, the frame payload carries the operation name followed by
+     * the extra, like in v1.
+     */
+    public static final int OPCODE_LITERAL = 0;
+
+    // the juggler handles this one itself
+    public static final int OPCODE_BATCH;
+
+    private static final String[] OPCODE_TABLE = new String[] {
+            null, // OPCODE_LITERAL
+
+            // responses
+            OP_CONFIRM,
+            OP_ERR,
+            OP_UNAUTHORIZED,
+            OP_UNSUPPORTED,
+
+            // global / meta
+            OP_PING,
+            OP_META,
+            OP_TRY_PAIRING_CODE,
+
+            // remote control operations
+            OP_DPAD_UP,
+            OP_DPAD_DOWN,
+            OP_DPAD_LEFT,
+            OP_DPAD_RIGHT,
+            OP_DPAD_SELECT,
+            OP_DPAD_LONG_PRESS,
+
+            OP_NAV_HOME,
+            OP_NAV_BACK,
+            OP_NAV_RECENT,
+            OP_NAV_NOTIFICATIONS,
+            OP_NAV_QUICK_SETTINGS,
+
+            OP_VOLUME_UP,
+            OP_VOLUME_DOWN,
+            OP_MUTE_TOGGLE,
+            OP_MUTE,
+            OP_UNMUTE,
+
+            OP_PLAY,
+            OP_PAUSE,
+            OP_PLAY_PAUSE,
+            OP_NEXT_TRACK,
+            OP_PREV_TRACK,
+            OP_SKIP_BACKWARD,
+            OP_SKIP_FORWARD,
+
+            OP_CURSOR_SHOW,
+            OP_CURSOR_HIDE,
+            OP_CURSOR_MOVE,
+            OP_CURSOR_LEFT_BUTTON,
+
+            OP_POWER_BUTTON,
+
+            OP_EXTRA_BUTTON,
+
+            // keyboard
+            OP_COMMIT_TEXT,
+            OP_DELETE_TEXT,
+            OP_KEY_EVENT,
+            OP_KEYBOARD_DEFAULT_EDITOR_ACTION,
+
+            // event streams
+            OP_EVENT_STREAM_SUBSCRIBE,
+            OP_EVENT_STREAM_UNSUBSCRIBE,
+            OP_EVENT_STREAM_EVENT,
+
+            // appended later
+            OP_BATCH,
+    };
+
+    // perfect hash over the table, found when the class is loaded. every operation gets its own
+    // slot, so a lookup is one hash over the chars plus one comparison, without allocating.
+    private static final int HASH_TABLE_SIZE = Integer.highestOneBit(OPCODE_TABLE.length * 4 - 1) << 1;
+    private static final int MAX_HASH_SEED_ATTEMPTS = 1 << 16;
+    private static final int[] HASH_TABLE = new int[HASH_TABLE_SIZE];
+    private static final int HASH_SEED = findHashSeed();
+
+    static {
+        OPCODE_BATCH = opcodeOf(OP_BATCH);
+    }
+
+    private static int hash(int seed, CharSequence s, int start, int end) {
+        int h = end - start;
+        for (int i = start; i < end; i++) h = h * seed + s.charAt(i);
+        h ^= h >>> 16;
+        return h & (HASH_TABLE_SIZE - 1);
+    }
+
+    private static int findHashSeed() {
+        // usually takes a handful of tries. if it doesn't, the table is too full and loading the
+        // class should fail loudly instead of spinning forever
+        int seed = 0x9E3779B1;
+        for (int attempt = 0; attempt < MAX_HASH_SEED_ATTEMPTS; attempt++, seed += 2) {
+            if (tryFillHashTable(seed)) return seed;
+        }
+        throw new IllegalStateException("no perfect hash for " + (OPCODE_TABLE.length - 1) + " opcodes in "
+                + HASH_TABLE_SIZE + " slots after " + MAX_HASH_SEED_ATTEMPTS + " seeds, HASH_TABLE_SIZE needs to be bigger");
+    }
+
+    private static boolean tryFillHashTable(int seed) {
+        Arrays.fill(HASH_TABLE, OPCODE_LITERAL);
+        for (int i = OPCODE_LITERAL + 1; i < OPCODE_TABLE.length; i++) {
+            int slot = hash(seed, OPCODE_TABLE[i], 0, OPCODE_TABLE[i].length());
+            if (HASH_TABLE[slot] != OPCODE_LITERAL) return false;
+            HASH_TABLE[slot] = i;
+        }
+        return true;
+    }
+
+    /**
+     * @param operation operation or response name
+     * @return the opcode, or {@link #OPCODE_LITERAL} if there isn't one
+     */
+    public static int opcodeOf(String operation) {
+        return opcodeOf(operation, 0, operation.length());
+    }
+
+    /**
+     * like {@link #opcodeOf(String)}, but for an operation inside a bigger string, without
+     * allocating a substring.
+     * @param s the string
+     * @param start start index of the operation
+     * @param end end index of the operation (exclusive)
+     * @return the opcode, or {@link #OPCODE_LITERAL} if there isn't one
+     */
+    public static int opcodeOf(CharSequence s, int start, int end) {
+        int opcode = HASH_TABLE[hash(HASH_SEED, s, start, end)];
+        if (opcode == OPCODE_LITERAL) return OPCODE_LITERAL;
+
+        String operation = OPCODE_TABLE[opcode];
+        if (operation.length() != end - start) return OPCODE_LITERAL;
+        for (int i = 0; i < operation.length(); i++) {
+            if (operation.charAt(i) != s.charAt(start + i)) return OPCODE_LITERAL;
+        }
+        return opcode;
+    }
+
+    /**
+     * @return number of opcodes, including {@link #OPCODE_LITERAL}
+     */
+    public static int count() {
+        return OPCODE_TABLE.length;
+    }
+
+    /**
+     * @param opcode the opcode
+     * @return the operation or response name, or null if the opcode is unknown or literal
+     */
+    public static String operationOf(int opcode) {
+        if (opcode <= OPCODE_LITERAL || opcode >= OPCODE_TABLE.length) return null;
+        return OPCODE_TABLE[opcode];
+    }
+}
@@ -0,0 +1,48 @@
+package io.benwiegand.atvremote.phone.protocol;
+
+import java.util.function.Function;
+
+import io.benwiegand.atvremote.phone.stuff.ThrowingConsumer;
+import io.benwiegand.atvremote.phone.stuff.ThrowingFunction;
+import io.benwiegand.atvremote.phone.stuff.ThrowingRunnable;
+
+/**
+ * @param operation the operation
+ * @param handler handles the extra and returns the response extra
+ * @param closeConnectionOnFailure if true, the connection is closed when the handler fails
+ * @param orderingKey incoming events of this operation are handled in order, one at a time, per
+ *                    key returned by this function (given the extra). if null, all events of this
+ *                    operation are handled in order.
+ */
+public record OperationDefinition(String operation, ThrowingFunction<String, String> handler, boolean closeConnectionOnFailure, Function<String, String> orderingKey) {
+
+    public OperationDefinition(String operation, ThrowingFunction<String, String> handler, boolean closeConnectionOnFailure) {
+        this(operation, handler, closeConnectionOnFailure, null);
+    }
+
+    public OperationDefinition(String operation, ThrowingFunction<String, String> handler) {
+        this(operation, handler, false);
+    }
+
+    public OperationDefinition(String operation, ThrowingRunnable handler) {
+        this(operation, e -> {
+            handler.run();
+            return null;
+        }, false);
+    }
+
+    public OperationDefinition(String operation, ThrowingConsumer<String> handler) {
+        this(operation, e -> {
+            handler.accept(e);
+            return null;
+        }, false);
+    }
+
+    /**
+     * @param orderingKey see {@link #orderingKey()}
+     * @return a copy of this definition with the given ordering key
+     */
+    public OperationDefinition withOrderingKey(Function<String, String> orderingKey) {
+        return new OperationDefinition(operation, handler, closeConnectionOnFailure, orderingKey);
+    }
+}
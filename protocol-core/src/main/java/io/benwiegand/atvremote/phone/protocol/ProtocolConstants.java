@@ -11,6 +11,7 @@ public class ProtocolConstants {
 
     // version
     public static final String VERSION_1 = "v1";
+    public static final String VERSION_2 = "v2";    // v1 operations, but in length-prefixed binary frames (see Frame)
 
     // responses
     public static final String OP_CONFIRM = "OK";
@@ -27,6 +28,7 @@ public class ProtocolConstants {
 
     // global operations
     public static final String OP_PING = "PING";
+    public static final String OP_BATCH = "BATCH";     // ordered list of operations in one event, see BatchParams
 
     // pairing operations
     public static final String OP_TRY_PAIRING_CODE = "IS_THIS_YOUR_CARD?";
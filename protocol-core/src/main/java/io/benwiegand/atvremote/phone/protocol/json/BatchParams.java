@@ -0,0 +1,10 @@
+package io.benwiegand.atvremote.phone.protocol.json;
+
+import java.util.List;
+
+/**
+ * extra of a BATCH event
+ * @param operations operations to run in order, each one "OP extra" like a normal event
+ */
+public record BatchParams(List<String> operations) {
+}
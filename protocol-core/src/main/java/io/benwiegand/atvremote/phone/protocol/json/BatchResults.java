@@ -0,0 +1,11 @@
+package io.benwiegand.atvremote.phone.protocol.json;
+
+import java.util.List;
+
+/**
+ * extra of the response to a BATCH event
+ * @param results one response per operation, in the same order. each one is "OK extra",
+ *                "ERR details", or "HUH?" like a normal response.
+ */
+public record BatchResults(List<String> results) {
+}
@@ -1,10 +1,9 @@
 package io.benwiegand.atvremote.phone.protocol.json;
 
-import android.content.Context;
-
 import java.text.MessageFormat;
 
-import io.benwiegand.atvremote.phone.R;
+import io.benwiegand.atvremote.phone.platform.Platform;
+import io.benwiegand.atvremote.phone.platform.ProtocolMessage;
 import io.benwiegand.atvremote.phone.protocol.RemoteProtocolException;
 import io.benwiegand.atvremote.phone.ui.ErrorMessageException;
 
@@ -13,12 +12,12 @@ public record ErrorDetails(String text) {
         return new RemoteProtocolException(text(), true);
     }
 
-    public static ErrorDetails fromException(Context context, Throwable t) {
+    public static ErrorDetails fromException(Throwable t) {
         if (t instanceof ErrorMessageException e) {
-            return new ErrorDetails(e.getLocalizedMessage(context));
+            return new ErrorDetails(e.getLocalizedMessage());
         }
         return new ErrorDetails(MessageFormat.format(
-                context.getString(R.string.protocol_error_unexpected),
+                Platform.get().getString(ProtocolMessage.UNEXPECTED_ERROR),
                 t.getClass().getSimpleName(),
                 t.getLocalizedMessage()));
     }
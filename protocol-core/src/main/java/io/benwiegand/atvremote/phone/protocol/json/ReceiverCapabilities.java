@@ -1,7 +1,5 @@
 package io.benwiegand.atvremote.phone.protocol.json;
 
-import android.util.Log;
-
 import java.util.HashSet;
 
 public record ReceiverCapabilities(HashSet<String> supportedFeatures, HashSet<String> extraButtons) {
@@ -38,6 +36,9 @@ public record ReceiverCapabilities(HashSet<String> supportedFeatures, HashSet<St
     public static final String SUPPORTED_FEATURE_MEDIA_SESSIONS = "MEDIA_SESSIONS";
     public static final String SUPPORTED_FEATURE_MOUSE = "MOUSE";
 
+    // protocol
+    public static final String SUPPORTED_FEATURE_NO_ACK_EVENTS = "NO_ACK_EVENTS";
+
     // everything-dependent
     public static final String SUPPORTED_FEATURE_POWER_BUTTON = "POWER_BUTTON";
 
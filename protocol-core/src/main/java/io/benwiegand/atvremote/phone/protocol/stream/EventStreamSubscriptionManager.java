@@ -3,17 +3,16 @@ package io.benwiegand.atvremote.phone.protocol.stream;
 import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_EVENT_STREAM_SUBSCRIBE;
 import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_EVENT_STREAM_UNSUBSCRIBE;
 
-import android.util.Log;
-
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 import io.benwiegand.atvremote.phone.async.Sec;
+import io.benwiegand.atvremote.phone.platform.Log;
 import io.benwiegand.atvremote.phone.protocol.MalformedEventException;
 import io.benwiegand.atvremote.phone.protocol.RemoteProtocolException;
-import io.benwiegand.atvremote.phone.util.ErrorUtil;
+import io.benwiegand.atvremote.phone.util.StackTraceUtil;
 
 public class EventStreamSubscriptionManager {
     private static final String TAG = EventStreamSubscriptionManager.class.getSimpleName();
@@ -25,10 +24,19 @@ public class EventStreamSubscriptionManager {
         this.eventSender = eventSender;
     }
 
-    public void onIncomingStreamedEvent(String extra) {
+    /**
+     * @param extra extra of a streamed event
+     * @return the event type
+     * @throws MalformedEventException if there is no event type
+     */
+    public static String eventTypeOf(String extra) {
         int sep = extra.indexOf(' ');
         if (sep < 1 || extra.length() < sep + 2) throw new MalformedEventException("event type and data separated by ' '");
-        String type = extra.substring(0, sep);
+        return extra.substring(0, sep);
+    }
+
+    public void onIncomingStreamedEvent(String extra) {
+        String type = eventTypeOf(extra);
 
         IncomingEventStream incomingEventStream = subscriptionMap.get(type);
         if (incomingEventStream == null) {
@@ -38,7 +46,7 @@ public class EventStreamSubscriptionManager {
             return;
         }
 
-        String eventData = extra.substring(sep + 1);
+        String eventData = extra.substring(type.length() + 1);
         incomingEventStream.onIncomingStreamedEvent(eventData);
     }
 
@@ -57,6 +65,18 @@ public class EventStreamSubscriptionManager {
      * @return Sec for subscribe event
      */
     public Sec<Void> subscribe(String type, Consumer<String> listener) {
+        return subscribe(type, listener, eventSender);
+    }
+
+    /**
+     * like {@link #subscribe(String, Consumer)}, but the subscribe event is sent through the
+     * given sender instead, for example to add it to a batch.
+     * @param type event stream type
+     * @param listener the listener to register
+     * @param eventSender sends the subscribe event
+     * @return Sec for subscribe event
+     */
+    public Sec<Void> subscribe(String type, Consumer<String> listener, Function<String, Sec<String>> eventSender) {
         synchronized (subscriptionMap) {
             IncomingEventStream incomingEventStream = subscriptionMap.computeIfAbsent(type,
                     t -> new IncomingEventStream());
@@ -102,7 +122,7 @@ public class EventStreamSubscriptionManager {
         synchronized (subscriptionMap) {
             IncomingEventStream incomingEventStream = subscriptionMap.get(type);
             if (incomingEventStream == null) {
-                Log.w(TAG, "trying to unsubscribe from an event that has no subscriptions\n" + ErrorUtil.getLightStackTrace());
+                Log.w(TAG, "trying to unsubscribe from an event that has no subscriptions\n" + StackTraceUtil.getLightStackTrace());
                 return Sec.premeditatedResult(null);
             }
 
@@ -1,10 +1,10 @@
 package io.benwiegand.atvremote.phone.protocol.stream;
 
-import android.util.Log;
-
 import java.util.HashSet;
 import java.util.function.Consumer;
 
+import io.benwiegand.atvremote.phone.platform.Log;
+
 public class IncomingEventStream {
     private static final String TAG = IncomingEventStream.class.getSimpleName();
 
@@ -0,0 +1,164 @@
+package io.benwiegand.atvremote.phone.stuff;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * a small int-keyed hash map using open addressing (linear probing), so keys are never boxed and
+ * nothing is allocated unless the table grows.
+ * <p>
+ *     all methods are synchronized. null values aren't allowed, null is used to mark empty slots.
+ * </p>
+ * @param <V> value type
+ */
+public class IntMap<V> {
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private V[] values;
+    private int mask;
+    private int size = 0;
+
+    public IntMap(int expectedSize) {
+        int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, expectedSize * 2 - 1)) << 1);
+        allocate(capacity);
+    }
+
+    public IntMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = (V[]) new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int hash(int key) {
+        // spread sequential keys out a bit
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int indexOf(int key) {
+        for (int i = hash(key) & mask; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) return i;
+        }
+        return -1;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        V[] oldValues = values;
+        allocate(keys.length * 2);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == null) continue;
+            int j = hash(oldKeys[i]) & mask;
+            while (values[j] != null) j = (j + 1) & mask;
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+
+    /**
+     * removes the entry at index i and shifts back any entries in the same probe run, so lookups
+     * don't need tombstones.
+     */
+    private V removeAt(int i) {
+        V value = values[i];
+        values[i] = null;
+        size--;
+
+        for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+            int home = hash(keys[j]) & mask;
+            // move it back if its home slot is cyclically at or before the gap
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                values[j] = null;
+                i = j;
+            }
+        }
+
+        return value;
+    }
+
+    public synchronized V get(int key) {
+        int i = indexOf(key);
+        return i < 0 ? null : values[i];
+    }
+
+    public synchronized boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * @return the existing value if there is one (and nothing is changed), otherwise null
+     */
+    public synchronized V putIfAbsent(int key, V value) {
+        if (value == null) throw new NullPointerException("null values are not allowed");
+
+        int i = indexOf(key);
+        if (i >= 0) return values[i];
+
+        if ((size + 1) * 2 > keys.length) grow();
+
+        i = hash(key) & mask;
+        while (values[i] != null) i = (i + 1) & mask;
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        return null;
+    }
+
+    /**
+     * @return the removed value, or null if there was none
+     */
+    public synchronized V remove(int key) {
+        int i = indexOf(key);
+        return i < 0 ? null : removeAt(i);
+    }
+
+    /**
+     * removes the entry only if it's mapped to the given value (by identity)
+     * @return true if it was removed
+     */
+    public synchronized boolean remove(int key, V value) {
+        int i = indexOf(key);
+        if (i < 0 || values[i] != value) return false;
+        removeAt(i);
+        return true;
+    }
+
+    /**
+     * removes everything, passing each removed value to the consumer.
+     * the consumer is called without the lock held.
+     */
+    public void drain(Consumer<V> consumer) {
+        V[] drained;
+        synchronized (this) {
+            drained = values;
+            allocate(keys.length);
+            size = 0;
+        }
+
+        for (V value : drained) {
+            if (value != null) consumer.accept(value);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+}
@@ -0,0 +1,138 @@
+package io.benwiegand.atvremote.phone.stuff;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * a bounded pool of things that are expensive to open (like connections), by key. when it's full
+ * the least recently used entry is evicted, and {@link #evictIdle(long)} evicts anything that has
+ * sat unused for too long. evicted values go to the eviction listener, which should close them.
+ * <p>
+ *     not thread safe, and the eviction listener is called from whatever method caused it.
+ * </p>
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class LruPool<K, V> {
+
+    private static class Entry<V> {
+        private final V value;
+        private final long lastUsed;
+
+        private Entry(V value, long lastUsed) {
+            this.value = value;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    // in access order, so the first entry is the least recently used
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Consumer<V> onEvicted;
+    private int maxSize;
+    private long idleTimeout;
+
+    /**
+     * @param maxSize how many entries to keep, 0 keeps nothing
+     * @param idleTimeout how long an entry can go unused before {@link #evictIdle(long)} evicts it
+     * @param onEvicted called with each evicted value
+     */
+    public LruPool(int maxSize, long idleTimeout, Consumer<V> onEvicted) {
+        this.onEvicted = onEvicted;
+        setMaxSize(maxSize);
+        setIdleTimeout(idleTimeout);
+    }
+
+    /**
+     * sets the max size, evicting the least recently used entries if there are too many now
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 0) throw new IllegalArgumentException("max size can't be negative");
+        this.maxSize = maxSize;
+        trim();
+    }
+
+    public void setIdleTimeout(long idleTimeout) {
+        if (idleTimeout < 1) throw new IllegalArgumentException("idle timeout must be positive");
+        this.idleTimeout = idleTimeout;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * adds or replaces an entry, which counts as a use. a replaced value is evicted unless it's the
+     * same one.
+     * @param now current time, in the same unit as the idle timeout
+     */
+    public void put(K key, V value, long now) {
+        Entry<V> old = entries.put(key, new Entry<>(value, now));
+        if (old != null && old.value != value) onEvicted.accept(old.value);
+        trim();
+    }
+
+    /**
+     * takes an entry out of the pool without evicting it
+     * @return the value, or null if there wasn't one
+     */
+    public V remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * takes an entry out of the pool without evicting it, but only if it still has the given value
+     * @return true if it was removed
+     */
+    public boolean remove(K key, V value) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null || entry.value != value) return false;
+        entries.remove(key);
+        return true;
+    }
+
+    /**
+     * evicts every entry that hasn't been used since before now - idleTimeout
+     * @param now current time, in the same unit as the idle timeout
+     * @return number of entries evicted
+     */
+    public int evictIdle(long now) {
+        List<V> evicted = new ArrayList<>();
+        for (Iterator<Entry<V>> iter = entries.values().iterator(); iter.hasNext(); ) {
+            Entry<V> entry = iter.next();
+            if (now - entry.lastUsed < idleTimeout) continue;
+            iter.remove();
+            evicted.add(entry.value);
+        }
+
+        evicted.forEach(onEvicted);
+        return evicted.size();
+    }
+
+    /**
+     * evicts everything
+     */
+    public void evictAll() {
+        List<V> evicted = new ArrayList<>(entries.size());
+        for (Entry<V> entry : entries.values()) evicted.add(entry.value);
+        entries.clear();
+        evicted.forEach(onEvicted);
+    }
+
+    private void trim() {
+        while (entries.size() > maxSize) {
+            Iterator<Map.Entry<K, Entry<V>>> iter = entries.entrySet().iterator();
+            Entry<V> eldest = iter.next().getValue();
+            iter.remove();
+            onEvicted.accept(eldest.value);
+        }
+    }
+}
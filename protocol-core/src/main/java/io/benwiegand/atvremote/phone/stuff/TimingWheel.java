@@ -0,0 +1,129 @@
+package io.benwiegand.atvremote.phone.stuff;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * a hashed timing wheel, for keeping track of lots of timeouts cheaply.
+ * <p>
+ *     scheduling is O(1), and each entry is only looked at when its slot comes around, so expiry
+ *     is O(1) amortized no matter how many entries there are. the tradeoff is precision: entries
+ *     expire up to one tick late, but never early.
+ * </p>
+ * <p>
+ *     entries can't be cancelled. whatever handles expiry should check if the thing still needs
+ *     to be expired, and {@link #clear()} can be used to drop everything once nothing is pending.
+ * </p>
+ * @param <T> entry type
+ */
+public class TimingWheel<T> {
+
+    private static class Node<T> {
+        private final T value;
+        private final long deadlineTick;
+        private Node<T> next;
+
+        private Node(T value, long deadlineTick, Node<T> next) {
+            this.value = value;
+            this.deadlineTick = deadlineTick;
+            this.next = next;
+        }
+    }
+
+    private final long tickDuration;
+    private final Node<T>[] slots;
+    private final int mask;
+
+    private long lastTick;
+    private int size = 0;
+
+    /**
+     * @param tickDuration duration of a tick
+     * @param wheelSize number of slots, must be a power of 2. entries further out than
+     *                  wheelSize ticks are still fine, they just get looked at more than once.
+     * @param now current time, in the same unit as tickDuration
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickDuration, int wheelSize, long now) {
+        if (tickDuration < 1) throw new IllegalArgumentException("tick duration must be positive");
+        if (Integer.bitCount(wheelSize) != 1) throw new IllegalArgumentException("wheel size must be a power of 2");
+        this.tickDuration = tickDuration;
+        this.slots = (Node<T>[]) new Node<?>[wheelSize];
+        this.mask = wheelSize - 1;
+        this.lastTick = now / tickDuration;
+    }
+
+    /**
+     * schedules an entry to expire at the given deadline
+     * @param value the entry
+     * @param deadline the deadline, in the same unit as tickDuration
+     */
+    public synchronized void schedule(T value, long deadline) {
+        // round up to never expire early, and never schedule into a tick that was already processed
+        long tick = Math.max((deadline + tickDuration - 1) / tickDuration, lastTick + 1);
+        int slot = (int) (tick & mask);
+        slots[slot] = new Node<>(value, tick, slots[slot]);
+
+        if (size++ == 0) notifyAll();
+    }
+
+    /**
+     * expires everything due up to now.
+     * onExpired is called with the lock held, so keep it quick.
+     * @param now current time
+     * @param onExpired called for each expired entry
+     * @return number of entries expired
+     */
+    public synchronized int advance(long now, Consumer<T> onExpired) {
+        long currentTick = now / tickDuration;
+        if (currentTick <= lastTick) return 0;
+
+        // if more than a full rotation passed, every slot only needs to be looked at once
+        long ticks = Math.min(currentTick - lastTick, slots.length);
+        int expired = 0;
+        for (long tick = currentTick - ticks + 1; tick <= currentTick; tick++) {
+            int slot = (int) (tick & mask);
+            Node<T> prev = null;
+            for (Node<T> node = slots[slot]; node != null; node = node.next) {
+                if (node.deadlineTick > currentTick) {
+                    // not this rotation
+                    prev = node;
+                    continue;
+                }
+
+                if (prev == null) slots[slot] = node.next;
+                else prev.next = node.next;
+                size--;
+                expired++;
+                onExpired.accept(node.value);
+            }
+        }
+
+        lastTick = currentTick;
+        return expired;
+    }
+
+    /**
+     * @param now current time
+     * @return time until the next tick starts
+     */
+    public long timeUntilNextTick(long now) {
+        return tickDuration - now % tickDuration;
+    }
+
+    /**
+     * blocks until there is at least one entry.
+     */
+    public synchronized void awaitEntries() throws InterruptedException {
+        while (size == 0) wait();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(slots, null);
+        size = 0;
+    }
+}
@@ -1,11 +1,12 @@
 package io.benwiegand.atvremote.phone.ui;
 
-import android.content.Context;
-
 import androidx.annotation.Nullable;
 import androidx.annotation.StringRes;
 
+import io.benwiegand.atvremote.phone.platform.Platform;
+
 public class ErrorMessageException extends RuntimeException {
+    // null if there's no string resource, the platform might not have any (see Platform#getStringRes)
     @StringRes
     private Integer stringResMessage = null;
 
@@ -15,7 +16,7 @@ public class ErrorMessageException extends RuntimeException {
 
     public ErrorMessageException(@StringRes int stringResMessage, String message) {
         super(message);
-        this.stringResMessage = stringResMessage;
+        this.stringResMessage = stringResMessage == 0 ? null : stringResMessage;
     }
 
     public ErrorMessageException(String message, Throwable cause) {
@@ -24,7 +25,7 @@ public class ErrorMessageException extends RuntimeException {
 
     public ErrorMessageException(@StringRes int stringResMessage, String message, Throwable cause) {
         super(message, cause);
-        this.stringResMessage = stringResMessage;
+        this.stringResMessage = stringResMessage == 0 ? null : stringResMessage;
     }
 
     @Nullable
@@ -33,7 +34,13 @@ public class ErrorMessageException extends RuntimeException {
         return stringResMessage;
     }
 
-    public String getLocalizedMessage(Context context) {
-        return stringResMessage != null ? context.getString(stringResMessage) : getLocalizedMessage();
+    /**
+     * @return the string resource message if there is one, otherwise the regular message
+     */
+    @Override
+    public String getLocalizedMessage() {
+        if (stringResMessage == null) return getMessage();
+        String localized = Platform.get().getString(stringResMessage);
+        return localized != null ? localized : getMessage();
     }
 }
@@ -0,0 +1,34 @@
+package io.benwiegand.atvremote.phone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import io.benwiegand.atvremote.phone.platform.JvmPlatform;
+import io.benwiegand.atvremote.phone.platform.Platform;
+import io.benwiegand.atvremote.phone.platform.ProtocolMessage;
+import io.benwiegand.atvremote.phone.protocol.RemoteProtocolException;
+
+public class ErrorMessageExceptionTest {
+
+    @Test
+    public void noStringRes_Test() {
+        Platform previous = Platform.get();
+        Platform.install(new JvmPlatform() {
+            @Override
+            public String getString(int stringRes) {
+                throw new AssertionError("looked up string res " + stringRes);
+            }
+        });
+
+        try {
+            // the jvm platform has no string resources, so this is 0
+            RemoteProtocolException e = new RemoteProtocolException(Platform.get().getStringRes(ProtocolMessage.EVENT_TIMEOUT), "timed out");
+            assertNull("no string res", e.getStringResMessage());
+            assertEquals("falls back to the message", "timed out", e.getLocalizedMessage());
+        } finally {
+            Platform.install(previous);
+        }
+    }
+}
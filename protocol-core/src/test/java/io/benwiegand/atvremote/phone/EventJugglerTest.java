@@ -0,0 +1,227 @@
+package io.benwiegand.atvremote.phone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.benwiegand.atvremote.phone.async.Sec;
+import io.benwiegand.atvremote.phone.network.EventJuggler;
+import io.benwiegand.atvremote.phone.network.TCPReader;
+import io.benwiegand.atvremote.phone.network.TCPWriter;
+import io.benwiegand.atvremote.phone.network.event.EventMerger;
+import io.benwiegand.atvremote.phone.network.event.EventResult;
+import io.benwiegand.atvremote.phone.network.event.EventTemplate;
+import io.benwiegand.atvremote.phone.network.event.OutputPriority;
+import io.benwiegand.atvremote.phone.protocol.KeyEventType;
+import io.benwiegand.atvremote.phone.protocol.OperationDefinition;
+import io.benwiegand.atvremote.phone.protocol.ProtocolConstants;
+
+public class EventJugglerTest {
+    private static final long TIMEOUT = 60000;
+
+    // accepts writes until told to fail
+    private static class BreakableOutputStream extends OutputStream {
+        private volatile boolean broken = false;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (broken) throw new IOException("broken on purpose");
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (broken) throw new IOException("broken on purpose");
+        }
+    }
+
+    // holds up the output thread until released
+    private static class BlockingOutputStream extends OutputStream {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private void block() throws IOException {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            block();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            block();
+        }
+    }
+
+    @Test
+    public void failedWrite_Test() throws IOException, InterruptedException {
+        // failing an event twice throws from whichever thread does it second
+        Map<Thread, Throwable> uncaught = new ConcurrentHashMap<>();
+        Thread.UncaughtExceptionHandler defaultHandler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(uncaught::put);
+
+        // nothing ever comes in, so sent events stay in flight
+        PipedOutputStream input = new PipedOutputStream();
+        TCPReader reader = new TCPReader(new PipedInputStream(input), StandardCharsets.UTF_8);
+        BreakableOutputStream output = new BreakableOutputStream();
+        TCPWriter writer = new TCPWriter(output, StandardCharsets.UTF_8);
+        EventJuggler juggler = new EventJuggler(new Socket(), reader, writer, t -> {}, TIMEOUT, TIMEOUT);
+
+        try {
+            juggler.start(new OperationDefinition[0]);
+
+            int inFlight = 3;
+            List<Sec<EventResult>> secs = new ArrayList<>();
+            for (int i = 0; i < inFlight; i++) secs.add(juggler.sendEvent("DPAD_UP CLICK"));
+            for (int i = 0; i < 500 && juggler.getInFlightEventCount() < inFlight; i++) Thread.sleep(10);
+            assertEquals("events in flight", inFlight, juggler.getInFlightEventCount());
+
+            output.broken = true;
+            secs.add(juggler.sendEvent("DPAD_DOWN CLICK"));
+
+            CountDownLatch latch = new CountDownLatch(secs.size());
+            AtomicInteger results = new AtomicInteger();
+            for (Sec<EventResult> sec : secs) {
+                sec.doOnResult(r -> {
+                            results.incrementAndGet();
+                            latch.countDown();
+                        })
+                        .doOnError(t -> latch.countDown())
+                        .callMeWhenDone();
+            }
+
+            assertTrue("every event failed", latch.await(5, TimeUnit.SECONDS));
+            assertEquals("no results", 0, results.get());
+            for (int i = 0; i < 500 && !juggler.isDead(); i++) Thread.sleep(10);
+            assertTrue("connection died", juggler.isDead());
+
+            // give a late second failure the chance to happen
+            Thread.sleep(200);
+            assertEquals("nothing failed twice", Map.of(), uncaught);
+            for (Sec<EventResult> sec : secs) assertNotNull("failed with an error", sec.getError());
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(defaultHandler);
+            if (!juggler.isDead()) juggler.close();
+            input.close();
+        }
+    }
+
+    @Test
+    public void invalidEventId_Test() throws IOException, InterruptedException {
+        PipedOutputStream input = new PipedOutputStream();
+        TCPReader reader = new TCPReader(new PipedInputStream(input), StandardCharsets.UTF_8);
+        PipedInputStream output = new PipedInputStream(4096);
+        TCPWriter writer = new TCPWriter(new PipedOutputStream(output), StandardCharsets.UTF_8);
+        TCPReader responses = new TCPReader(output, StandardCharsets.UTF_8);
+        EventJuggler juggler = new EventJuggler(new Socket(), reader, writer, t -> {}, TIMEOUT, TIMEOUT);
+
+        try {
+            AtomicInteger handled = new AtomicInteger();
+            juggler.start(new OperationDefinition[] {
+                    new OperationDefinition(ProtocolConstants.OP_DPAD_UP, handled::incrementAndGet)
+            });
+
+            // v1 ids are 4 chars, anything else is dropped without taking the connection with it
+            input.write("AAA DPAD_UP\nAAAAA DPAD_UP\nAAAB DPAD_UP\n".getBytes(StandardCharsets.UTF_8));
+            input.flush();
+
+            assertEquals("valid event answered", "!AAAB OK", responses.nextLine(5000));
+            assertEquals("only the valid event handled", 1, handled.get());
+            assertFalse("connection still alive", juggler.isDead());
+        } finally {
+            if (!juggler.isDead()) juggler.close();
+            responses.close();
+            input.close();
+        }
+    }
+
+    @Test
+    public void mergeAfterClose_Test() throws IOException {
+        PipedOutputStream input = new PipedOutputStream();
+        TCPReader reader = new TCPReader(new PipedInputStream(input), StandardCharsets.UTF_8);
+        TCPWriter writer = new TCPWriter(new BreakableOutputStream(), StandardCharsets.UTF_8);
+        EventJuggler juggler = new EventJuggler(new Socket(), reader, writer, t -> {}, TIMEOUT, TIMEOUT);
+        juggler.start(new OperationDefinition[0]);
+        juggler.close();
+
+        try {
+            EventMerger merger = new EventMerger("CURSOR_MOVE", (a, b) -> b);
+            for (int i = 0; i < 2; i++) {
+                Sec<EventResult> sec = juggler.sendEvent("CURSOR_MOVE " + i, OutputPriority.INTERACTIVE, merger);
+                assertNotNull("failed with an error", sec.getError());
+            }
+
+            assertEquals("nothing left queued", 0, juggler.getQueueDepth(OutputPriority.INTERACTIVE));
+            assertEquals("nothing merged into a dead event", 0, juggler.getMergedEventCount());
+        } finally {
+            input.close();
+        }
+    }
+
+    @Test
+    public void cancelQueued_Test() throws IOException, InterruptedException {
+        PipedOutputStream input = new PipedOutputStream();
+        TCPReader reader = new TCPReader(new PipedInputStream(input), StandardCharsets.UTF_8);
+        BlockingOutputStream output = new BlockingOutputStream();
+        TCPWriter writer = new TCPWriter(output, StandardCharsets.UTF_8);
+        writer.switchToFrames();
+        EventJuggler juggler = new EventJuggler(new Socket(), reader, writer, t -> {}, TIMEOUT, TIMEOUT);
+
+        try {
+            juggler.start(new OperationDefinition[0]);
+            juggler.enableNoAck();
+
+            // everything after this stays queued
+            juggler.sendEvent("DPAD_UP DOWN");
+            assertTrue("output thread blocked", output.entered.await(5, TimeUnit.SECONDS));
+
+            // like the repeats of a held key, which finish once they're written
+            List<Sec<EventResult>> repeats = new ArrayList<>();
+            for (int i = 0; i < 3; i++)
+                repeats.add(juggler.sendEventNoAck(EventTemplate.of(ProtocolConstants.OP_DPAD_DOWN, KeyEventType.DOWN), OutputPriority.INTERACTIVE));
+            Sec<EventResult> kept = juggler.sendEventNoAck("DPAD_DOWN UP", OutputPriority.INTERACTIVE);
+            assertEquals("queued", 4, juggler.getQueueDepth(OutputPriority.INTERACTIVE));
+
+            for (Sec<EventResult> repeat : repeats) {
+                assertTrue("cancelled while queued", repeat.cancel());
+                assertTrue("finished with the cancellation", repeat.getError() instanceof CancellationException);
+            }
+            assertEquals("withdrawn from the queue", 1, juggler.getQueueDepth(OutputPriority.INTERACTIVE));
+
+            CountDownLatch written = new CountDownLatch(1);
+            kept.doOnResult(r -> written.countDown())
+                    .callMeWhenDone();
+            output.release.countDown();
+            assertTrue("the rest is still written", written.await(5, TimeUnit.SECONDS));
+            assertFalse("connection still alive", juggler.isDead());
+        } finally {
+            output.release.countDown();
+            if (!juggler.isDead()) juggler.close();
+            input.close();
+        }
+    }
+}
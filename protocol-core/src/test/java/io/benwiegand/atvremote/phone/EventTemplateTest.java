@@ -0,0 +1,34 @@
+package io.benwiegand.atvremote.phone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import io.benwiegand.atvremote.phone.network.event.EventTemplate;
+import io.benwiegand.atvremote.phone.protocol.KeyEventType;
+import io.benwiegand.atvremote.phone.protocol.Opcodes;
+import io.benwiegand.atvremote.phone.protocol.ProtocolConstants;
+
+public class EventTemplateTest {
+
+    @Test
+    public void encoding_Test() {
+        EventTemplate template = EventTemplate.of(ProtocolConstants.OP_DPAD_UP, KeyEventType.DOWN);
+        assertEquals("event", "DPAD_UP DOWN", template.event());
+        assertEquals("opcode", Opcodes.opcodeOf(ProtocolConstants.OP_DPAD_UP), template.opcode());
+        assertArrayEquals("v2 payload", "DOWN".getBytes(StandardCharsets.UTF_8), template.payload());
+        assertArrayEquals("v1 line", " DPAD_UP DOWN".getBytes(StandardCharsets.UTF_8), template.line());
+
+        EventTemplate noExtra = EventTemplate.of(ProtocolConstants.OP_PING);
+        assertEquals("event without extra", "PING", noExtra.event());
+        assertEquals("no v2 payload", 0, noExtra.payload().length);
+
+        assertSame("templates are reused", template, EventTemplate.of(ProtocolConstants.OP_DPAD_UP, KeyEventType.DOWN));
+        assertThrows("unknown operation", IllegalArgumentException.class, () -> EventTemplate.of("NOT_AN_OPERATION"));
+    }
+}
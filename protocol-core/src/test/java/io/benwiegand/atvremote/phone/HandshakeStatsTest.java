@@ -0,0 +1,29 @@
+package io.benwiegand.atvremote.phone;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import io.benwiegand.atvremote.phone.network.metrics.HandshakeStats;
+
+public class HandshakeStatsTest {
+
+    @Test
+    public void record_Test() {
+        HandshakeStats stats = new HandshakeStats();
+        assertEquals("unknown receiver", 0, stats.get("aa").hitRate(), 0);
+
+        stats.record("aa", false, 40000);
+        stats.record("aa", true, 8000);
+        stats.record("aa", true, 9000);
+        stats.record("bb", false, 50000);
+
+        assertEquals("hits", 2, stats.hits());
+        assertEquals("misses", 2, stats.misses());
+        assertEquals("per receiver", new HandshakeStats.Stats("aa", 2, 1), stats.get("aa"));
+        assertEquals("hit rate", 2.0 / 3, stats.get("aa").hitRate(), 0.0001);
+        assertEquals("receivers", 2, stats.all().size());
+        assertEquals("resumed times", 2, stats.resumedHandshakeTimes().count());
+        assertEquals("full times", 50000, stats.fullHandshakeTimes().max());
+    }
+}
@@ -0,0 +1,55 @@
+package io.benwiegand.atvremote.phone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import io.benwiegand.atvremote.phone.stuff.IntMap;
+
+public class IntMapTest {
+
+    @Test
+    public void basic_Test() {
+        IntMap<String> map = new IntMap<>();
+        assertNull("put new key", map.putIfAbsent(1, "a"));
+        assertEquals("put existing key returns existing value", "a", map.putIfAbsent(1, "b"));
+        assertEquals("existing value kept", "a", map.get(1));
+        assertFalse("remove with wrong value", map.remove(1, "b"));
+        assertTrue("remove with right value", map.remove(1, "a"));
+        assertTrue("empty after remove", map.isEmpty());
+    }
+
+    @Test
+    public void randomOps_Test() {
+        // compare against HashMap with lots of collisions and removals
+        IntMap<Integer> map = new IntMap<>();
+        Map<Integer, Integer> reference = new HashMap<>();
+        Random random = new Random(1234);
+
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(512);
+            if (random.nextBoolean()) {
+                assertEquals("putIfAbsent(" + key + ")", reference.putIfAbsent(key, i), map.putIfAbsent(key, i));
+            } else {
+                assertEquals("remove(" + key + ")", reference.remove(key), map.remove(key));
+            }
+            assertEquals("size", reference.size(), map.size());
+        }
+
+        for (int key = 0; key < 512; key++)
+            assertEquals("get(" + key + ")", reference.get(key), map.get(key));
+
+        int[] drained = {0};
+        map.drain(v -> drained[0]++);
+        assertEquals("drained everything", reference.size(), drained[0]);
+        assertTrue("empty after drain", map.isEmpty());
+    }
+
+}
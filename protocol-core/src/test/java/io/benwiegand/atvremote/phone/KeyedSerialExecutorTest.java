@@ -0,0 +1,50 @@
+package io.benwiegand.atvremote.phone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.benwiegand.atvremote.phone.async.KeyedSerialExecutor;
+
+public class KeyedSerialExecutorTest {
+
+    @Test
+    public void ordering_Test() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        KeyedSerialExecutor executor = new KeyedSerialExecutor(pool);
+
+        int keys = 4;
+        int tasksPerKey = 1000;
+        List<List<Integer>> results = new ArrayList<>();
+        for (int k = 0; k < keys; k++) results.add(new ArrayList<>());
+
+        for (int i = 0; i < tasksPerKey; i++) {
+            for (int k = 0; k < keys; k++) {
+                // not synchronized on purpose, tasks for the same key never run at the same time
+                List<Integer> result = results.get(k);
+                int value = i;
+                executor.execute(k, () -> result.add(value));
+            }
+        }
+
+        // tasks can get resubmitted, so wait for everything to go idle before shutting down
+        while (executor.activeKeys() > 0) Thread.sleep(10);
+        pool.shutdown();
+        assertTrue("pool finished", pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        for (int k = 0; k < keys; k++) {
+            List<Integer> result = results.get(k);
+            assertEquals("all tasks ran for key " + k, tasksPerKey, result.size());
+            for (int i = 0; i < tasksPerKey; i++)
+                assertEquals("task order for key " + k, i, (int) result.get(i));
+        }
+    }
+
+}
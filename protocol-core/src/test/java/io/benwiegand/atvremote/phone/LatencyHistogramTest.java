@@ -0,0 +1,41 @@
+package io.benwiegand.atvremote.phone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import io.benwiegand.atvremote.phone.network.metrics.LatencyHistogram;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentile_Test() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals("empty", 0, histogram.percentile(50));
+
+        for (int i = 1; i <= 10000; i++) histogram.record(i);
+
+        assertEquals("count", 10000, histogram.count());
+        assertEquals("max", 10000, histogram.max());
+        assertEquals("mean", 5000.5, histogram.mean(), 0.001);
+
+        // buckets are at most 1/8 of the value wide
+        long p50 = histogram.percentile(50);
+        long p99 = histogram.percentile(99);
+        assertTrue("p50 within bucket error: " + p50, p50 >= 5000 && p50 <= 5000 * 9 / 8);
+        assertTrue("p99 within bucket error: " + p99, p99 >= 9900 && p99 <= 10000);
+        assertEquals("p100 is max", 10000, histogram.percentile(100));
+    }
+
+    @Test
+    public void smallValues_Test() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 16; i++) histogram.record(i);
+        histogram.record(-5);
+
+        assertEquals("small values are exact", 7, histogram.percentile(50));
+        assertEquals("negative values count as 0", 0, histogram.percentile(1));
+    }
+
+}
@@ -0,0 +1,118 @@
+package io.benwiegand.atvremote.phone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.benwiegand.atvremote.phone.stuff.LruPool;
+
+public class LruPoolTest {
+
+    @Test
+    public void lru_Test() {
+        List<String> evicted = new ArrayList<>();
+        LruPool<Integer, String> pool = new LruPool<>(2, 1000, evicted::add);
+
+        pool.put(1, "one", 0);
+        pool.put(2, "two", 0);
+        pool.put(3, "three", 0);
+        assertEquals("least recently used evicted", List.of("one"), evicted);
+        assertEquals("size", 2, pool.size());
+
+        // putting again counts as a use, so 3 is the eldest now
+        pool.put(2, "two", 0);
+        assertEquals("same value isn't evicted", List.of("one"), evicted);
+        pool.put(4, "four", 0);
+        assertEquals("eldest evicted", List.of("one", "three"), evicted);
+
+        pool.put(2, "TWO", 0);
+        assertEquals("replaced value evicted", List.of("one", "three", "two"), evicted);
+
+        pool.setMaxSize(1);
+        assertEquals("shrinking evicts", List.of("one", "three", "two", "four"), evicted);
+
+        evicted.clear();
+        assertFalse("wrong value", pool.remove(2, "two"));
+        assertTrue("right value", pool.remove(2, "TWO"));
+        assertNull("already removed", pool.remove(2));
+        assertTrue("removing isn't evicting", evicted.isEmpty());
+    }
+
+    @Test
+    public void idle_Test() {
+        List<String> evicted = new ArrayList<>();
+        LruPool<Integer, String> pool = new LruPool<>(4, 1000, evicted::add);
+
+        pool.put(1, "one", 0);
+        pool.put(2, "two", 500);
+        assertEquals("nothing idle yet", 0, pool.evictIdle(999));
+
+        assertEquals("idle one evicted", 1, pool.evictIdle(1000));
+        assertEquals("evicted value", List.of("one"), evicted);
+
+        pool.evictAll();
+        assertEquals("everything evicted", List.of("one", "two"), evicted);
+        assertEquals("empty", 0, pool.size());
+    }
+
+    @Test
+    public void reuse_Test() {
+        List<String> evicted = new ArrayList<>();
+        LruPool<Integer, String> pool = new LruPool<>(2, 1000, evicted::add);
+
+        pool.put(1, "one", 0);
+        pool.put(2, "two", 0);
+
+        // taking a connection out to use it, then parking it again later
+        assertEquals("taken out", "one", pool.remove(1));
+        assertEquals("size after taking", 1, pool.size());
+        assertNull("only taken once", pool.remove(1));
+        pool.put(1, "one", 500);
+        assertTrue("reuse isn't eviction", evicted.isEmpty());
+
+        pool.put(3, "three", 500);
+        assertEquals("parked again counts as recently used", List.of("two"), evicted);
+
+        assertEquals("not idle since it was parked again", 0, pool.evictIdle(1000));
+        assertEquals("idle after that", 2, pool.evictIdle(1500));
+        assertEquals("idle evictions", List.of("two", "one", "three"), evicted);
+    }
+
+    @Test
+    public void deathWhilePooled_Test() {
+        List<String> evicted = new ArrayList<>();
+        LruPool<Integer, String> pool = new LruPool<>(2, 1000, evicted::add);
+
+        pool.put(1, "one", 0);
+        pool.put(1, "ONE", 0);
+        assertEquals("replaced connection evicted", List.of("one"), evicted);
+
+        // the replaced connection dies afterwards, which must not take out its replacement
+        assertFalse("replaced one isn't pooled", pool.remove(1, "one"));
+        assertEquals("replacement still pooled", 1, pool.size());
+
+        pool.put(2, "two", 0);
+        assertTrue("dead one removed", pool.remove(1, "ONE"));
+        assertEquals("dead one isn't evicted", List.of("one"), evicted);
+
+        pool.evictAll();
+        assertEquals("dead one isn't evicted later", List.of("one", "two"), evicted);
+    }
+
+    @Test
+    public void disabled_Test() {
+        List<String> evicted = new ArrayList<>();
+        LruPool<Integer, String> pool = new LruPool<>(0, 1000, evicted::add);
+
+        pool.put(1, "one", 0);
+        assertEquals("evicted right away", List.of("one"), evicted);
+        assertEquals("empty", 0, pool.size());
+        assertNull("nothing to reuse", pool.remove(1));
+    }
+}
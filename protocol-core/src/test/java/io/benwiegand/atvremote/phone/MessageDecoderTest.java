@@ -0,0 +1,83 @@
+package io.benwiegand.atvremote.phone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import io.benwiegand.atvremote.phone.network.MessageDecoder;
+import io.benwiegand.atvremote.phone.network.frame.Frame;
+
+public class MessageDecoderTest {
+
+    private static final String[] TEST_LINES = new String[]{"testing 123",
+            "lines with multi-byte characters: éè ☃ 📺",
+            "", "a '\r' in the middle", "x".repeat(10000)};
+
+    // hands out one byte per read, so every message is split across reads
+    private static InputStream trickle(byte[] bytes) {
+        return new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+    }
+
+    private static byte[] linesOf(String separator) {
+        return (String.join(separator, TEST_LINES) + separator).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void testLines(MessageDecoder decoder, boolean views) throws IOException {
+        for (String expectedLine : TEST_LINES) {
+            CharSequence line;
+            while ((line = views ? decoder.nextLineView() : decoder.nextLine()) == null)
+                decoder.fill();
+            assertEquals(expectedLine, line.toString());
+        }
+
+        assertNull("nothing left", decoder.nextLine());
+        assertThrows("exception at end of stream", IOException.class, decoder::fill);
+    }
+
+    @Test
+    public void lines_Test() throws IOException {
+        for (boolean direct : new boolean[] {false, true}) {
+            for (boolean views : new boolean[] {false, true}) {
+                testLines(new MessageDecoder(new ByteArrayInputStream(linesOf("\n")), StandardCharsets.UTF_8, 16, direct), views);
+                testLines(new MessageDecoder(new ByteArrayInputStream(linesOf("\r\n")), StandardCharsets.UTF_8, 16, direct), views);
+                testLines(new MessageDecoder(trickle(linesOf("\r\n")), StandardCharsets.UTF_8, 16, direct), views);
+            }
+        }
+    }
+
+    @Test
+    public void frames_Test() throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        for (int i = 0; i < 100; i++)
+            Frame.event(i * 1000, i, "x".repeat(i * 10).getBytes(StandardCharsets.UTF_8)).writeTo(os);
+
+        MessageDecoder decoder = new MessageDecoder(trickle(os.toByteArray()), StandardCharsets.UTF_8, 16, false);
+        for (int i = 0; i < 100; i++) {
+            Frame frame;
+            while ((frame = decoder.nextFrame()) == null)
+                decoder.fill();
+
+            assertEquals(Frame.TYPE_EVENT, frame.type());
+            assertEquals(i * 1000, frame.eventId());
+            assertEquals(i, frame.opcode());
+            assertEquals(i * 10, frame.payload().length);
+        }
+
+        assertNull("nothing left", decoder.nextFrame());
+    }
+
+}
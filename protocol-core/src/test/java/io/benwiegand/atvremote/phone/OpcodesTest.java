@@ -0,0 +1,33 @@
+package io.benwiegand.atvremote.phone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import io.benwiegand.atvremote.phone.protocol.Opcodes;
+import io.benwiegand.atvremote.phone.protocol.ProtocolConstants;
+
+public class OpcodesTest {
+
+    @Test
+    public void lookup_Test() {
+        for (int opcode = Opcodes.OPCODE_LITERAL + 1; opcode < Opcodes.count(); opcode++) {
+            String operation = Opcodes.operationOf(opcode);
+            assertEquals("opcode of " + operation, opcode, Opcodes.opcodeOf(operation));
+
+            String line = "AAAA " + operation + " extra";
+            assertEquals("opcode of " + operation + " inside a line", opcode, Opcodes.opcodeOf(line, 5, 5 + operation.length()));
+        }
+
+        assertSame("batch opcode", ProtocolConstants.OP_BATCH, Opcodes.operationOf(Opcodes.OPCODE_BATCH));
+    }
+
+    @Test
+    public void unknown_Test() {
+        assertEquals("unknown operation", Opcodes.OPCODE_LITERAL, Opcodes.opcodeOf("NOT_AN_OPERATION"));
+        assertEquals("empty operation", Opcodes.OPCODE_LITERAL, Opcodes.opcodeOf(""));
+        assertEquals("prefix of an operation", Opcodes.OPCODE_LITERAL, Opcodes.opcodeOf("DPAD_U"));
+        assertEquals("operation with trailing text", Opcodes.OPCODE_LITERAL, Opcodes.opcodeOf("DPAD_UP "));
+    }
+}
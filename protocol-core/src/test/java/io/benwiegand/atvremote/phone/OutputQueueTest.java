@@ -0,0 +1,142 @@
+package io.benwiegand.atvremote.phone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import io.benwiegand.atvremote.phone.async.SecAdapter;
+import io.benwiegand.atvremote.phone.network.event.EventMerger;
+import io.benwiegand.atvremote.phone.network.event.EventResult;
+import io.benwiegand.atvremote.phone.network.event.OutputPriority;
+import io.benwiegand.atvremote.phone.network.event.OutputQueue;
+import io.benwiegand.atvremote.phone.network.event.QueuedEvent;
+import io.benwiegand.atvremote.phone.network.event.QueuedOutput;
+
+public class OutputQueueTest {
+
+    private static QueuedEvent event(OutputPriority priority) {
+        return new QueuedEvent("TEST", priority, null, 0);
+    }
+
+    @Test
+    public void priority_Test() {
+        OutputQueue queue = new OutputQueue(100);
+        QueuedOutput bulk = event(OutputPriority.BULK);
+        QueuedOutput control = event(OutputPriority.CONTROL);
+        QueuedOutput interactive = event(OutputPriority.INTERACTIVE);
+
+        queue.add(bulk);
+        queue.add(control);
+        queue.add(interactive);
+        assertEquals("bulk depth", 1, queue.depth(OutputPriority.BULK));
+
+        assertSame("interactive first", interactive, queue.poll());
+        assertSame("then control", control, queue.poll());
+        assertSame("then bulk", bulk, queue.poll());
+        assertNull("then nothing", queue.poll());
+        assertEquals("bulk depth after poll", 0, queue.depth(OutputPriority.BULK));
+    }
+
+    @Test
+    public void starvation_Test() {
+        OutputQueue queue = new OutputQueue(3);
+        QueuedOutput bulk = event(OutputPriority.BULK);
+        queue.add(bulk);
+        for (int i = 0; i < 10; i++) queue.add(event(OutputPriority.INTERACTIVE));
+
+        for (int i = 0; i < 3; i++)
+            assertEquals("interactive while bulk isn't starved", OutputPriority.INTERACTIVE, queue.poll().priority());
+
+        assertSame("bulk gets a turn after being passed over 3 times", bulk, queue.poll());
+        assertEquals("interactive depth", 7, queue.depth(OutputPriority.INTERACTIVE));
+    }
+
+    @Test
+    public void merge_Test() {
+        OutputQueue queue = new OutputQueue(100);
+        EventMerger merger = new EventMerger("SUM", (a, b) -> String.valueOf(Integer.parseInt(a) + Integer.parseInt(b)));
+        int[] results = {0};
+        SecAdapter<EventResult> adapter = new SecAdapter<>() {
+            @Override
+            public void provideResult(EventResult result) {
+                results[0]++;
+            }
+
+            @Override
+            public void throwError(Throwable t) {
+            }
+        };
+
+        queue.add(new QueuedEvent("1", OutputPriority.INTERACTIVE, adapter, 0), merger);
+        queue.add(new QueuedEvent("2", OutputPriority.INTERACTIVE, adapter, 0), merger);
+        queue.add(new QueuedEvent("3", OutputPriority.INTERACTIVE, adapter, 0), merger);
+        assertEquals("merged into one entry", 1, queue.depth(OutputPriority.INTERACTIVE));
+        assertEquals("merged count", 2, queue.mergedCount());
+
+        QueuedEvent merged = (QueuedEvent) queue.poll();
+        assertEquals("merged event", "6", merged.event());
+        assertNull("only one entry", queue.poll());
+
+        merged.adapter().provideResult(new EventResult("OK"));
+        assertEquals("every caller gets the result", 3, results[0]);
+
+        queue.add(new QueuedEvent("4", OutputPriority.INTERACTIVE, adapter, 0), merger);
+        QueuedEvent next = (QueuedEvent) queue.poll();
+        assertEquals("nothing merged into an event that was already taken", "4", next.event());
+    }
+
+    @Test
+    public void withdraw_Test() {
+        OutputQueue queue = new OutputQueue(2);
+        QueuedEvent bulk = event(OutputPriority.BULK);
+        QueuedEvent interactive = event(OutputPriority.INTERACTIVE);
+        queue.add(bulk);
+        queue.add(interactive);
+
+        assertTrue("withdrawn", queue.withdraw(bulk, null));
+        assertFalse("only once", queue.withdraw(bulk, null));
+        assertEquals("doesn't count toward the depth", 0, queue.depth(OutputPriority.BULK));
+
+        // nothing is waiting in bulk, so interactive isn't held back for it
+        for (int i = 0; i < 3; i++) queue.add(event(OutputPriority.INTERACTIVE));
+        for (int i = 0; i < 4; i++)
+            assertEquals("interactive", OutputPriority.INTERACTIVE, queue.poll().priority());
+        assertNull("then nothing", queue.poll());
+
+        EventMerger merger = new EventMerger("KEY", (queued, next) -> next);
+        SecAdapter.SecWithAdapter<EventResult> first = SecAdapter.createThreadless();
+        SecAdapter.SecWithAdapter<EventResult> second = SecAdapter.createThreadless();
+        QueuedEvent firstEvent = new QueuedEvent("1", OutputPriority.INTERACTIVE, first.secAdapter(), 0);
+        queue.add(firstEvent, merger);
+        queue.add(new QueuedEvent("2", OutputPriority.INTERACTIVE, second.secAdapter(), 0), merger);
+
+        first.sec().cancel();
+        assertFalse("merged event stays while someone still wants it", queue.withdraw(firstEvent, merger));
+        second.sec().cancel();
+        assertTrue("withdrawn once everyone cancelled", queue.withdraw(firstEvent, merger));
+        assertNull("nothing left", queue.poll());
+
+        queue.add(new QueuedEvent("3", OutputPriority.INTERACTIVE, null, 0), merger);
+        assertEquals("nothing merged into the withdrawn event", "3", ((QueuedEvent) queue.poll()).event());
+    }
+
+    @Test
+    public void deadline_Test() {
+        OutputQueue queue = new OutputQueue(100);
+        EventMerger merger = new EventMerger("KEY", (queued, next) -> next);
+
+        long ms = 1000000;
+        queue.add(new QueuedEvent("old", OutputPriority.INTERACTIVE, null, 0, true, 100), merger);
+        queue.add(new QueuedEvent("new", OutputPriority.INTERACTIVE, null, 50 * ms, true, 100), merger);
+
+        QueuedEvent merged = (QueuedEvent) queue.poll();
+        assertEquals("oldest enqueue time kept", 0, merged.enqueuedAt());
+        assertEquals("latest deadline kept", 150 * ms, merged.deadline());
+        assertFalse("not expired at the deadline", merged.isExpired(150 * ms));
+        assertTrue("expired after the deadline", merged.isExpired(150 * ms + 1));
+    }
+}
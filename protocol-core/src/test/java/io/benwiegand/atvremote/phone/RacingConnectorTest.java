@@ -0,0 +1,115 @@
+package io.benwiegand.atvremote.phone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import io.benwiegand.atvremote.phone.network.RacingConnector;
+
+public class RacingConnectorTest {
+
+    private ServerSocket blackhole;
+    private ServerSocket receiver;
+
+    @Before
+    public void setUp() throws IOException {
+        // accepts tcp (through the backlog) but never answers, like a stale address of a TV
+        blackhole = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        receiver = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Thread acceptThread = new Thread(() -> {
+            try {
+                while (true) receiver.accept();
+            } catch (IOException ignored) {}
+        });
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        blackhole.close();
+        receiver.close();
+    }
+
+    @Test
+    public void blackhole_Test() throws Exception {
+        InetAddress stale = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        InetAddress current = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+        AtomicReference<Socket> staleSocket = new AtomicReference<>();
+
+        RacingConnector connector = new RacingConnector(List.of(stale, current), (socket, address) -> {
+            if (address.equals(stale)) {
+                staleSocket.set(socket);
+                socket.connect(blackhole.getLocalSocketAddress());
+                // the "handshake" never gets a reply, only closing the socket ends it
+                socket.getInputStream().read();
+                throw new IOException("blackhole answered");
+            }
+
+            socket.connect(receiver.getLocalSocketAddress());
+            return (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault()).createSocket(
+                    socket, "receiver", receiver.getLocalPort(), true);
+        });
+
+        long start = System.currentTimeMillis();
+        RacingConnector.Result result = connector.connect();
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals("second address wins", current, result.address());
+        assertEquals("winner is connected to the receiver",
+                new InetSocketAddress(receiver.getInetAddress(), receiver.getLocalPort()),
+                result.socket().getRemoteSocketAddress());
+        assertTrue("second attempt started after the attempt delay", elapsed >= RacingConnector.ATTEMPT_DELAY);
+        assertTrue("didn't wait for the blackhole", elapsed < RacingConnector.ATTEMPT_DELAY + 2000);
+        assertTrue("blackholed attempt aborted", staleSocket.get().isClosed());
+
+        result.socket().close();
+    }
+
+    @Test
+    public void allFailed_Test() throws Exception {
+        InetAddress a = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        InetAddress b = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+
+        long start = System.currentTimeMillis();
+        try {
+            new RacingConnector(List.of(a, b), (socket, address) -> {
+                throw new IOException("refused by " + address.getHostAddress());
+            }).connect();
+            throw new AssertionError("connect() should have thrown");
+        } catch (IOException e) {
+            assertEquals("first error thrown", "refused by 10.0.0.1", e.getMessage());
+            assertEquals("other errors suppressed", 1, e.getSuppressed().length);
+        }
+        assertTrue("a failure starts the next attempt right away", System.currentTimeMillis() - start < RacingConnector.ATTEMPT_DELAY);
+    }
+
+    @Test
+    public void interleaveFamilies_Test() throws IOException {
+        InetAddress v4a = InetAddress.getByAddress(new byte[] {10, 0, 0, 1});
+        InetAddress v4b = InetAddress.getByAddress(new byte[] {10, 0, 0, 2});
+        InetAddress v6a = InetAddress.getByName("fe80::1");
+        InetAddress v6b = InetAddress.getByName("fe80::2");
+
+        assertEquals("alternates starting with the first family",
+                List.of(v4a, v6a, v4b, v6b),
+                RacingConnector.interleaveFamilies(List.of(v4a, v4b, v6a, v6b)));
+        assertEquals("leftovers at the end",
+                List.of(v6a, v4a, v6b),
+                RacingConnector.interleaveFamilies(List.of(v6a, v6b, v4a)));
+    }
+}
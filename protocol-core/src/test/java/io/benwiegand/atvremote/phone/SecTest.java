@@ -0,0 +1,310 @@
+package io.benwiegand.atvremote.phone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import io.benwiegand.atvremote.phone.async.CompositeException;
+import io.benwiegand.atvremote.phone.async.FanOutSecAdapter;
+import io.benwiegand.atvremote.phone.async.Sec;
+import io.benwiegand.atvremote.phone.async.SecAdapter;
+
+public class SecTest {
+
+    @Test
+    public void mapChain_Test() {
+        AtomicReference<Object> result = new AtomicReference<>();
+        SecAdapter.SecWithAdapter<String> secWithAdapter = SecAdapter.createThreadless();
+        Sec<Boolean> mapped = secWithAdapter.sec()
+                .map(String::length)
+                .map(length -> length > 1);
+        mapped.doOnResult(result::set)
+                .callMeWhenDone();
+
+        assertFalse("not finished before result", mapped.isFinished());
+        secWithAdapter.secAdapter().provideResult("OK");
+        assertEquals("mapped result", true, result.get());
+        assertTrue("finished", mapped.isFinished());
+
+        result.set(null);
+        Sec.premeditatedResult("")
+                .map(String::length)
+                .doOnResult(result::set)
+                .callMeWhenDone();
+        assertEquals("callbacks set after result", 0, result.get());
+    }
+
+    @Test
+    public void errors_Test() {
+        RuntimeException original = new RuntimeException("original");
+        AtomicReference<Throwable> error = new AtomicReference<>();
+
+        Sec.<String>premeditatedError(original)
+                .map(String::length)
+                .mapError(t -> new IllegalStateException("wrapped", t))
+                .doOnResult(r -> error.set(new AssertionError("result on error path")))
+                .doOnError(error::set)
+                .callMeWhenDone();
+        assertTrue("mapped error", error.get() instanceof IllegalStateException);
+        assertSame("cause kept", original, error.get().getCause());
+
+        error.set(null);
+        Sec.premeditatedResult("OK")
+                .map(r -> { throw original; })
+                .doOnError(error::set)
+                .callMeWhenDone();
+        assertSame("thrown from map", original, error.get());
+
+        Sec<String> sec = Sec.premeditatedError(original);
+        assertFalse("not successful", sec.isSuccessful());
+        assertNull("no result", sec.getResult());
+        assertThrows("rethrown", RuntimeException.class, sec::getResultOrThrow);
+    }
+
+    @Test
+    public void contract_Test() {
+        SecAdapter.SecWithAdapter<String> secWithAdapter = SecAdapter.createThreadless();
+        Sec<String> sec = secWithAdapter.sec();
+
+        assertThrows("result before finishing", IllegalStateException.class, sec::getResult);
+        sec.callMeWhenDone();
+        assertThrows("callMeWhenDone twice", IllegalStateException.class, sec::callMeWhenDone);
+        assertThrows("callbacks after arming", IllegalStateException.class, () -> sec.doOnResult(r -> {}));
+        assertThrows("map after arming", IllegalStateException.class, () -> sec.map(String::length));
+
+        secWithAdapter.secAdapter().provideResult("OK");
+        assertThrows("second result", IllegalStateException.class, () -> secWithAdapter.secAdapter().provideResult("OK"));
+        assertThrows("error after result", IllegalStateException.class, () -> secWithAdapter.secAdapter().throwError(new RuntimeException()));
+        assertEquals("first result kept", "OK", sec.getResult());
+    }
+
+    @Test
+    public void deepChain_Test() {
+        // fused stages are walked in a loop, this would overflow the stack if they recursed
+        SecAdapter.SecWithAdapter<Integer> secWithAdapter = SecAdapter.createThreadless();
+        Sec<Integer> sec = secWithAdapter.sec();
+        for (int i = 0; i < 100000; i++) sec = sec.map(n -> n + 1);
+
+        AtomicInteger result = new AtomicInteger();
+        sec.doOnResult(result::set).callMeWhenDone();
+        secWithAdapter.secAdapter().provideResult(0);
+        assertEquals("every stage applied", 100000, result.get());
+    }
+
+    @Test
+    public void race_Test() throws InterruptedException {
+        // completing and arming from different threads must call back exactly once
+        int rounds = 2000;
+        AtomicInteger calls = new AtomicInteger();
+        for (int i = 0; i < rounds; i++) {
+            SecAdapter.SecWithAdapter<Integer> secWithAdapter = SecAdapter.createThreadless();
+            CountDownLatch start = new CountDownLatch(1);
+            Thread provider = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                secWithAdapter.secAdapter().provideResult(1);
+            });
+            provider.start();
+
+            Sec<Integer> mapped = secWithAdapter.sec().map(n -> n + 1);
+            start.countDown();
+            mapped.doOnResult(r -> calls.incrementAndGet()).callMeWhenDone();
+            provider.join();
+        }
+
+        assertEquals("called back once per round", rounds, calls.get());
+    }
+
+    private static <T> List<SecAdapter.SecWithAdapter<T>> pending(int count) {
+        List<SecAdapter.SecWithAdapter<T>> secs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) secs.add(SecAdapter.createThreadless());
+        return secs;
+    }
+
+    private static <T> List<Sec<T>> secsOf(List<SecAdapter.SecWithAdapter<T>> secsWithAdapters) {
+        return secsWithAdapters.stream().map(SecAdapter.SecWithAdapter::sec).toList();
+    }
+
+    @Test
+    public void allOf_Test() throws Throwable {
+        List<SecAdapter.SecWithAdapter<Integer>> inputs = pending(3);
+        Sec<List<Integer>> all = Sec.allOf(secsOf(inputs));
+        inputs.get(2).secAdapter().provideResult(2);
+        inputs.get(0).secAdapter().provideResult(0);
+        assertFalse("waits for every sec", all.isFinished());
+        inputs.get(1).secAdapter().provideResult(1);
+        assertEquals("results in order", List.of(0, 1, 2), all.getResultOrThrow());
+
+        assertEquals("empty", List.of(), Sec.allOf(List.<Sec<Integer>>of()).getResultOrThrow());
+
+        // same error instance is only reported once
+        RuntimeException shared = new RuntimeException("shared");
+        RuntimeException other = new RuntimeException("other");
+        Sec<List<Integer>> failed = Sec.allOf(List.of(
+                Sec.premeditatedError(shared), Sec.premeditatedResult(1), Sec.premeditatedError(shared)));
+        assertSame("single distinct error passed as-is", shared, failed.getError());
+
+        failed = Sec.allOf(List.of(Sec.premeditatedError(shared), Sec.premeditatedError(other)));
+        assertTrue("errors combined", failed.getError() instanceof CompositeException);
+        assertEquals("all errors kept", List.of(shared, other), ((CompositeException) failed.getError()).getErrors());
+    }
+
+    @Test
+    public void allOfFailFast_Test() {
+        List<SecAdapter.SecWithAdapter<Integer>> inputs = pending(3);
+        Sec<List<Integer>> all = Sec.allOf(secsOf(inputs), true);
+
+        RuntimeException error = new RuntimeException();
+        inputs.get(1).secAdapter().throwError(error);
+        assertTrue("finished without waiting", all.isFinished());
+        assertSame("first error", error, all.getError());
+
+        // stragglers are ignored
+        inputs.get(0).secAdapter().provideResult(0);
+        inputs.get(2).secAdapter().throwError(new RuntimeException());
+    }
+
+    @Test
+    public void anyOfAndRace_Test() {
+        RuntimeException error = new RuntimeException();
+
+        List<SecAdapter.SecWithAdapter<Integer>> inputs = pending(3);
+        Sec<Integer> any = Sec.anyOf(secsOf(inputs));
+        inputs.get(0).secAdapter().throwError(error);
+        assertFalse("errors don't finish anyOf", any.isFinished());
+        inputs.get(2).secAdapter().provideResult(2);
+        inputs.get(1).secAdapter().provideResult(1);
+        assertEquals("first success", 2, (int) any.getResult());
+
+        Sec<Integer> none = Sec.anyOf(List.of(Sec.premeditatedError(error), Sec.premeditatedError(new RuntimeException())));
+        assertTrue("all failed", none.getError() instanceof CompositeException);
+
+        inputs = pending(2);
+        Sec<Integer> race = Sec.race(secsOf(inputs));
+        inputs.get(1).secAdapter().throwError(error);
+        inputs.get(0).secAdapter().provideResult(0);
+        assertSame("first to finish wins, even an error", error, race.getError());
+
+        assertThrows("nothing to race", IllegalArgumentException.class, () -> Sec.race(List.<Sec<Integer>>of()));
+    }
+
+    @Test
+    public void sequence_Test() throws Throwable {
+        List<SecAdapter.SecWithAdapter<Integer>> inputs = pending(2);
+        List<Integer> started = new ArrayList<>();
+        List<Supplier<Sec<Integer>>> steps = List.of(
+                () -> { started.add(0); return inputs.get(0).sec(); },
+                () -> { started.add(1); return inputs.get(1).sec(); });
+
+        Sec<List<Integer>> sequence = Sec.sequence(steps);
+        assertEquals("only the first step started", List.of(0), started);
+        inputs.get(0).secAdapter().provideResult(10);
+        assertEquals("second step started after the first", List.of(0, 1), started);
+        inputs.get(1).secAdapter().provideResult(11);
+        assertEquals("results in order", List.of(10, 11), sequence.getResultOrThrow());
+
+        RuntimeException error = new RuntimeException();
+        started.clear();
+        sequence = Sec.sequence(List.of(
+                () -> Sec.premeditatedError(error),
+                () -> { started.add(1); return Sec.premeditatedResult(1); }));
+        assertSame("stops at the first error", error, sequence.getError());
+        assertTrue("later steps never started", started.isEmpty());
+    }
+
+    @Test
+    public void cancel_Test() {
+        SecAdapter.SecWithAdapter<String> secWithAdapter = SecAdapter.createThreadless();
+        AtomicInteger handlerCalls = new AtomicInteger();
+        secWithAdapter.secAdapter().setCancelHandler(handlerCalls::incrementAndGet);
+
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Sec<Integer> mapped = secWithAdapter.sec()
+                .map(String::length)
+                .map(length -> length + 1);
+        mapped.doOnError(error::set)
+                .callMeWhenDone();
+
+        assertTrue("cancelled", mapped.cancel());
+        assertTrue("propagated up the chain", secWithAdapter.sec().isCancelled());
+        assertTrue("every stage is marked", mapped.isCancelled());
+        assertTrue("producer sees it", secWithAdapter.secAdapter().isCancelled());
+        assertEquals("cancel handler called", 1, handlerCalls.get());
+        assertTrue("error came down the chain", error.get() instanceof CancellationException);
+
+        // the producer doesn't know, so late results are ignored instead of throwing
+        secWithAdapter.secAdapter().provideResult("late");
+        assertFalse("already finished", mapped.cancel());
+        assertEquals("cancel handler only called once", 1, handlerCalls.get());
+
+        // a handler set after cancellation is called right away
+        secWithAdapter.secAdapter().setCancelHandler(handlerCalls::incrementAndGet);
+        assertEquals("late cancel handler called", 2, handlerCalls.get());
+
+        Sec<String> finished = Sec.premeditatedResult("OK");
+        assertFalse("can't cancel once finished", finished.cancel());
+        assertFalse("not cancelled", finished.isCancelled());
+    }
+
+    @Test
+    public void combinatorCancel_Test() {
+        List<SecAdapter.SecWithAdapter<Integer>> inputs = pending(2);
+        assertTrue("cancelled", Sec.allOf(secsOf(inputs)).map(List::size).cancel());
+        for (SecAdapter.SecWithAdapter<Integer> input : inputs)
+            assertTrue("allOf cancels its inputs", input.secAdapter().isCancelled());
+
+        inputs = pending(2);
+        inputs.get(0).secAdapter().throwError(new RuntimeException());
+        assertTrue("cancelled", Sec.anyOf(secsOf(inputs)).cancel());
+        assertTrue("anyOf cancels what's still pending", inputs.get(1).secAdapter().isCancelled());
+
+        inputs = pending(2);
+        assertTrue("cancelled", Sec.race(secsOf(inputs)).cancel());
+        for (SecAdapter.SecWithAdapter<Integer> input : inputs)
+            assertTrue("race cancels its inputs", input.secAdapter().isCancelled());
+
+        List<SecAdapter.SecWithAdapter<Integer>> steps = pending(2);
+        List<Integer> started = new ArrayList<>();
+        Sec<List<Integer>> sequence = Sec.sequence(List.of(
+                () -> { started.add(0); return steps.get(0).sec(); },
+                () -> { started.add(1); return steps.get(1).sec(); }));
+        assertTrue("cancelled", sequence.cancel());
+        assertTrue("sequence cancels the running step", steps.get(0).secAdapter().isCancelled());
+        steps.get(0).secAdapter().provideResult(0);
+        assertEquals("no more steps started", List.of(0), started);
+        assertTrue("finished with the cancellation", sequence.getError() instanceof CancellationException);
+    }
+
+    @Test
+    public void fanOutCancel_Test() {
+        SecAdapter.SecWithAdapter<String> first = SecAdapter.createThreadless();
+        SecAdapter.SecWithAdapter<String> second = SecAdapter.createThreadless();
+        SecAdapter<String> fanOut = FanOutSecAdapter.of(first.secAdapter(), second.secAdapter());
+        AtomicInteger handlerCalls = new AtomicInteger();
+        fanOut.setCancelHandler(handlerCalls::incrementAndGet);
+
+        assertTrue("cancelled", first.sec().cancel());
+        assertFalse("the other one still wants it", fanOut.isCancelled());
+        assertEquals("cancel handler not called yet", 0, handlerCalls.get());
+
+        assertTrue("cancelled", second.sec().cancel());
+        assertTrue("all cancelled", fanOut.isCancelled());
+        assertEquals("cancel handler called once the last one is cancelled", 1, handlerCalls.get());
+    }
+}
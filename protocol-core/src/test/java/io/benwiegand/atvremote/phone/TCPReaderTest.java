@@ -0,0 +1,54 @@
+package io.benwiegand.atvremote.phone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import io.benwiegand.atvremote.phone.network.TCPReader;
+import io.benwiegand.atvremote.phone.network.TCPWriter;
+
+public class TCPReaderTest {
+
+    @Test
+    public void switchToFramesAfter_Test() throws IOException, InterruptedException {
+        // frames right behind the confirmation, like a pipelined v2 handshake
+        PipedOutputStream os = new PipedOutputStream();
+        TCPReader reader = new TCPReader(new PipedInputStream(os, 1024), StandardCharsets.UTF_8);
+        TCPWriter writer = new TCPWriter(os, StandardCharsets.UTF_8);
+        try {
+            reader.switchToFramesAfter("OK");
+            writer.writeLine("OK");
+            writer.switchToFrames();
+            writer.writeLine("in a frame");
+            writer.flush();
+
+            assertEquals("confirmation", "OK", reader.nextLine(1000));
+            assertEquals("line frame", "in a frame", reader.nextLine(1000));
+            assertTrue("switched", reader.isFramed());
+        } finally {
+            reader.close();
+        }
+
+        // anything else and it stays on lines
+        os = new PipedOutputStream();
+        reader = new TCPReader(new PipedInputStream(os, 1024), StandardCharsets.UTF_8);
+        writer = new TCPWriter(os, StandardCharsets.UTF_8);
+        try {
+            reader.switchToFramesAfter("OK");
+            writer.sendLines("HUH?", "OK");
+
+            assertEquals("rejection", "HUH?", reader.nextLine(1000));
+            assertEquals("only the next line counts", "OK", reader.nextLine(1000));
+            assertFalse("not switched", reader.isFramed());
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package io.benwiegand.atvremote.phone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.benwiegand.atvremote.phone.stuff.TimingWheel;
+
+public class TimingWheelTest {
+
+    @Test
+    public void expiry_Test() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 1000);
+        List<String> expired = new ArrayList<>();
+
+        wheel.schedule("a", 1250);
+        wheel.schedule("b", 1300);
+        wheel.schedule("c", 3000); // more than one rotation out
+        assertEquals("all scheduled", 3, wheel.size());
+
+        assertEquals("nothing expires early", 0, wheel.advance(1299, expired::add));
+        assertEquals("expire on the tick after the deadline", 2, wheel.advance(1300, expired::add));
+        assertTrue("a and b expired", expired.containsAll(List.of("a", "b")));
+
+        assertEquals("c not expired on the first rotation", 0, wheel.advance(2100, expired::add));
+        assertEquals("c expired after jumping past it", 1, wheel.advance(5000, expired::add));
+        assertEquals("c expired", "c", expired.get(2));
+        assertEquals("nothing left", 0, wheel.size());
+
+        wheel.schedule("d", 0);
+        assertEquals("deadline in the past expires on the next tick", 1, wheel.advance(5100, expired::add));
+    }
+
+    @Test
+    public void clear_Test() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 0);
+        wheel.schedule("a", 500);
+        wheel.clear();
+        assertEquals("empty after clear", 0, wheel.size());
+        assertEquals("cleared entries don't expire", 0, wheel.advance(1000, e -> {}));
+    }
+
+}
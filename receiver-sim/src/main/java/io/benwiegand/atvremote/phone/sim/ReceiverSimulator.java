@@ -0,0 +1,239 @@
+package io.benwiegand.atvremote.phone.sim;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ServerSocketFactory;
+
+import io.benwiegand.atvremote.phone.platform.Log;
+import io.benwiegand.atvremote.phone.protocol.json.ReceiverCapabilities;
+
+/**
+ * a stand-in for the TV side that speaks protocol v1 and runs on a plain JVM, so the phone side can
+ * be load tested over loopback without a TV or an emulator.
+ * <p>
+ *     media state comes from {@link #getMedia()}. changes are streamed to subscribed clients right
+ *     away, and each event type can also be re-sent periodically at a configurable interval (see
+ *     {@link #setStreamInterval(String, long)}). outgoing messages can be delayed to simulate a slow
+ *     network or receiver (see {@link #setLatency(long, long)}).
+ * </p>
+ */
+public class ReceiverSimulator implements Closeable {
+    private static final String TAG = ReceiverSimulator.class.getSimpleName();
+
+    private static final int SCHEDULER_THREADS = 2;
+
+    private final ServerSocketFactory serverSocketFactory;
+    private final String token;
+    private final String pairingCode;
+    private final ReceiverCapabilities capabilities = ReceiverCapabilities.getDefault();
+
+    private final SimulatedMedia media = new SimulatedMedia();
+    private final SimulatedMedia.Listener mediaListener = this::onMediaEvent;
+
+    private final ScheduledExecutorService scheduler = new ScheduledThreadPoolExecutor(SCHEDULER_THREADS);
+    private final Map<String, ScheduledFuture<?>> streamTasks = new ConcurrentHashMap<>();
+    private final Random random = new Random();
+
+    private final Set<SimulatedConnection> connections = new CopyOnWriteArraySet<>();
+    private final Thread acceptThread = new Thread(this::acceptLoop, "simulator-accept");
+    private ServerSocket serverSocket = null;
+    private volatile boolean dead = false;
+
+    // outgoing delay
+    private volatile long latency = 0;
+    private volatile long jitter = 0;
+
+    // stats
+    private final AtomicLong totalConnects = new AtomicLong();
+    private final AtomicLong totalDisconnects = new AtomicLong();
+    private final Map<String, LongAdder> operationCounts = new ConcurrentHashMap<>();
+    private final LongAdder streamedEventCount = new LongAdder();
+
+    /**
+     * @param serverSocketFactory for the listening socket, the default factory for plain TCP
+     * @param token auth token clients have to send with CONN, or null to accept any token
+     * @param pairingCode pairing code that pairs successfully, or null to reject pairing
+     */
+    public ReceiverSimulator(ServerSocketFactory serverSocketFactory, String token, String pairingCode) {
+        this.serverSocketFactory = serverSocketFactory;
+        this.token = token;
+        this.pairingCode = pairingCode;
+    }
+
+    /**
+     * starts listening. returns once the port is known.
+     * @param port port to listen on, or 0 for any free port
+     */
+    public void start(int port) throws IOException {
+        if (serverSocket != null) throw new IllegalStateException("start() called twice");
+        serverSocket = serverSocketFactory.createServerSocket(port);
+        media.addListener(mediaListener);
+        acceptThread.start();
+        Log.i(TAG, "listening on port " + serverSocket.getLocalPort());
+    }
+
+    @Override
+    public void close() {
+        dead = true;
+        media.removeListener(mediaListener);
+        try {
+            if (serverSocket != null) serverSocket.close();
+        } catch (IOException e) {
+            Log.w(TAG, "failed to close server socket", e);
+        }
+        disconnectAll();
+        scheduler.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!dead) {
+            try {
+                Socket socket = serverSocket.accept();
+                totalConnects.incrementAndGet();
+
+                SimulatedConnection connection = new SimulatedConnection(this, socket);
+                connections.add(connection);
+                connection.start();
+            } catch (SocketException e) {
+                if (!dead) Log.e(TAG, "server socket died", e);
+                return;
+            } catch (IOException e) {
+                Log.w(TAG, "failed to accept connection", e);
+            }
+        }
+    }
+
+    void onConnectionClosed(SimulatedConnection connection) {
+        if (connections.remove(connection)) totalDisconnects.incrementAndGet();
+    }
+
+    private void onMediaEvent(String type, String data) {
+        for (SimulatedConnection connection : connections)
+            connection.sendStreamedEvent(type, data);
+    }
+
+    private void streamCurrentState(String type) {
+        List<String> events = media.currentEvents(type);
+        for (SimulatedConnection connection : connections) {
+            for (String data : events)
+                connection.sendStreamedEvent(type, data);
+        }
+    }
+
+    /**
+     * re-sends the current state of an event type to every subscribed client at a fixed interval,
+     * on top of the events sent on changes. this is how the real receiver streams MEDIA_POS while
+     * something is playing.
+     * @param type event type
+     * @param interval interval in ms, or 0 to only send events on changes
+     */
+    public void setStreamInterval(String type, long interval) {
+        if (!SimulatedMedia.isEventType(type)) throw new IllegalArgumentException("unknown event type: " + type);
+        ScheduledFuture<?> old = interval > 0 ?
+                streamTasks.put(type, scheduler.scheduleAtFixedRate(() -> streamCurrentState(type), interval, interval, TimeUnit.MILLISECONDS)) :
+                streamTasks.remove(type);
+        if (old != null) old.cancel(false);
+    }
+
+    /**
+     * delays everything sent to clients (responses and streamed events). with jitter, messages can
+     * arrive out of order, like responses from a receiver handling events in parallel do.
+     * @param latency base delay in ms
+     * @param jitter up to this many ms are randomly added to each message
+     */
+    public void setLatency(long latency, long jitter) {
+        this.latency = latency;
+        this.jitter = jitter;
+    }
+
+    long nextDelay() {
+        long jitter = this.jitter;
+        return latency + (jitter > 0 ? (long) (random.nextDouble() * jitter) : 0);
+    }
+
+    /**
+     * drops every connected client, like the receiver restarting.
+     */
+    public void disconnectAll() {
+        for (SimulatedConnection connection : new ArrayList<>(connections))
+            connection.close();
+    }
+
+    void countOperation(String operation) {
+        operationCounts.computeIfAbsent(operation, o -> new LongAdder()).increment();
+    }
+
+    void countStreamedEvent() {
+        streamedEventCount.increment();
+    }
+
+    ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    String getToken() {
+        return token;
+    }
+
+    String getPairingCode() {
+        return pairingCode;
+    }
+
+    ReceiverCapabilities getCapabilities() {
+        return capabilities;
+    }
+
+    public SimulatedMedia getMedia() {
+        return media;
+    }
+
+    public boolean isDead() {
+        return dead;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public long getTotalConnects() {
+        return totalConnects.get();
+    }
+
+    public long getTotalDisconnects() {
+        return totalDisconnects.get();
+    }
+
+    /**
+     * @param operation operation name, like DPAD_UP
+     * @return how many events with that operation were received from all clients
+     */
+    public long getOperationCount(String operation) {
+        LongAdder count = operationCounts.get(operation);
+        return count == null ? 0 : count.sum();
+    }
+
+    public long getStreamedEventCount() {
+        return streamedEventCount.sum();
+    }
+}
@@ -0,0 +1,157 @@
+package io.benwiegand.atvremote.phone.sim;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.benwiegand.atvremote.phone.platform.Log;
+
+/**
+ * a script that drives a {@link ReceiverSimulator}, one command per line:
+ * <pre>
+ * # comments and blank lines are ignored, arguments with spaces go in double quotes
+ * sessions com.example.player            active media sessions, highest priority first
+ * meta com.example.player "A Title" "Subtitle" "Source" 3600000
+ * play com.example.player                also pause, stop and buffer
+ * seek com.example.player 60000
+ * rate MEDIA_POS 1000                    re-send an event type every n ms (0 for only on change)
+ * latency 50 20                          delay everything sent by 50 ms plus up to 20 ms of jitter
+ * wait 5000
+ * disconnect                             drop every client
+ * loop                                   start over from the top
+ * </pre>
+ */
+public class Scenario {
+    private static final String TAG = Scenario.class.getSimpleName();
+
+    private record Step(int lineNumber, String command, String[] args) {}
+
+    private final List<Step> steps;
+
+    private Scenario(List<Step> steps) {
+        this.steps = steps;
+    }
+
+    public static Scenario parse(List<String> lines) {
+        List<Step> steps = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            List<String> tokens = tokenize(lines.get(i), i + 1);
+            if (tokens.isEmpty()) continue;
+
+            Step step = new Step(i + 1, tokens.get(0), tokens.subList(1, tokens.size()).toArray(new String[0]));
+            validate(step);
+            steps.add(step);
+        }
+
+        boolean loops = steps.stream().anyMatch(s -> s.command().equals("loop"));
+        if (loops && steps.stream().noneMatch(s -> s.command().equals("wait")))
+            throw new IllegalArgumentException("scenario loops without waiting");
+
+        return new Scenario(steps);
+    }
+
+    public static Scenario load(Path path) throws IOException {
+        return parse(Files.readAllLines(path));
+    }
+
+    private static List<String> tokenize(String line, int lineNumber) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = null;
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    tokens.add(token.toString());
+                    token = null;
+                    quoted = false;
+                } else {
+                    token.append(c);
+                }
+            } else if (c == '#') {
+                break;
+            } else if (c == '"') {
+                if (token != null) throw new IllegalArgumentException("line " + lineNumber + ": quote in the middle of an argument");
+                token = new StringBuilder();
+                quoted = true;
+            } else if (Character.isWhitespace(c)) {
+                if (token != null) tokens.add(token.toString());
+                token = null;
+            } else {
+                if (token == null) token = new StringBuilder();
+                token.append(c);
+            }
+        }
+
+        if (quoted) throw new IllegalArgumentException("line " + lineNumber + ": unterminated quote");
+        if (token != null) tokens.add(token.toString());
+        return tokens;
+    }
+
+    private static void validate(Step step) {
+        int min, max;
+        switch (step.command()) {
+            case "sessions" -> { min = 0; max = Integer.MAX_VALUE; }
+            case "meta" -> { min = 1; max = 5; }
+            case "play", "pause", "stop", "buffer" -> { min = 1; max = 1; }
+            case "seek", "rate" -> { min = 2; max = 2; }
+            case "latency" -> { min = 1; max = 2; }
+            case "wait" -> { min = 1; max = 1; }
+            case "disconnect", "loop" -> { min = 0; max = 0; }
+            default -> throw new IllegalArgumentException("line " + step.lineNumber() + ": unknown command: " + step.command());
+        }
+
+        if (step.args().length < min || step.args().length > max)
+            throw new IllegalArgumentException("line " + step.lineNumber() + ": wrong number of arguments for " + step.command());
+
+        // numbers are checked up front so a long scenario doesn't fail halfway through
+        try {
+            switch (step.command()) {
+                case "meta" -> { if (step.args().length == 5) Long.parseLong(step.args()[4]); }
+                case "seek", "rate" -> Long.parseLong(step.args()[1]);
+                case "latency" -> { for (String arg : step.args()) Long.parseLong(arg); }
+                case "wait" -> Long.parseLong(step.args()[0]);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("line " + step.lineNumber() + ": not a number", e);
+        }
+    }
+
+    /**
+     * runs the scenario on the calling thread until it ends, or forever if it loops.
+     * @param simulator the simulator to drive
+     */
+    public void run(ReceiverSimulator simulator) throws InterruptedException {
+        SimulatedMedia media = simulator.getMedia();
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            String[] args = step.args();
+            Log.v(TAG, "line " + step.lineNumber() + ": " + step.command() + " " + Arrays.toString(args));
+
+            switch (step.command()) {
+                case "sessions" -> media.setSessions(args);
+                case "meta" -> media.setMetadata(args[0],
+                        args.length > 1 ? args[1] : null,
+                        args.length > 2 ? args[2] : null,
+                        args.length > 3 ? args[3] : null,
+                        args.length > 4 ? Long.valueOf(args[4]) : null);
+                case "play" -> media.setState(args[0], SimulatedMedia.STATE_PLAYING);
+                case "pause" -> media.setState(args[0], SimulatedMedia.STATE_PAUSED);
+                case "stop" -> media.setState(args[0], SimulatedMedia.STATE_STOPPED);
+                case "buffer" -> media.setState(args[0], SimulatedMedia.STATE_BUFFERING);
+                case "seek" -> media.seek(args[0], Long.parseLong(args[1]));
+                case "rate" -> simulator.setStreamInterval(args[0], Long.parseLong(args[1]));
+                case "latency" -> simulator.setLatency(Long.parseLong(args[0]), args.length > 1 ? Long.parseLong(args[1]) : 0);
+                case "wait" -> Thread.sleep(Long.parseLong(args[0]));
+                case "disconnect" -> simulator.disconnectAll();
+                case "loop" -> i = -1;
+            }
+
+            if (simulator.isDead()) return;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package io.benwiegand.atvremote.phone.sim;
+
+import static io.benwiegand.atvremote.phone.network.event.EventIds.EVENT_ID_MASK;
+import static io.benwiegand.atvremote.phone.network.event.EventIds.appendEventId;
+import static io.benwiegand.atvremote.phone.network.event.EventIds.decodeEventId;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.CHARSET;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.INIT_OP_CONNECT;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.INIT_OP_PAIR;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_BATCH;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_COMMIT_TEXT;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_CONFIRM;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_DELETE_TEXT;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_ERR;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_EVENT_STREAM_EVENT;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_EVENT_STREAM_SUBSCRIBE;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_EVENT_STREAM_UNSUBSCRIBE;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_KEYBOARD_DEFAULT_EDITOR_ACTION;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_KEY_EVENT;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_META;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_PING;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_TRY_PAIRING_CODE;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_UNAUTHORIZED;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_UNSUPPORTED;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.VERSION_1;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLSocket;
+
+import io.benwiegand.atvremote.phone.network.TCPReader;
+import io.benwiegand.atvremote.phone.network.TCPWriter;
+import io.benwiegand.atvremote.phone.platform.Log;
+import io.benwiegand.atvremote.phone.protocol.MalformedEventException;
+import io.benwiegand.atvremote.phone.protocol.Opcodes;
+import io.benwiegand.atvremote.phone.protocol.json.BatchParams;
+import io.benwiegand.atvremote.phone.protocol.json.BatchResults;
+import io.benwiegand.atvremote.phone.protocol.json.ReceiverDeviceMeta;
+
+/**
+ * one client of the {@link ReceiverSimulator}. the handshake and reading happen on a thread per
+ * connection like on the real receiver, everything sent afterwards goes through the simulator's
+ * scheduler so it can be delayed.
+ */
+class SimulatedConnection {
+    private static final String TAG = SimulatedConnection.class.getSimpleName();
+
+    private static final Gson gson = new Gson();
+
+    private static final int SOCKET_AUTH_TIMEOUT = 3000;
+    private static final long KEEPALIVE_INTERVAL = 5000;
+    private static final long KEEPALIVE_TIMEOUT = KEEPALIVE_INTERVAL * 2;
+
+    // these respond with whether the text field took the input
+    private static final Set<String> BOOLEAN_RESPONSE_OPERATIONS = Set.of(
+            OP_COMMIT_TEXT, OP_DELETE_TEXT, OP_KEY_EVENT, OP_KEYBOARD_DEFAULT_EDITOR_ACTION);
+
+    // same json as ErrorDetails, which is stuck in the app because of string resources
+    private record ErrorText(String text) {}
+
+    private final ReceiverSimulator simulator;
+    private final Socket socket;
+    private final Thread thread = new Thread(this::run, "simulated-connection");
+
+    private TCPReader reader = null;
+    private TCPWriter writer = null;
+
+    private final Set<String> subscriptions = ConcurrentHashMap.newKeySet();
+    private final List<String> newSubscriptions = new ArrayList<>();  // read thread only
+    private ScheduledFuture<?> pingTask = null;
+    private int nextEventId = 0;
+    private boolean pairing = false;
+    private volatile boolean ready = false;
+    private volatile boolean dead = false;
+
+    SimulatedConnection(ReceiverSimulator simulator, Socket socket) {
+        this.simulator = simulator;
+        this.socket = socket;
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void close() {
+        if (dead) return;
+        dead = true;
+        ready = false;
+
+        if (pingTask != null) pingTask.cancel(false);
+        if (reader != null) reader.close();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            Log.w(TAG, "failed to close socket", e);
+        }
+
+        simulator.onConnectionClosed(this);
+    }
+
+    private void run() {
+        try {
+            Log.d(TAG, "connection from " + socket.getRemoteSocketAddress());
+            if (socket instanceof SSLSocket sslSocket) sslSocket.startHandshake();
+            socket.setTcpNoDelay(true);
+
+            reader = TCPReader.createFromStream(socket.getInputStream(), CHARSET);
+            writer = TCPWriter.createFromStream(socket.getOutputStream(), CHARSET);
+
+            if (!handshake()) return;
+            ready = true;
+
+            // the client considers us dead if it hears nothing for a while
+            pingTask = simulator.getScheduler().scheduleAtFixedRate(
+                    () -> sendEvent(OP_PING), KEEPALIVE_INTERVAL, KEEPALIVE_INTERVAL, TimeUnit.MILLISECONDS);
+
+            while (!dead) {
+                String line = reader.nextLine(KEEPALIVE_TIMEOUT);
+                if (line == null) throw new IOException("client went quiet");
+                if (line.isEmpty()) continue;
+
+                handleLine(line);
+            }
+
+        } catch (IOException | MalformedEventException e) {
+            if (!dead) Log.i(TAG, "lost connection with client: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Log.w(TAG, "interrupted");
+        } finally {
+            close();
+        }
+    }
+
+    private boolean handshake() throws IOException, InterruptedException {
+        // v2 isn't simulated, the client falls back to v1
+        String version = reader.nextLine(SOCKET_AUTH_TIMEOUT);
+        while (version != null && !version.equals(VERSION_1)) {
+            Log.v(TAG, "unsupported version: " + version);
+            writer.sendLine(OP_UNSUPPORTED);
+            version = reader.nextLine(SOCKET_AUTH_TIMEOUT);
+        }
+        if (version == null) return false;
+        writer.sendLine(OP_CONFIRM);
+
+        String initOp = reader.nextLine(SOCKET_AUTH_TIMEOUT);
+        if (initOp == null) return false;
+        switch (initOp) {
+            case INIT_OP_PAIR -> {
+                if (simulator.getPairingCode() == null) {
+                    writer.sendLine(OP_UNAUTHORIZED);
+                    return false;
+                }
+                pairing = true;
+                writer.sendLine(OP_CONFIRM);
+                return true;
+            }
+            case INIT_OP_CONNECT -> {
+                String token = reader.nextLine(SOCKET_AUTH_TIMEOUT);
+                if (token == null || (simulator.getToken() != null && !simulator.getToken().equals(token))) {
+                    Log.v(TAG, "auth rejected");
+                    writer.sendLine(OP_UNAUTHORIZED);
+                    return false;
+                }
+                writer.sendLine(OP_CONFIRM);
+
+                String meta = reader.nextLine(SOCKET_AUTH_TIMEOUT);
+                if (meta == null || !meta.startsWith(OP_META)) {
+                    Log.w(TAG, "expected client meta, got: " + meta);
+                    writer.sendLine("!" + OP_META);
+                } else {
+                    writer.sendLine(OP_META + " " + gson.toJson(new ReceiverDeviceMeta(simulator.getCapabilities())));
+                }
+                return true;
+            }
+            default -> {
+                Log.w(TAG, "unexpected init op: " + initOp);
+                return false;
+            }
+        }
+    }
+
+    private void handleLine(String line) {
+        // responses start with '!', the content doesn't matter here
+        if (line.charAt(0) == '!') return;
+
+        int iId = line.indexOf(' ');
+        if (iId < 1 || line.length() < iId + 2) throw new MalformedEventException("no operation");
+        int eventId = decodeEventId(line, 0, iId);
+
+        int iExtra = line.indexOf(' ', iId + 1);
+        String operation = iExtra < 0 ? line.substring(iId + 1) : line.substring(iId + 1, iExtra);
+        String extra = iExtra < 0 ? null : line.substring(iExtra + 1);
+
+        String response = handleOperation(operation, extra);
+        send(appendEventId(new StringBuilder("!"), eventId).append(' ').append(response).toString());
+
+        // the real receiver re-sends the latest state to each new subscription
+        for (String type : newSubscriptions) {
+            for (String data : simulator.getMedia().currentEvents(type))
+                sendStreamedEvent(type, data);
+        }
+        newSubscriptions.clear();
+    }
+
+    private String handleOperation(String operation, String extra) {
+        simulator.countOperation(operation);
+
+        if (operation.equals(OP_PING)) return OP_CONFIRM;
+
+        if (pairing) {
+            if (!operation.equals(OP_TRY_PAIRING_CODE)) return OP_UNSUPPORTED;
+            if (simulator.getPairingCode().equals(extra))
+                return OP_CONFIRM + " " + (simulator.getToken() == null ? "SIMULATED_TOKEN" : simulator.getToken());
+            return error("wrong pairing code");
+        }
+
+        switch (operation) {
+            case OP_EVENT_STREAM_SUBSCRIBE -> {
+                if (extra == null || !SimulatedMedia.isEventType(extra)) return error("unknown event type: " + extra);
+                subscriptions.add(extra);
+                newSubscriptions.add(extra);
+                return OP_CONFIRM;
+            }
+            case OP_EVENT_STREAM_UNSUBSCRIBE -> {
+                if (extra != null) subscriptions.remove(extra);
+                return OP_CONFIRM;
+            }
+            case OP_BATCH -> {
+                return handleBatch(extra);
+            }
+        }
+
+        if (BOOLEAN_RESPONSE_OPERATIONS.contains(operation)) return OP_CONFIRM + " true";
+        if (Opcodes.opcodeOf(operation) != Opcodes.OPCODE_LITERAL) return OP_CONFIRM;
+        return OP_UNSUPPORTED;
+    }
+
+    private String handleBatch(String extra) {
+        BatchParams params;
+        try {
+            params = gson.fromJson(extra, BatchParams.class);
+        } catch (JsonParseException e) {
+            return error("invalid batch: " + e.getMessage());
+        }
+        if (params == null || params.operations() == null) return error("no operations in batch");
+
+        List<String> results = new ArrayList<>(params.operations().size());
+        for (String operation : params.operations()) {
+            int iExtra = operation.indexOf(' ');
+            String op = iExtra < 0 ? operation : operation.substring(0, iExtra);
+            String opExtra = iExtra < 0 ? null : operation.substring(iExtra + 1);
+
+            // no nested batches
+            results.add(op.equals(OP_BATCH) ? OP_UNSUPPORTED : handleOperation(op, opExtra));
+        }
+
+        return OP_CONFIRM + " " + gson.toJson(new BatchResults(results));
+    }
+
+    private static String error(String text) {
+        return OP_ERR + " " + gson.toJson(new ErrorText(text));
+    }
+
+    void sendStreamedEvent(String type, String data) {
+        if (!ready || !subscriptions.contains(type)) return;
+        simulator.countStreamedEvent();
+        sendEvent(OP_EVENT_STREAM_EVENT + " " + type + " " + data);
+    }
+
+    private void sendEvent(String event) {
+        int eventId;
+        synchronized (this) {
+            eventId = nextEventId;
+            nextEventId = (nextEventId + 1) & EVENT_ID_MASK;
+        }
+        send(appendEventId(new StringBuilder(), eventId).append(' ').append(event).toString());
+    }
+
+    private void send(String line) {
+        long delay = simulator.nextDelay();
+        if (delay <= 0) {
+            write(line);
+            return;
+        }
+
+        try {
+            simulator.getScheduler().schedule(() -> write(line), delay, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            // scheduler is shut down, the simulator is closing
+            close();
+        }
+    }
+
+    private void write(String line) {
+        if (dead) return;
+        try {
+            synchronized (writer) {
+                writer.sendLine(line);
+            }
+        } catch (IOException e) {
+            Log.i(TAG, "failed to write to client: " + e.getMessage());
+            close();
+        }
+    }
+}
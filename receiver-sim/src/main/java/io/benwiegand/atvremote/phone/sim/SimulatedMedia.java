@@ -0,0 +1,189 @@
+package io.benwiegand.atvremote.phone.sim;
+
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.EVENT_TYPE_MEDIA_METADATA;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.EVENT_TYPE_MEDIA_POSITION;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.EVENT_TYPE_MEDIA_SESSIONS;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.EVENT_TYPE_MEDIA_STATE;
+
+import com.google.gson.Gson;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import io.benwiegand.atvremote.phone.platform.SystemClock;
+import io.benwiegand.atvremote.phone.protocol.json.MediaMetaEvent;
+import io.benwiegand.atvremote.phone.protocol.json.MediaPositionEvent;
+import io.benwiegand.atvremote.phone.protocol.json.MediaSessionsEvent;
+import io.benwiegand.atvremote.phone.protocol.json.MediaStateEvent;
+
+/**
+ * the media sessions of the simulated receiver. every change is passed to listeners as the
+ * streamed event data the real receiver would send for it.
+ */
+public class SimulatedMedia {
+    // same as android.media.session.PlaybackState
+    public static final int STATE_STOPPED = 1;
+    public static final int STATE_PAUSED = 2;
+    public static final int STATE_PLAYING = 3;
+    public static final int STATE_BUFFERING = 6;
+
+    private static final Gson gson = new Gson();
+
+    public interface Listener {
+        void onMediaEvent(String type, String data);
+    }
+
+    private static class Session {
+        private final String id;
+        private MediaMetaEvent meta;
+        private int state = STATE_STOPPED;
+        private long position = 0;
+        private long positionUpdatedAt = SystemClock.elapsedRealtime();
+
+        private Session(String id) {
+            this.id = id;
+            meta = new MediaMetaEvent(id, null, null, null, null);
+        }
+
+        private long currentPosition() {
+            if (state != STATE_PLAYING) return position;
+            long current = position + SystemClock.elapsedRealtime() - positionUpdatedAt;
+            Long length = meta.length();
+            return length == null ? current : Math.min(current, length);
+        }
+
+        private void setPosition(long position) {
+            this.position = position;
+            positionUpdatedAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    private final Object lock = new Object();
+    // in priority order, like the real receiver sends them
+    private final Map<String, Session> sessions = new LinkedHashMap<>();
+    private final Set<Listener> listeners = new CopyOnWriteArraySet<>();
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void dispatch(String type, String data) {
+        for (Listener listener : listeners)
+            listener.onMediaEvent(type, data);
+    }
+
+    private Session getSessionLocked(String id) {
+        Session session = sessions.get(id);
+        if (session == null) throw new IllegalArgumentException("no media session: " + id);
+        return session;
+    }
+
+    private String sessionsDataLocked() {
+        return gson.toJson(new MediaSessionsEvent(sessions.keySet().toArray(new String[0])));
+    }
+
+    private static String metaData(Session session) {
+        return gson.toJson(session.meta);
+    }
+
+    private static String stateData(Session session) {
+        return gson.toJson(new MediaStateEvent(
+                session.id,
+                session.state,
+                session.state == STATE_PLAYING,
+                session.state == STATE_PAUSED));
+    }
+
+    private static String positionData(Session session) {
+        // nothing is really buffering, so everything up to the current position counts
+        long position = session.currentPosition();
+        return gson.toJson(new MediaPositionEvent(session.id, position, position));
+    }
+
+    /**
+     * replaces the active media sessions. new ones start out stopped with no metadata.
+     * @param ids session ids, highest priority first
+     */
+    public void setSessions(String... ids) {
+        String data;
+        synchronized (lock) {
+            Map<String, Session> old = new LinkedHashMap<>(sessions);
+            sessions.clear();
+            for (String id : ids) {
+                Session session = old.get(id);
+                sessions.put(id, session == null ? new Session(id) : session);
+            }
+            data = sessionsDataLocked();
+        }
+        dispatch(EVENT_TYPE_MEDIA_SESSIONS, data);
+    }
+
+    public void setMetadata(String id, String title, String subtitle, String sourceName, Long length) {
+        String data;
+        synchronized (lock) {
+            Session session = getSessionLocked(id);
+            session.meta = new MediaMetaEvent(id, title, subtitle, sourceName, length);
+            data = metaData(session);
+        }
+        dispatch(EVENT_TYPE_MEDIA_METADATA, data);
+    }
+
+    public void setState(String id, int state) {
+        String data, position;
+        synchronized (lock) {
+            Session session = getSessionLocked(id);
+            // freeze or resume the position where it is now
+            session.setPosition(session.currentPosition());
+            session.state = state;
+            data = stateData(session);
+            position = positionData(session);
+        }
+        dispatch(EVENT_TYPE_MEDIA_STATE, data);
+        dispatch(EVENT_TYPE_MEDIA_POSITION, position);
+    }
+
+    public void seek(String id, long position) {
+        String data;
+        synchronized (lock) {
+            Session session = getSessionLocked(id);
+            session.setPosition(position);
+            data = positionData(session);
+        }
+        dispatch(EVENT_TYPE_MEDIA_POSITION, data);
+    }
+
+    /**
+     * the current state as streamed events, which is what gets sent when a client subscribes and
+     * on every tick of a periodic stream.
+     * @param type event type
+     * @return streamed event data for the type, one per session except for MEDIA_SESSIONS
+     */
+    public List<String> currentEvents(String type) {
+        synchronized (lock) {
+            List<String> events = new ArrayList<>(sessions.size());
+            switch (type) {
+                case EVENT_TYPE_MEDIA_SESSIONS -> events.add(sessionsDataLocked());
+                case EVENT_TYPE_MEDIA_METADATA -> sessions.values().forEach(s -> events.add(metaData(s)));
+                case EVENT_TYPE_MEDIA_STATE -> sessions.values().forEach(s -> events.add(stateData(s)));
+                case EVENT_TYPE_MEDIA_POSITION -> sessions.values().forEach(s -> events.add(positionData(s)));
+                default -> throw new IllegalArgumentException("unknown event type: " + type);
+            }
+            return events;
+        }
+    }
+
+    public static boolean isEventType(String type) {
+        return switch (type) {
+            case EVENT_TYPE_MEDIA_SESSIONS, EVENT_TYPE_MEDIA_METADATA, EVENT_TYPE_MEDIA_STATE, EVENT_TYPE_MEDIA_POSITION -> true;
+            default -> false;
+        };
+    }
+}
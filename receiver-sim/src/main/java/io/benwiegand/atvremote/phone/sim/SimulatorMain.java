@@ -0,0 +1,114 @@
+package io.benwiegand.atvremote.phone.sim;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.List;
+
+import javax.net.ServerSocketFactory;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+
+import io.benwiegand.atvremote.phone.platform.Log;
+
+/**
+ * runs a {@link ReceiverSimulator} from the command line:
+ * <pre>
+ * ./gradlew :receiver-sim:run --args="--port 6969 --scenario scenarios/playback.txt"
+ * </pre>
+ * options:
+ * <pre>
+ * --port n                port to listen on (default: any free port)
+ * --plain                 plain TCP instead of TLS
+ * --keystore file         PKCS12 keystore with the TLS key (default: the sim.keystore property)
+ * --password pw           keystore password (default: the sim.keystorePassword property)
+ * --token token           auth token to accept (default: any)
+ * --pairing-code code     pairing code to accept (default: pairing is rejected)
+ * --latency ms            delay everything sent to clients
+ * --jitter ms             add up to this much random delay on top
+ * --scenario file         script to run, see {@link Scenario}
+ * </pre>
+ * without a scenario, there's one playing media session with its position streamed every second.
+ */
+public class SimulatorMain {
+    private static final String TAG = SimulatorMain.class.getSimpleName();
+
+    private static final List<String> DEFAULT_SCENARIO = List.of(
+            "sessions com.example.player",
+            "meta com.example.player \"Simulated Video\" \"Episode 1\" \"Example Player\" 3600000",
+            "play com.example.player",
+            "rate MEDIA_POS 1000");
+
+    public static void main(String[] args) throws Exception {
+        int port = 0;
+        boolean plain = false;
+        String keystore = System.getProperty("sim.keystore");
+        String password = System.getProperty("sim.keystorePassword", "");
+        String token = null;
+        String pairingCode = null;
+        long latency = 0, jitter = 0;
+        Scenario scenario = Scenario.parse(DEFAULT_SCENARIO);
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--plain")) {
+                plain = true;
+                continue;
+            }
+
+            if (i + 1 >= args.length) usage("missing value for " + arg);
+            String value = args[++i];
+            switch (arg) {
+                case "--port" -> port = Integer.parseInt(value);
+                case "--keystore" -> keystore = value;
+                case "--password" -> password = value;
+                case "--token" -> token = value;
+                case "--pairing-code" -> pairingCode = value;
+                case "--latency" -> latency = Long.parseLong(value);
+                case "--jitter" -> jitter = Long.parseLong(value);
+                case "--scenario" -> scenario = Scenario.load(Path.of(value));
+                default -> usage("unknown option: " + arg);
+            }
+        }
+
+        ServerSocketFactory serverSocketFactory;
+        if (plain) {
+            serverSocketFactory = ServerSocketFactory.getDefault();
+        } else {
+            if (keystore == null) usage("TLS needs a keystore (or use --plain)");
+            serverSocketFactory = createSSLContext(keystore, password.toCharArray()).getServerSocketFactory();
+        }
+
+        ReceiverSimulator simulator = new ReceiverSimulator(serverSocketFactory, token, pairingCode);
+        Runtime.getRuntime().addShutdownHook(new Thread(simulator::close));
+
+        simulator.setLatency(latency, jitter);
+        simulator.start(port);
+        System.out.println("simulated receiver listening on port " + simulator.getPort());
+
+        scenario.run(simulator);
+        Log.i(TAG, "scenario done, still serving clients");
+    }
+
+    private static SSLContext createSSLContext(String path, char[] password) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream is = new FileInputStream(path)) {
+            keyStore.load(is, password);
+        }
+
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(keyStore, password);
+
+        // the phone pins the certificate when pairing, so there's nothing to trust on this end
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(kmf.getKeyManagers(), null, null);
+        return sslContext;
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("usage: [--port n] [--plain | --keystore file --password pw] [--token token] [--pairing-code code] [--latency ms] [--jitter ms] [--scenario file]");
+        System.exit(2);
+    }
+}
@@ -0,0 +1,383 @@
+package io.benwiegand.atvremote.phone;
+
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.CHARSET;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.EVENT_TYPE_MEDIA_METADATA;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.EVENT_TYPE_MEDIA_POSITION;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.EVENT_TYPE_MEDIA_SESSIONS;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.EVENT_TYPE_MEDIA_STATE;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.INIT_OP_CONNECT;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_CONFIRM;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_CURSOR_MOVE;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_DPAD_DOWN;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_EVENT_STREAM_EVENT;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_EVENT_STREAM_SUBSCRIBE;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_META;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_NAV_BACK;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_PING;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_PLAY_PAUSE;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.OP_VOLUME_UP;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.VERSION_1;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import javax.net.SocketFactory;
+import javax.net.ssl.SSLSocket;
+
+import io.benwiegand.atvremote.phone.async.Sec;
+import io.benwiegand.atvremote.phone.network.EventJuggler;
+import io.benwiegand.atvremote.phone.network.TCPReader;
+import io.benwiegand.atvremote.phone.network.TCPWriter;
+import io.benwiegand.atvremote.phone.network.event.EventMerger;
+import io.benwiegand.atvremote.phone.network.event.EventResult;
+import io.benwiegand.atvremote.phone.network.event.EventTemplate;
+import io.benwiegand.atvremote.phone.network.event.OutputPriority;
+import io.benwiegand.atvremote.phone.network.metrics.LatencyHistogram;
+import io.benwiegand.atvremote.phone.platform.Log;
+import io.benwiegand.atvremote.phone.protocol.KeyEventType;
+import io.benwiegand.atvremote.phone.protocol.OperationDefinition;
+
+/**
+ * runs many independent connections (each with its own EventJuggler, TCPReader and TCPWriter, so
+ * its own threads) against one receiver, drives input through all of them at once and measures how
+ * the whole process holds up.
+ * <p>
+ *     each client does the same handshake and sends the same events as TVReceiverConnection, just
+ *     without the android parts around it.
+ * </p>
+ */
+public class LoadGenerator {
+    private static final String TAG = LoadGenerator.class.getSimpleName();
+
+    private static final int CONNECT_THREADS = 8;
+    private static final long CONNECT_TIMEOUT = 30000;
+    private static final long KEEPALIVE_INTERVAL = 5000;
+    private static final long KEEPALIVE_TIMEOUT = 10000;
+    private static final long SAMPLE_INTERVAL = 250;
+
+    private static final List<String> MEDIA_EVENT_TYPES = List.of(
+            EVENT_TYPE_MEDIA_SESSIONS, EVENT_TYPE_MEDIA_METADATA, EVENT_TYPE_MEDIA_STATE, EVENT_TYPE_MEDIA_POSITION);
+
+    // same as TVReceiverConnection's
+    private static final EventMerger CURSOR_MOVE_MERGER = new EventMerger(OP_CURSOR_MOVE, (queued, next) -> {
+        String[] queuedMove = queued.split(" ");
+        String[] nextMove = next.split(" ");
+        int x = Integer.parseInt(queuedMove[1]) + Integer.parseInt(nextMove[1]);
+        int y = Integer.parseInt(queuedMove[2]) + Integer.parseInt(nextMove[2]);
+        return OP_CURSOR_MOVE + " " + x + " " + y;
+    });
+
+    public enum InputOp {
+        DPAD(templateSender(EventTemplate.of(OP_DPAD_DOWN, KeyEventType.CLICK))),
+        NAV(templateSender(EventTemplate.of(OP_NAV_BACK, KeyEventType.CLICK))),
+        VOLUME(templateSender(EventTemplate.of(OP_VOLUME_UP, KeyEventType.CLICK))),
+        MEDIA(templateSender(EventTemplate.of(OP_PLAY_PAUSE, KeyEventType.CLICK))),
+        CURSOR(j -> j.sendEvent(OP_CURSOR_MOVE + " 3 -2", OutputPriority.INTERACTIVE, CURSOR_MOVE_MERGER));
+
+        private final Function<EventJuggler, Sec<EventResult>> sender;
+
+        InputOp(Function<EventJuggler, Sec<EventResult>> sender) {
+            this.sender = sender;
+        }
+
+        private static Function<EventJuggler, Sec<EventResult>> templateSender(EventTemplate template) {
+            return j -> j.sendEvent(template, OutputPriority.INTERACTIVE);
+        }
+    }
+
+    /**
+     * @param clients number of connections
+     * @param duration how long to send input for, in ms
+     * @param opInterval ms between operations on each connection, or 0 to send the next one as
+     *                   soon as a response comes back (closed loop)
+     * @param maxInFlight operations each connection may have waiting for a response. in closed
+     *                    loop, this many are always in flight.
+     * @param mix relative weights of the input operations
+     * @param trackMedia subscribe each connection to the media event streams (including position)
+     *                   like the media controls screen does
+     */
+    public record Config(int clients, long duration, long opInterval, int maxInFlight, Map<InputOp, Integer> mix, boolean trackMedia) {}
+
+    /**
+     * @param throughput completed operations per second, across all connections
+     * @param streamed streamed events received from subscriptions, across all connections
+     * @param rttP50 round trip time from sending to the response, in μs
+     * @param peakThreads most live threads seen in the process
+     * @param peakHeap most heap in use seen, in bytes
+     * @param gcCount garbage collections during the run, across all collectors
+     * @param gcTime time spent in garbage collection during the run, in ms
+     */
+    public record Report(Config config, int connected, long completed, long failed, long disconnects, long streamed,
+                         double throughput, long rttP50, long rttP99, long rttP999, long rttMax,
+                         int baselineThreads, int peakThreads, long baselineHeap, long peakHeap,
+                         long gcCount, long gcTime) {
+
+        public String summary() {
+            return String.format(Locale.ROOT,
+                    "%d clients (%d connected): %.0f ops/s, %d ok, %d failed, %d disconnects, %d streamed | " +
+                    "rtt p50=%dμs p99=%dμs p999=%dμs max=%dμs | " +
+                    "threads %d -> %d | heap %d KiB -> %d KiB | gc %d (%d ms)",
+                    config.clients(), connected, throughput, completed, failed, disconnects, streamed,
+                    rttP50, rttP99, rttP999, rttMax,
+                    baselineThreads, peakThreads, baselineHeap / 1024, peakHeap / 1024,
+                    gcCount, gcTime);
+        }
+    }
+
+    private final SocketFactory socketFactory;
+    private final int port;
+    private final String token;
+
+    // per run
+    private volatile LatencyHistogram rtt = new LatencyHistogram();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong disconnects = new AtomicLong();
+    private final AtomicLong streamed = new AtomicLong();
+    private volatile boolean running = false;
+
+    /**
+     * @param socketFactory creates sockets to the receiver, an SSLSocketFactory for TLS
+     * @param port receiver port on loopback
+     * @param token auth token the receiver accepts
+     */
+    public LoadGenerator(SocketFactory socketFactory, int port, String token) {
+        this.socketFactory = socketFactory;
+        this.port = port;
+        this.token = token;
+    }
+
+    private class Client {
+        private final Config config;
+        private final Random random = new Random();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final int totalWeight;
+        private Socket socket = null;
+        private EventJuggler eventJuggler = null;
+
+        private Client(Config config) {
+            this.config = config;
+            totalWeight = config.mix().values().stream().mapToInt(Integer::intValue).sum();
+        }
+
+        private void connect() throws Exception {
+            socket = socketFactory.createSocket(InetAddress.getLoopbackAddress(), port);
+            if (socket instanceof SSLSocket sslSocket) sslSocket.startHandshake();
+
+            TCPReader reader = TCPReader.createFromStream(socket.getInputStream(), CHARSET);
+            TCPWriter writer = TCPWriter.createFromStream(socket.getOutputStream(), CHARSET);
+            eventJuggler = new EventJuggler(socket, reader, writer, this::onDeath, KEEPALIVE_INTERVAL, KEEPALIVE_TIMEOUT);
+
+            // the simulator only speaks v1, so the whole handshake goes out in one flush
+            writer.writeLine(VERSION_1);
+            writer.writeLine(INIT_OP_CONNECT);
+            writer.writeLine(token);
+            writer.writeLine(OP_META + " {}");
+            writer.flush();
+
+            expectLine(reader, OP_CONFIRM);
+            expectLine(reader, OP_CONFIRM);
+            String meta = reader.nextLine(CONNECT_TIMEOUT);
+            if (meta == null || !meta.startsWith(OP_META)) throw new IOException("no meta from receiver: " + meta);
+
+            eventJuggler.start(new OperationDefinition[] {
+                    new OperationDefinition(OP_EVENT_STREAM_EVENT, extra -> { streamed.incrementAndGet(); }),
+                    new OperationDefinition(OP_PING, () -> {}),
+            });
+
+            if (!config.trackMedia()) return;
+            for (String type : MEDIA_EVENT_TYPES) {
+                EventResult result = block(eventJuggler.sendEvent(OP_EVENT_STREAM_SUBSCRIBE + " " + type, OutputPriority.CONTROL));
+                if (!result.response().equals(OP_CONFIRM)) throw new IOException("failed to subscribe to " + type + ": " + result.responseLine());
+            }
+        }
+
+        private static <T> T block(Sec<T> sec) throws Exception {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            sec.doOnResult(future::complete)
+                    .doOnError(future::completeExceptionally)
+                    .callMeWhenDone();
+            return future.get(CONNECT_TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+
+        private static void expectLine(TCPReader reader, String expected) throws IOException, InterruptedException {
+            String line = reader.nextLine(CONNECT_TIMEOUT);
+            if (!expected.equals(line)) throw new IOException("expected " + expected + " from receiver, got: " + line);
+        }
+
+        private InputOp pickOp() {
+            int pick = random.nextInt(totalWeight);
+            for (Map.Entry<InputOp, Integer> entry : config.mix().entrySet()) {
+                pick -= entry.getValue();
+                if (pick < 0) return entry.getKey();
+            }
+            throw new AssertionError("weights don't add up");
+        }
+
+        /**
+         * sends one operation if there's room for it.
+         */
+        private void tick() {
+            if (!running || eventJuggler.isDead()) return;
+            if (inFlight.incrementAndGet() > config.maxInFlight()) {
+                inFlight.decrementAndGet();
+                return;
+            }
+
+            long sentAt = System.nanoTime();
+            pickOp().sender.apply(eventJuggler)
+                    .doOnResult(r -> {
+                        if (r.response().equals(OP_CONFIRM)) {
+                            rtt.record((System.nanoTime() - sentAt) / 1000);
+                            completed.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                        }
+                        onOpDone();
+                    })
+                    .doOnError(t -> {
+                        failed.incrementAndGet();
+                        onOpDone();
+                    })
+                    .callMeWhenDone();
+        }
+
+        private void onOpDone() {
+            inFlight.decrementAndGet();
+            if (config.opInterval() == 0) tick();
+        }
+
+        private void onDeath(Throwable t) {
+            if (running) {
+                Log.w(TAG, "client disconnected during run", t);
+                disconnects.incrementAndGet();
+            }
+        }
+
+        private void close() {
+            if (eventJuggler != null) {
+                eventJuggler.close();
+            } else if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "failed to close socket", e);
+                }
+            }
+        }
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) count += Math.max(0, gc.getCollectionCount());
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) time += Math.max(0, gc.getCollectionTime());
+        return time;
+    }
+
+    private static int liveThreads() {
+        return Thread.getAllStackTraces().size();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * connects all clients, drives them for the configured duration and disconnects them again.
+     */
+    public Report run(Config config) throws InterruptedException {
+        rtt = new LatencyHistogram();
+        completed.set(0);
+        failed.set(0);
+        disconnects.set(0);
+        streamed.set(0);
+
+        System.gc();
+        int baselineThreads = liveThreads();
+        long baselineHeap = usedHeap();
+        AtomicInteger peakThreads = new AtomicInteger(baselineThreads);
+        AtomicLong peakHeap = new AtomicLong(baselineHeap);
+        long gcCount = gcCount();
+        long gcTime = gcTime();
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+        scheduler.scheduleAtFixedRate(() -> {
+            peakThreads.accumulateAndGet(liveThreads(), Math::max);
+            peakHeap.accumulateAndGet(usedHeap(), Math::max);
+        }, 0, SAMPLE_INTERVAL, TimeUnit.MILLISECONDS);
+
+        // connect in parallel, but not all at once so the handshakes don't time out
+        List<Client> clients = new ArrayList<>(config.clients());
+        ExecutorService connectExecutor = Executors.newFixedThreadPool(CONNECT_THREADS);
+        List<Future<?>> connects = new ArrayList<>(config.clients());
+        for (int i = 0; i < config.clients(); i++) {
+            Client client = new Client(config);
+            clients.add(client);
+            connects.add(connectExecutor.submit(() -> {
+                client.connect();
+                return null;
+            }));
+        }
+
+        List<Client> connectedClients = new ArrayList<>(config.clients());
+        for (int i = 0; i < connects.size(); i++) {
+            try {
+                connects.get(i).get(CONNECT_TIMEOUT, TimeUnit.MILLISECONDS);
+                connectedClients.add(clients.get(i));
+            } catch (Exception e) {
+                Log.e(TAG, "client failed to connect", e);
+            }
+        }
+        connectExecutor.shutdown();
+
+        // drive
+        running = true;
+        long startTime = System.nanoTime();
+        for (Client client : connectedClients) {
+            if (config.opInterval() > 0) {
+                scheduler.scheduleAtFixedRate(client::tick, 0, config.opInterval(), TimeUnit.MILLISECONDS);
+            } else {
+                for (int i = 0; i < config.maxInFlight(); i++) client.tick();
+            }
+        }
+
+        Thread.sleep(config.duration());
+        running = false;
+        double elapsed = (System.nanoTime() - startTime) / 1e9;
+        long completedOps = completed.get();
+        long failedOps = failed.get();
+
+        scheduler.shutdownNow();
+        for (Client client : clients) client.close();
+
+        Report report = new Report(config, connectedClients.size(), completedOps, failedOps, disconnects.get(), streamed.get(),
+                completedOps / elapsed, rtt.percentile(50), rtt.percentile(99), rtt.percentile(99.9), rtt.max(),
+                baselineThreads, peakThreads.get(), baselineHeap, peakHeap.get(),
+                gcCount() - gcCount, gcTime() - gcTime);
+        Log.i(TAG, report.summary());
+        return report;
+    }
+}
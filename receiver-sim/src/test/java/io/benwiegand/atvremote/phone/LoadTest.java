@@ -0,0 +1,156 @@
+package io.benwiegand.atvremote.phone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.net.ServerSocketFactory;
+import javax.net.SocketFactory;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import io.benwiegand.atvremote.phone.platform.Log;
+import io.benwiegand.atvremote.phone.sim.ReceiverSimulator;
+import io.benwiegand.atvremote.phone.sim.Scenario;
+
+/**
+ * load tests the connection stack against the simulated receiver over loopback. by default each
+ * case is a short run with a couple of clients, so it works as a smoke test. the real thing takes
+ * a while, so it only runs when asked for:
+ * <pre>
+ * ./gradlew :receiver-sim:test --tests io.benwiegand.atvremote.phone.LoadTest -PloadTest -PloadClients=1,8,32,64
+ * </pre>
+ * the reports are logged under the LoadGenerator tag. the connections use TLS when the simulator
+ * keystore is passed in through sim.keystore (the gradle test task does that), otherwise plain
+ * sockets.
+ */
+public class LoadTest {
+    private static final String TAG = LoadTest.class.getSimpleName();
+
+    private static final String TOKEN = "LOAD_TEST_TOKEN";
+    private static final String SMOKE_CLIENTS = "1,4";
+    private static final String DEFAULT_CLIENTS = "1,8,32";
+    private static final long SMOKE_DURATION = 1000;
+    private static final long DURATION = 10000;
+
+    private static final Map<LoadGenerator.InputOp, Integer> BUTTON_MIX = Map.of(
+            LoadGenerator.InputOp.DPAD, 6,
+            LoadGenerator.InputOp.NAV, 2,
+            LoadGenerator.InputOp.VOLUME, 1,
+            LoadGenerator.InputOp.MEDIA, 1);
+
+    private static final Map<LoadGenerator.InputOp, Integer> CURSOR_MIX = Map.of(
+            LoadGenerator.InputOp.CURSOR, 1);
+
+    private final boolean full = Boolean.getBoolean("loadTest");
+
+    private ReceiverSimulator simulator;
+    private LoadGenerator loadGenerator;
+
+    @Before
+    public void setUp() throws Exception {
+        ServerSocketFactory serverSocketFactory = ServerSocketFactory.getDefault();
+        SocketFactory socketFactory = SocketFactory.getDefault();
+
+        String keystorePath = System.getProperty("sim.keystore");
+        if (keystorePath != null) {
+            char[] password = System.getProperty("sim.keystorePassword", "").toCharArray();
+            KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            try (InputStream is = new FileInputStream(keystorePath)) {
+                keyStore.load(is, password);
+            }
+
+            KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            kmf.init(keyStore, password);
+            SSLContext serverContext = SSLContext.getInstance("TLS");
+            serverContext.init(kmf.getKeyManagers(), null, null);
+            serverSocketFactory = serverContext.getServerSocketFactory();
+
+            // trust the simulator's certificate like a paired phone pins it
+            KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+            trustStore.load(null, null);
+            trustStore.setCertificateEntry("sim", keyStore.getCertificate(keyStore.aliases().nextElement()));
+            TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            tmf.init(trustStore);
+            SSLContext clientContext = SSLContext.getInstance("TLS");
+            clientContext.init(null, tmf.getTrustManagers(), null);
+            socketFactory = clientContext.getSocketFactory();
+        }
+
+        simulator = new ReceiverSimulator(serverSocketFactory, TOKEN, null);
+        simulator.start(0);
+        Scenario.parse(List.of(
+                "sessions com.example.player",
+                "meta com.example.player \"Load Test\" \"\" \"Example Player\" 3600000",
+                "play com.example.player",
+                "rate MEDIA_POS 1000"
+        )).run(simulator);
+
+        loadGenerator = new LoadGenerator(socketFactory, simulator.getPort(), TOKEN);
+    }
+
+    @After
+    public void tearDown() {
+        if (simulator != null) simulator.close();
+    }
+
+    private List<Integer> clientCounts() {
+        String clients = full ? System.getProperty("loadClients", DEFAULT_CLIENTS) : SMOKE_CLIENTS;
+        List<Integer> counts = new ArrayList<>();
+        for (String count : clients.split(",")) counts.add(Integer.parseInt(count.trim()));
+        return counts;
+    }
+
+    private List<LoadGenerator.Report> runAll(long opInterval, int maxInFlight, Map<LoadGenerator.InputOp, Integer> mix, boolean trackMedia) throws InterruptedException {
+        List<LoadGenerator.Report> reports = new ArrayList<>();
+        for (int clients : clientCounts()) {
+            LoadGenerator.Config config = new LoadGenerator.Config(clients, full ? DURATION : SMOKE_DURATION, opInterval, maxInFlight, mix, trackMedia);
+            LoadGenerator.Report report = loadGenerator.run(config);
+            reports.add(report);
+
+            assertEquals("all clients connected", clients, report.connected());
+            assertEquals("no disconnects", 0, report.disconnects());
+            assertTrue("operations completed", report.completed() > 0);
+        }
+
+        // all together at the end so they're easy to find in the output
+        for (LoadGenerator.Report report : reports) Log.i(TAG, report.summary());
+        return reports;
+    }
+
+    /**
+     * someone mashing buttons on every phone, as fast as the receiver responds.
+     */
+    @Test
+    public void buttonsClosedLoop_Test() throws InterruptedException {
+        runAll(0, 1, BUTTON_MIX, false);
+    }
+
+    /**
+     * a steady trickle of buttons while the media screen is open, so position events stream in.
+     */
+    @Test
+    public void buttonsWithMedia_Test() throws InterruptedException {
+        for (LoadGenerator.Report report : runAll(100, 4, BUTTON_MIX, true))
+            assertTrue("media events streamed", report.streamed() > 0);
+    }
+
+    /**
+     * trackpad use: many mergeable cursor moves with several in flight.
+     */
+    @Test
+    public void cursor_Test() throws InterruptedException {
+        runAll(8, 16, CURSOR_MIX, false);
+    }
+}
@@ -0,0 +1,125 @@
+package io.benwiegand.atvremote.phone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static io.benwiegand.atvremote.phone.protocol.ProtocolConstants.CHARSET;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.List;
+
+import javax.net.ServerSocketFactory;
+
+import io.benwiegand.atvremote.phone.network.TCPReader;
+import io.benwiegand.atvremote.phone.network.TCPWriter;
+import io.benwiegand.atvremote.phone.sim.ReceiverSimulator;
+import io.benwiegand.atvremote.phone.sim.Scenario;
+import io.benwiegand.atvremote.phone.sim.SimulatedMedia;
+
+public class ReceiverSimulatorTest {
+    private static final long TIMEOUT = 3000;
+    private static final String TOKEN = "TEST_TOKEN";
+
+    private ReceiverSimulator simulator;
+    private Socket socket;
+    private TCPReader reader;
+    private TCPWriter writer;
+
+    @Before
+    public void setUp() throws IOException {
+        simulator = new ReceiverSimulator(ServerSocketFactory.getDefault(), TOKEN, null);
+        simulator.start(0);
+
+        socket = new Socket(InetAddress.getLoopbackAddress(), simulator.getPort());
+        reader = TCPReader.createFromStream(socket.getInputStream(), CHARSET);
+        writer = TCPWriter.createFromStream(socket.getOutputStream(), CHARSET);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        reader.close();
+        socket.close();
+        simulator.close();
+    }
+
+    private void connect(String token) throws IOException, InterruptedException {
+        writer.sendLine("v2");
+        assertEquals("v2 is not simulated", "HUH?", reader.nextLine(TIMEOUT));
+        writer.sendLine("v1");
+        assertEquals("v1 accepted", "OK", reader.nextLine(TIMEOUT));
+        writer.sendLines("CONN", token);
+    }
+
+    @Test
+    public void handshake_Test() throws IOException, InterruptedException {
+        connect(TOKEN);
+        assertEquals("token accepted", "OK", reader.nextLine(TIMEOUT));
+
+        writer.sendLine("META {}");
+        assertTrue("receiver meta", reader.nextLine(TIMEOUT).startsWith("META {\"capabilities\":"));
+
+        writer.sendLine("AAAB DPAD_UP CLICK");
+        assertEquals("input acknowledged", "!AAAB OK", reader.nextLine(TIMEOUT));
+        writer.sendLine("AAAC NOT_AN_OPERATION");
+        assertEquals("unknown operation", "!AAAC HUH?", reader.nextLine(TIMEOUT));
+        assertEquals("operation counted", 1, simulator.getOperationCount("DPAD_UP"));
+    }
+
+    @Test
+    public void badToken_Test() throws IOException, InterruptedException {
+        connect("WRONG_TOKEN");
+        assertEquals("token rejected", "BAD_AUTH", reader.nextLine(TIMEOUT));
+        assertThrows("connection closed", IOException.class, () -> reader.nextLine(TIMEOUT));
+    }
+
+    @Test
+    public void subscribe_Test() throws IOException, InterruptedException {
+        simulator.getMedia().setSessions("com.example.player");
+        simulator.getMedia().setState("com.example.player", SimulatedMedia.STATE_PLAYING);
+
+        connect(TOKEN);
+        reader.nextLine(TIMEOUT);
+        writer.sendLine("META {}");
+        reader.nextLine(TIMEOUT);
+
+        writer.sendLine("AAAB SUBSCRIBE MEDIA_STATE");
+        assertEquals("subscribed", "!AAAB OK", reader.nextLine(TIMEOUT));
+        assertEquals("current state sent on subscribe",
+                "AAAA EVENT MEDIA_STATE {\"id\":\"com.example.player\",\"state\":3,\"playing\":true,\"paused\":false}",
+                reader.nextLine(TIMEOUT));
+
+        simulator.getMedia().setState("com.example.player", SimulatedMedia.STATE_PAUSED);
+        assertEquals("changes are streamed",
+                "AAAB EVENT MEDIA_STATE {\"id\":\"com.example.player\",\"state\":2,\"playing\":false,\"paused\":true}",
+                reader.nextLine(TIMEOUT));
+
+        writer.sendLine("AAAC SUBSCRIBE NOT_AN_EVENT_TYPE");
+        assertTrue("unknown event type", reader.nextLine(TIMEOUT).startsWith("!AAAC ERR "));
+    }
+
+    @Test
+    public void scenario_Test() throws InterruptedException {
+        Scenario.parse(List.of(
+                "# comment",
+                "sessions a b",
+                "meta a \"A Title\" \"\" Source 1000  # trailing comment",
+                "play a",
+                "latency 0 0"
+        )).run(simulator);
+
+        assertEquals("metadata with quoted arguments",
+                List.of("{\"id\":\"a\",\"title\":\"A Title\",\"subtitle\":\"\",\"sourceName\":\"Source\",\"length\":1000}",
+                        "{\"id\":\"b\"}"),
+                simulator.getMedia().currentEvents("MEDIA_META"));
+
+        assertThrows("unknown command", IllegalArgumentException.class, () -> Scenario.parse(List.of("explode")));
+        assertThrows("bad number", IllegalArgumentException.class, () -> Scenario.parse(List.of("wait soon")));
+        assertThrows("busy loop", IllegalArgumentException.class, () -> Scenario.parse(List.of("play a", "loop")));
+    }
+}